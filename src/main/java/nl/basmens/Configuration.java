@@ -0,0 +1,358 @@
+package nl.basmens;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+import nl.basmens.generation.Tilesets;
+import nl.basmens.knot.Knot.AlexanderPolynomialEngine;
+
+// Settings that can be changed without recompiling. The defaults below are overridden by a properties file given with
+// --config <file>, which are overridden by command line arguments in the form --key=value or --key value. The keys
+// are the field names in kebab case, for example max-calc-time-per-invariant=1000.
+public final class Configuration {
+  private static volatile Configuration instance;
+
+  // Generation
+  private boolean multiThread = true;
+  private Tilesets tileset = Tilesets.BASIC;
+  private int[] gridSizes = { 20, 30, 40, 50 };
+  private int singleThreadGridSize = 10;
+  private long targetKnotCount = 10_000_000L;
+  // Master seed of every random stream, see GridRandom. Resuming with the same seed continues after the grids that are
+  // in the results, see GridRanges.
+  private long seed = new SplittableRandom().nextLong();
+  // When grid-count is not 0, every job generates exactly the grids first-grid-index until first-grid-index +
+  // grid-count, numbered by a GridCounter, instead of generating until target-knot-count is reached
+  private long firstGridIndex = 0;
+  private long gridCount = 0;
+
+  // Threads
+  private int generationThreadCount = 9;
+  private long schedulerSliceTime = 1_000L; // In millis
+  private int invariantThreadCount = Runtime.getRuntime().availableProcessors();
+  private int invariantQueueCapacity = 10_000;
+  private long statisticsReportInterval = 60 * 1_000L; // In millis
+
+  // Invariants
+  private boolean saveResults = true;
+  private String resultsDirectory = "results"; // Relative to the project directory, unless it is absolute
+  private boolean saveTricolorability = false;
+  private boolean saveKnotDeterminant = true;
+  private boolean saveAlexanderPolynomial = true;
+  private boolean saveKnotRecords = false; // Every knot, next to the histograms
+  private int knotRecordQueueCapacity = 16; // In blocks of KnotRecordSink.BLOCK_SIZE knots
+  private AlexanderPolynomialEngine alexanderPolynomialEngine = AlexanderPolynomialEngine.MODULAR;
+  private long maxCalcTimePerInvariant = 500L; // In millis
+  private int calcInvariantMaxIntersectionCount = 300;
+  private boolean useInvariantCache = true;
+  private long invariantCacheMaxBytes = 64L * 1024 * 1024;
+
+  private Configuration() {
+  }
+
+  // =================================================================================================================
+  // Loading
+  // =================================================================================================================
+  public static Configuration get() {
+    Configuration c = instance;
+    if (c == null) {
+      synchronized (Configuration.class) {
+        if (instance == null) {
+          instance = new Configuration();
+        }
+        c = instance;
+      }
+    }
+    return c;
+  }
+
+  // Must be called before anything reads the configuration, classes may cache values in their static initializers
+  public static synchronized Configuration load(String[] args) {
+    Configuration c = new Configuration();
+    Map<String, String> arguments = parseArguments(args == null ? new String[0] : args);
+
+    String configFile = arguments.remove("config");
+    if (configFile != null) {
+      c.loadFile(new File(configFile));
+    }
+    arguments.forEach(c::set);
+
+    instance = c;
+    return c;
+  }
+
+  private static Map<String, String> parseArguments(String[] args) {
+    LinkedHashMap<String, String> arguments = new LinkedHashMap<>();
+    for (int i = 0; i < args.length; i++) {
+      if (!args[i].startsWith("--")) {
+        throw new IllegalArgumentException("ERROR: expected an argument starting with --, but got " + args[i]);
+      }
+
+      String argument = args[i].substring(2);
+      int equalsIndex = argument.indexOf('=');
+      if (equalsIndex >= 0) {
+        arguments.put(argument.substring(0, equalsIndex), argument.substring(equalsIndex + 1));
+      } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+        arguments.put(argument, args[++i]);
+      } else {
+        arguments.put(argument, "true");
+      }
+    }
+    return arguments;
+  }
+
+  private void loadFile(File file) {
+    if (!file.exists()) {
+      throw new IllegalArgumentException("ERROR: configuration file " + file + " does not exist");
+    }
+
+    Properties properties = new Properties();
+    try (Reader reader = new FileReader(file)) {
+      properties.load(reader);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("ERROR: could not read configuration file " + file, e);
+    }
+    properties.stringPropertyNames().forEach(key -> set(key, properties.getProperty(key)));
+  }
+
+  private void set(String key, String value) {
+    value = value.trim();
+    try {
+      switch (key) {
+        case "multi-thread":
+          multiThread = parseBoolean(value);
+          break;
+        case "tileset":
+          tileset = Tilesets.valueOf(value.toUpperCase(Locale.ENGLISH));
+          break;
+        case "grid-sizes":
+          gridSizes = parseIntList(value);
+          break;
+        case "single-thread-grid-size":
+          singleThreadGridSize = Integer.parseInt(value);
+          break;
+        case "target-knot-count":
+          targetKnotCount = Long.parseLong(value.replace("_", ""));
+          break;
+        case "seed":
+          seed = Long.parseLong(value);
+          break;
+        case "first-grid-index":
+          firstGridIndex = Long.parseLong(value.replace("_", ""));
+          break;
+        case "grid-count":
+          gridCount = Long.parseLong(value.replace("_", ""));
+          break;
+        case "generation-thread-count":
+          generationThreadCount = Integer.parseInt(value);
+          break;
+        case "scheduler-slice-time":
+          schedulerSliceTime = Long.parseLong(value);
+          break;
+        case "invariant-thread-count":
+          invariantThreadCount = Integer.parseInt(value);
+          break;
+        case "invariant-queue-capacity":
+          invariantQueueCapacity = Integer.parseInt(value);
+          break;
+        case "statistics-report-interval":
+          statisticsReportInterval = Long.parseLong(value);
+          break;
+        case "save-results":
+          saveResults = parseBoolean(value);
+          break;
+        case "results-directory":
+          resultsDirectory = value;
+          break;
+        case "save-tricolorability":
+          saveTricolorability = parseBoolean(value);
+          break;
+        case "save-knot-determinant":
+          saveKnotDeterminant = parseBoolean(value);
+          break;
+        case "save-alexander-polynomial":
+          saveAlexanderPolynomial = parseBoolean(value);
+          break;
+        case "save-knot-records":
+          saveKnotRecords = parseBoolean(value);
+          break;
+        case "knot-record-queue-capacity":
+          knotRecordQueueCapacity = Integer.parseInt(value);
+          break;
+        case "alexander-polynomial-engine":
+          alexanderPolynomialEngine = AlexanderPolynomialEngine.valueOf(value.toUpperCase(Locale.ENGLISH));
+          break;
+        case "max-calc-time-per-invariant":
+          maxCalcTimePerInvariant = Long.parseLong(value);
+          break;
+        case "calc-invariant-max-intersection-count":
+          calcInvariantMaxIntersectionCount = Integer.parseInt(value);
+          break;
+        case "use-invariant-cache":
+          useInvariantCache = parseBoolean(value);
+          break;
+        case "invariant-cache-max-bytes":
+          invariantCacheMaxBytes = Long.parseLong(value.replace("_", ""));
+          break;
+        default:
+          throw new IllegalArgumentException("ERROR: unknown configuration key " + key);
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("ERROR: invalid value " + value + " for configuration key " + key, e);
+    }
+  }
+
+  private static boolean parseBoolean(String value) {
+    if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+      throw new IllegalArgumentException("ERROR: expected true or false, but got " + value);
+    }
+    return Boolean.parseBoolean(value);
+  }
+
+  // Accepts both 20,30,40 and [20, 30, 40]
+  private static int[] parseIntList(String value) {
+    return Arrays.stream(value.replaceAll("[\\[\\]\\s]", "").split(",")).filter(s -> !s.isEmpty())
+        .mapToInt(Integer::parseInt).toArray();
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public boolean isMultiThread() {
+    return multiThread;
+  }
+
+  public Tilesets getTileset() {
+    return tileset;
+  }
+
+  public int[] getGridSizes() {
+    return gridSizes.clone();
+  }
+
+  public int getSingleThreadGridSize() {
+    return singleThreadGridSize;
+  }
+
+  public long getTargetKnotCount() {
+    return targetKnotCount;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public long getFirstGridIndex() {
+    return firstGridIndex;
+  }
+
+  public long getGridCount() {
+    return gridCount;
+  }
+
+  public int getGenerationThreadCount() {
+    return generationThreadCount;
+  }
+
+  public long getSchedulerSliceTime() {
+    return schedulerSliceTime;
+  }
+
+  public int getInvariantThreadCount() {
+    return invariantThreadCount;
+  }
+
+  public int getInvariantQueueCapacity() {
+    return invariantQueueCapacity;
+  }
+
+  public long getStatisticsReportInterval() {
+    return statisticsReportInterval;
+  }
+
+  public boolean isSaveResults() {
+    return saveResults;
+  }
+
+  public String getResultsDirectory() {
+    return resultsDirectory;
+  }
+
+  public boolean isSaveTricolorability() {
+    return saveTricolorability;
+  }
+
+  public boolean isSaveKnotDeterminant() {
+    return saveKnotDeterminant;
+  }
+
+  public boolean isSaveAlexanderPolynomial() {
+    return saveAlexanderPolynomial;
+  }
+
+  public boolean isSaveKnotRecords() {
+    return saveKnotRecords;
+  }
+
+  public int getKnotRecordQueueCapacity() {
+    return knotRecordQueueCapacity;
+  }
+
+  public AlexanderPolynomialEngine getAlexanderPolynomialEngine() {
+    return alexanderPolynomialEngine;
+  }
+
+  public long getMaxCalcTimePerInvariant() {
+    return maxCalcTimePerInvariant;
+  }
+
+  public int getCalcInvariantMaxIntersectionCount() {
+    return calcInvariantMaxIntersectionCount;
+  }
+
+  public boolean isUseInvariantCache() {
+    return useInvariantCache;
+  }
+
+  public long getInvariantCacheMaxBytes() {
+    return invariantCacheMaxBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "Configuration:"
+        + "\n multi-thread=" + multiThread
+        + "\n tileset=" + tileset
+        + "\n grid-sizes=" + Arrays.toString(gridSizes)
+        + "\n single-thread-grid-size=" + singleThreadGridSize
+        + "\n target-knot-count=" + targetKnotCount
+        + "\n seed=" + seed
+        + "\n first-grid-index=" + firstGridIndex
+        + "\n grid-count=" + gridCount
+        + "\n generation-thread-count=" + generationThreadCount
+        + "\n scheduler-slice-time=" + schedulerSliceTime
+        + "\n invariant-thread-count=" + invariantThreadCount
+        + "\n invariant-queue-capacity=" + invariantQueueCapacity
+        + "\n statistics-report-interval=" + statisticsReportInterval
+        + "\n save-results=" + saveResults
+        + "\n results-directory=" + resultsDirectory
+        + "\n save-tricolorability=" + saveTricolorability
+        + "\n save-knot-determinant=" + saveKnotDeterminant
+        + "\n save-alexander-polynomial=" + saveAlexanderPolynomial
+        + "\n save-knot-records=" + saveKnotRecords
+        + "\n knot-record-queue-capacity=" + knotRecordQueueCapacity
+        + "\n alexander-polynomial-engine=" + alexanderPolynomialEngine
+        + "\n max-calc-time-per-invariant=" + maxCalcTimePerInvariant
+        + "\n calc-invariant-max-intersection-count=" + calcInvariantMaxIntersectionCount
+        + "\n use-invariant-cache=" + useInvariantCache
+        + "\n invariant-cache-max-bytes=" + invariantCacheMaxBytes;
+  }
+}
@@ -0,0 +1,252 @@
+package nl.basmens;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import nl.basmens.utils.io.KnotJson;
+import nl.basmens.utils.io.PolynomialDictionary;
+import nl.basmens.utils.io.ResultExporter;
+import nl.basmens.utils.io.ResultJsonReader;
+import nl.basmens.utils.maths.Polynomial;
+
+// Merges the result files of many runs and prints the tables of the "crunching results" spreadsheets: the knot count,
+// the average knot length and the chance of a nontrivial knot, per grid size and tileset. Files of the same tileset
+// and grid size are added together, so the results of several runs or machines can be combined. The files are read in
+// parallel.
+//
+// Usage: CrunchResultsMain [--output=<directory>] [--threads=<count>] [configuration...] [<file or directory>...]
+// Directories are searched for JSON files recursively, by default the results-directory of the Configuration and the
+// old_results directory next to it are searched. The other arguments starting with -- are passed to the
+// Configuration. The tileset is the name of the directory of a file, without the "knots tileset " of old_results, and
+// the grid size is read from the file name. With --output, every table is written to a tab separated file in the
+// directory as well.
+public final class CrunchResultsMain {
+  private static final Pattern GRID_SIZE_PATTERN = Pattern.compile("(\\d+)x\\1");
+  private static final String OLD_TILESET_PREFIX = "knots tileset ";
+
+  // Alexander polynomials of the unknot and of knots with too many intersections to calculate it
+  private static final int UNKNOT_POLYNOMIAL = PolynomialDictionary.getId(Polynomial.parse("1"));
+  private static final int ERROR_POLYNOMIAL = PolynomialDictionary.getId(Polynomial.parse("-1"));
+
+  // The merged results of one tileset and grid size
+  private static final class ResultSet {
+    private final HashMap<Integer, KnotJson> lengths = new HashMap<>();
+    private final HashMap<Integer, KnotJson> intersections = new HashMap<>();
+    private long knotCount;
+    private int fileCount;
+  }
+
+  // The results of one file
+  private static final class FileResult {
+    private final File file;
+    private final String tileset;
+    private final int gridSize;
+    private final HashMap<Integer, KnotJson> lengths = new HashMap<>();
+    private final HashMap<Integer, KnotJson> intersections = new HashMap<>();
+    private long knotCount;
+
+    private FileResult(File file, String tileset, int gridSize) {
+      this.file = file;
+      this.tileset = tileset;
+      this.gridSize = gridSize;
+    }
+  }
+
+  private CrunchResultsMain() {
+  }
+
+  public static void main(String[] args) throws InterruptedException, IOException {
+    File outputDirectory = null;
+    int threadCount = Runtime.getRuntime().availableProcessors();
+    ArrayList<File> roots = new ArrayList<>();
+    ArrayList<String> configurationArgs = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--output=")) {
+        outputDirectory = new File(arg.substring("--output=".length()));
+      } else if (arg.startsWith("--threads=")) {
+        threadCount = Integer.parseInt(arg.substring("--threads=".length()));
+      } else if (arg.startsWith("--")) {
+        configurationArgs.add(arg);
+      } else {
+        roots.add(new File(arg));
+      }
+    }
+    Configuration.load(configurationArgs.toArray(new String[0]));
+    if (roots.isEmpty()) {
+      File resultsDirectory = ResultExporter.getResultsDirectory();
+      roots.add(resultsDirectory);
+      roots.add(new File(resultsDirectory.getAbsoluteFile().getParentFile(), "old_results"));
+    }
+
+    long start = System.nanoTime();
+    ArrayList<File> files = new ArrayList<>();
+    for (File root : roots) {
+      findJsonFiles(root, files);
+    }
+
+    // Read
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    ArrayList<Future<FileResult>> futures = new ArrayList<>();
+    for (File file : files) {
+      FileResult result = createFileResult(file);
+      if (result == null) {
+        System.out.println("Skipped " + file + ": no grid size in the file name");
+        continue;
+      }
+      futures.add(executor.submit(() -> read(result)));
+    }
+    executor.shutdown();
+
+    // Merge, in the order of the files so the output does not depend on the timing of the threads
+    TreeMap<Integer, TreeMap<String, ResultSet>> resultSets = new TreeMap<>();
+    for (Future<FileResult> future : futures) {
+      FileResult result;
+      try {
+        result = future.get();
+      } catch (ExecutionException e) {
+        System.out.println("Skipped a file: " + e.getCause().getMessage());
+        continue;
+      }
+
+      ResultSet set = resultSets.computeIfAbsent(result.gridSize, s -> new TreeMap<>())
+          .computeIfAbsent(result.tileset, s -> new ResultSet());
+      result.lengths.forEach((k, v) -> set.lengths.computeIfAbsent(k, s -> new KnotJson()).add(v));
+      result.intersections.forEach((k, v) -> set.intersections.computeIfAbsent(k, s -> new KnotJson()).add(v));
+      set.knotCount += result.knotCount;
+      set.fileCount++;
+    }
+
+    int fileCount = 0;
+    TreeSet<String> tilesets = new TreeSet<>();
+    for (TreeMap<String, ResultSet> sets : resultSets.values()) {
+      tilesets.addAll(sets.keySet());
+      fileCount += sets.values().stream().mapToInt(s -> s.fileCount).sum();
+    }
+    System.out.println(String.format(Locale.ENGLISH, "Read %d files in %.2f seconds", fileCount,
+        (System.nanoTime() - start) / 1E9));
+
+    // Tables
+    printTable("knot count", resultSets, tilesets, outputDirectory, s -> Long.toString(s.knotCount));
+    printTable("average length", resultSets, tilesets, outputDirectory,
+        s -> formatDouble(getAverageLength(s)));
+    printTable("chance nontrivial", resultSets, tilesets, outputDirectory,
+        s -> formatDouble(getChanceNontrivial(s)));
+  }
+
+  // =================================================================================================================
+  // Reading
+  // =================================================================================================================
+  private static void findJsonFiles(File file, List<File> files) {
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        for (File child : children) {
+          findJsonFiles(child, files);
+        }
+      }
+    } else if (file.getName().endsWith(".json")) {
+      files.add(file);
+    } else if (!file.exists()) {
+      System.out.println("Skipped " + file + ": it does not exist");
+    }
+  }
+
+  // Returns null if the grid size is not in the file name
+  private static FileResult createFileResult(File file) {
+    Matcher matcher = GRID_SIZE_PATTERN.matcher(file.getName());
+    if (!matcher.find()) {
+      return null;
+    }
+
+    File parent = file.getAbsoluteFile().getParentFile();
+    String tileset = parent == null ? "" : parent.getName();
+    if (tileset.startsWith(OLD_TILESET_PREFIX)) {
+      tileset = tileset.substring(OLD_TILESET_PREFIX.length());
+    }
+    return new FileResult(file, tileset, Integer.parseInt(matcher.group(1)));
+  }
+
+  private static FileResult read(FileResult result) {
+    result.knotCount = ResultJsonReader.read(result.file, result.lengths, result.intersections);
+    return result;
+  }
+
+  // =================================================================================================================
+  // Statistics
+  // =================================================================================================================
+  private static double getAverageLength(ResultSet set) {
+    long knots = 0;
+    double lengthSum = 0;
+    for (Map.Entry<Integer, KnotJson> e : set.lengths.entrySet()) {
+      knots += e.getValue().getCount();
+      lengthSum += (double) e.getKey() * e.getValue().getCount();
+    }
+    return knots == 0 ? Double.NaN : lengthSum / knots;
+  }
+
+  // Knots with too many intersections to calculate the alexander polynomial are left out
+  private static double getChanceNontrivial(ResultSet set) {
+    long knots = 0;
+    long unknots = 0;
+    for (KnotJson json : set.lengths.values()) {
+      knots += json.getAlexanderPolynomialCount() - json.getAlexanderPolynomialCount(ERROR_POLYNOMIAL);
+      unknots += json.getAlexanderPolynomialCount(UNKNOT_POLYNOMIAL);
+    }
+    return knots == 0 ? Double.NaN : (double) (knots - unknots) / knots;
+  }
+
+  // =================================================================================================================
+  // Output
+  // =================================================================================================================
+  @FunctionalInterface
+  private interface Cell {
+    String get(ResultSet set);
+  }
+
+  private static void printTable(String name, Map<Integer, TreeMap<String, ResultSet>> resultSets,
+      TreeSet<String> tilesets, File outputDirectory, Cell cell) throws IOException {
+    StringBuilder b = new StringBuilder("size");
+    for (String tileset : tilesets) {
+      b.append('\t').append(tileset);
+    }
+    b.append('\n');
+    for (Map.Entry<Integer, TreeMap<String, ResultSet>> e : resultSets.entrySet()) {
+      b.append(e.getKey()).append('x').append(e.getKey());
+      for (String tileset : tilesets) {
+        ResultSet set = e.getValue().get(tileset);
+        b.append('\t').append(set == null ? "" : cell.get(set));
+      }
+      b.append('\n');
+    }
+
+    System.out.println();
+    System.out.println(name);
+    System.out.print(b);
+
+    if (outputDirectory != null) {
+      outputDirectory.mkdirs();
+      try (PrintWriter writer = new PrintWriter(new File(outputDirectory, name + ".tsv"), StandardCharsets.UTF_8)) {
+        writer.print(b);
+      }
+    }
+  }
+
+  private static String formatDouble(double value) {
+    return Double.isNaN(value) ? "" : String.format(Locale.ENGLISH, "%.8f", value);
+  }
+}
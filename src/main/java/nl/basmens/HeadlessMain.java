@@ -0,0 +1,48 @@
+package nl.basmens;
+
+import java.util.concurrent.CountDownLatch;
+
+import nl.basmens.generation.GenerationRunner;
+import nl.basmens.generation.Tile;
+import nl.basmens.generation.Tilesets;
+
+// Entry point for machines without a display: generates knots and saves the results without opening a PApplet
+// window or loading any tile images, then exits
+public final class HeadlessMain {
+  private HeadlessMain() {
+  }
+
+  public static void main(String[] args) {
+    Configuration configuration = Configuration.load(args);
+    Tile.setLoadingImages(false);
+
+    System.out.println(configuration);
+    System.out.println();
+    System.out.println("Starting headless...");
+    GenerationRunner runner = new GenerationRunner(configuration);
+
+    // On ctrl+c, stop the pipelines and wait for the results to be saved
+    CountDownLatch finished = new CountDownLatch(1);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      if (finished.getCount() > 0) {
+        runner.stop();
+        try {
+          finished.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }));
+
+    try {
+      runner.start();
+      runner.awaitCompletion();
+    } finally {
+      finished.countDown();
+    }
+
+    System.out.println();
+    System.out.println("Exiting");
+    System.exit(0);
+  }
+}
@@ -1,19 +1,10 @@
 package nl.basmens;
 
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.file.FileSystems;
-import java.nio.file.Paths;
 import java.util.Locale;
-import java.util.Random;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.function.Supplier;
 
+import nl.basmens.generation.GenerationRunner;
 import nl.basmens.generation.KnotGenerationPipeline;
-import nl.basmens.generation.Tileset;
-import nl.basmens.generation.TilesetGenerator;
+import nl.basmens.generation.Tilesets;
 import nl.basmens.generation.analyzers.GridAnalyzerBasic;
 import nl.basmens.generation.analyzers.GridAnalyzerDouble;
 import nl.basmens.generation.generators.GridGeneratorBasic;
@@ -27,97 +18,37 @@ import processing.core.PGraphics;
 import processing.opengl.PGraphicsOpenGL;
 
 public class Main extends PApplet {
-  public static final String RESOURCE_PATH;
-  public static final boolean SAVE_RESULTS = true;
-  public static final boolean SAVE_TRICOLORABILITY = false;
-  public static final boolean SAVE_KNOT_DETERMINANT = true;
-  public static final boolean SAVE_ALEXANDER_POLYNOMIAL = true;
-  public static final boolean MULTI_THREAD = true;
-  private static final Tilesets TILESET = Tilesets.BASIC;
   public static final boolean KEEP_DRAWABLE_KNOTS = false; // Preformance
   public static final boolean PROFILE_PERFORMANCE = false;
-  public static final long MAX_CALC_TIME_PER_INVARIANT = 500L; // In millis
-  public static final int CALC_INVARIANT_MAX_INTERSECTION_COUNT = 300;
-  public static final long TARGET_KNOT_COUNT = 10_000_000L;
-  // Used to set the seed; ignore warning if no seed is given
-  public static final Supplier<Random> RANDOM_FACTORY = Random::new;
 
   public final KnotRenderer knotRenderer = new KnotRenderer(true, true, false);
-  private int size = 10;
   private int imgRes = 7;
 
-  private enum Tilesets {
-    BASIC(TilesetGenerator::getTilesetBasicFour),
-    UNWEIGHTED(() -> TilesetGenerator.getTilesetDoubled(1, 1, 1, 1, 1, 1, 1, 1, 1)),
-    WEIGHTED_HIGH(() -> TilesetGenerator.getTilesetDoubled(0, 1, 1, 1, 1, 0, 1, 1, 2)),
-    WEIGHTED_LOW(() -> TilesetGenerator.getTilesetDoubled(1, 0, 0, 0, 0, 1, 0, 0, 2)),
-    EXPANDED_UNWEIGHTED(() -> TilesetGenerator.getTilesetDoubledStraights(1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
-        1, 1, 1, 1, 1, 1, 1, 1, 1)),
-    EXPANDED_WEIGHTED(() -> TilesetGenerator.getTilesetDoubledStraights(1, 1, 2, 1, 1, 1, 0, 2, 1, 1, 1, 0, 1, 2, 0, 1,
-        0, 1, 1, 1, 1, 1, 0, 0));
-
-    private final Supplier<Tileset> tilesetSupplier;
-    private Tileset tileset;
-
-    Tilesets(Supplier<Tileset> tilesetSupplier) {
-      this.tilesetSupplier = tilesetSupplier;
-    }
-
-    public Tileset getTileset() {
-      if (tileset == null) {
-        tileset = tilesetSupplier.get();
-      }
-      return tileset;
-    }
-  }
-
-  // private KnotGenerationPipeline[] knotGenerationPipelines = new KnotGenerationPipeline[MULTI_THREAD ? 21 : 1];
-  private KnotGenerationPipeline[] knotGenerationPipelines = new KnotGenerationPipeline[MULTI_THREAD ? 12 : 1];
-  private ExecutorService threadPool = Executors.newFixedThreadPool(9);
-
-  static {
-    String path = "";
-    try {
-      URL resource = Main.class.getResource("/");
-      path = Paths.get(resource.toURI()).toAbsolutePath().toString() + FileSystems.getDefault().getSeparator();
-    } catch (URISyntaxException e) {
-      e.printStackTrace();
-    }
-    RESOURCE_PATH = path;
-  }
+  private KnotGenerationPipeline knotGenerationPipeline;
+  private GenerationRunner generationRunner;
 
   // ===================================================================================================================
   // Functionality
   // ===================================================================================================================
   private void startKnotGenerations() {
-    for (int i = 0; i < knotGenerationPipelines.length; i++) {
-      if (MULTI_THREAD) {
-        // size = i == 0 ? 10 : (10 * (21 - i)); // Start with biggest grids
-        size = (i / 3 + 2) * 10;
-      }
+    Tilesets tileset = Configuration.get().getTileset();
+    int size = Configuration.get().getSingleThreadGridSize();
+    String fileName = tileset.toString().toLowerCase(Locale.ENGLISH) + "/" + size + "x" + size;
 
-      String fileName = TILESET.toString().toLowerCase(Locale.ENGLISH) + "/" + size + "x" + size;
-
-      if (TILESET == Tilesets.BASIC) {
-        knotGenerationPipelines[i] = new KnotGenerationPipeline(TILESET.getTileset(), size, size,
-            GridGeneratorBasic::new, GridAnalyzerBasic::new, fileName);
-      } else {
-        knotGenerationPipelines[i] = new KnotGenerationPipeline(TILESET.getTileset(), size, size,
-            GridGeneratorDouble::new, GridAnalyzerDouble::new, fileName);
-      }
-
-      startGenerationCycle(i);
+    if (tileset == Tilesets.BASIC) {
+      knotGenerationPipeline = new KnotGenerationPipeline(tileset.getTileset(), size, size, GridGeneratorBasic::new,
+          GridAnalyzerBasic::new, fileName);
+    } else {
+      knotGenerationPipeline = new KnotGenerationPipeline(tileset.getTileset(), size, size, GridGeneratorDouble::new,
+          GridAnalyzerDouble::new, fileName);
     }
+
+    startGenerationCycle();
   }
 
-  private void startGenerationCycle(int index) {
+  private void startGenerationCycle() {
     knotRenderer.setKnotBeingViewed(0);
-
-    if (MULTI_THREAD) {
-      threadPool.execute(knotGenerationPipelines[index]);
-    } else {
-      knotGenerationPipelines[index].run();
-    }
+    knotGenerationPipeline.run();
   }
 
   // ===================================================================================================================
@@ -127,7 +58,7 @@ public class Main extends PApplet {
   public void settings() {
     PAppletProxy.setSharedApplet(this);
 
-    if (MULTI_THREAD) {
+    if (Configuration.get().isMultiThread()) {
       size(300, 300, P2D);
     } else {
       size(1920, 1080, P2D);
@@ -140,28 +71,14 @@ public class Main extends PApplet {
     ((PGraphicsOpenGL) g).textureSampling(3);
     surface.setLocation(0, 0);
 
-    if (MULTI_THREAD) {
+    if (Configuration.get().isMultiThread()) {
       noLoop();
       new Thread(() -> {
         println();
         println("Starting...");
-        startKnotGenerations();
-
-        println();
-        println("Awaiting termination...");
-        threadPool.shutdown();
-        try {
-          threadPool.awaitTermination(1, TimeUnit.DAYS);
-        } catch (InterruptedException e) {
-          stopKnotGenerationPipelines();
-          e.printStackTrace();
-        }
-
-        println();
-        println("Flushing data...");
-        ResultExporter.closeAll();
-        PerformanceTimer.flushData();
-        println("Flushed data");
+        generationRunner = new GenerationRunner(Configuration.get());
+        generationRunner.start();
+        generationRunner.awaitCompletion();
 
         println();
         println("Exiting");
@@ -174,8 +91,8 @@ public class Main extends PApplet {
 
   @Override
   public void draw() {
-    if (!MULTI_THREAD) {
-      knotRenderer.display(knotGenerationPipelines[0], width, height);
+    if (!Configuration.get().isMultiThread()) {
+      knotRenderer.display(knotGenerationPipeline, width, height);
     }
   }
 
@@ -184,10 +101,8 @@ public class Main extends PApplet {
   // ===================================================================================================================
   @Override
   public void mousePressed() {
-    if (!MULTI_THREAD) {
-      for (int i = 0; i < knotGenerationPipelines.length; i++) {
-        startGenerationCycle(i);
-      }
+    if (!Configuration.get().isMultiThread()) {
+      startGenerationCycle();
     }
   }
 
@@ -195,22 +110,24 @@ public class Main extends PApplet {
   public void keyPressed() {
     if (key == 'w') {
       knotRenderer
-          .setKnotBeingViewed((knotRenderer.getKnotBeingViewed() + 1) % knotGenerationPipelines[0].getKnots().size());
+          .setKnotBeingViewed((knotRenderer.getKnotBeingViewed() + 1) % knotGenerationPipeline.getKnots().size());
 
     } else if (key == 's') {
       knotRenderer
-          .setKnotBeingViewed((knotRenderer.getKnotBeingViewed() - 1 + knotGenerationPipelines[0].getKnots().size())
-              % knotGenerationPipelines[0].getKnots().size());
+          .setKnotBeingViewed((knotRenderer.getKnotBeingViewed() - 1 + knotGenerationPipeline.getKnots().size())
+              % knotGenerationPipeline.getKnots().size());
 
     } else if (key == 'f') {
-      if (MULTI_THREAD) {
+      if (Configuration.get().isMultiThread()) {
         println();
         println("Finishing...");
-        stopKnotGenerationPipelines();
+        if (generationRunner != null) {
+          generationRunner.stop();
+        }
       } else {
         println();
         println("Flushing data...");
-        if (SAVE_RESULTS) {
+        if (Configuration.get().isSaveResults()) {
           ResultExporter.closeAll();
         }
         PerformanceTimer.flushData();
@@ -218,40 +135,32 @@ public class Main extends PApplet {
 
         exit();
       }
-    } else if (key == 'z' && !MULTI_THREAD) {
+    } else if (key == 'z' && !Configuration.get().isMultiThread()) {
       println("Saving...");
       saveKnotImage();
       println("Saved");
     }
   }
 
-  private void stopKnotGenerationPipelines() {
-    threadPool.shutdown();
-    // Terminate threads
-    for (KnotGenerationPipeline p : knotGenerationPipelines) {
-      p.stop();
-    }
-  }
-
   public void saveKnotImage() {
     // Init save
-    PGraphics p = createGraphics(knotGenerationPipelines[0].getGridW() * imgRes,
-        knotGenerationPipelines[0].getGridH() * imgRes);
+    PGraphics p = createGraphics(knotGenerationPipeline.getGridW() * imgRes,
+        knotGenerationPipeline.getGridH() * imgRes);
     p.beginDraw();
     p.background(0);
 
     // Draw Tiles
     p.imageMode(CORNER);
-    for (int x = 0; x < knotGenerationPipelines[0].getGridW(); x++) {
-      for (int y = 0; y < knotGenerationPipelines[0].getGridH(); y++) {
-        p.image(knotGenerationPipelines[0].getGenerator().getTileAtPos(x, y).img, x * imgRes, y * imgRes, imgRes,
+    for (int x = 0; x < knotGenerationPipeline.getGridW(); x++) {
+      for (int y = 0; y < knotGenerationPipeline.getGridH(); y++) {
+        p.image(knotGenerationPipeline.getGenerator().getTileAtPos(x, y).img, x * imgRes, y * imgRes, imgRes,
             imgRes);
       }
     }
     p.endDraw();
 
     // Save
-    String path = RESOURCE_PATH.substring(0, RESOURCE_PATH.length() - "target/classes/".length());
+    String path = Resources.RESOURCE_PATH.substring(0, Resources.RESOURCE_PATH.length() - "target/classes/".length());
     p.save(path + "results/gen result.png");
   }
 
@@ -259,6 +168,8 @@ public class Main extends PApplet {
   // Main function
   // ===================================================================================================================
   public static void main(String[] passedArgs) {
+    println(Configuration.load(passedArgs));
+
     if (passedArgs != null) {
       PApplet.main(new Object() {
       }.getClass().getEnclosingClass(), passedArgs);
@@ -0,0 +1,26 @@
+package nl.basmens;
+
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Paths;
+
+// The location of the resources, apart from Main so headless runs do not load the PApplet
+public final class Resources {
+  // The classes directory with a trailing separator, or empty if it could not be found
+  public static final String RESOURCE_PATH;
+
+  static {
+    String path = "";
+    try {
+      URL resource = Resources.class.getResource("/");
+      path = Paths.get(resource.toURI()).toAbsolutePath().toString() + FileSystems.getDefault().getSeparator();
+    } catch (URISyntaxException e) {
+      e.printStackTrace();
+    }
+    RESOURCE_PATH = path;
+  }
+
+  private Resources() {
+  }
+}
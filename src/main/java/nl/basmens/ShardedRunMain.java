@@ -0,0 +1,148 @@
+package nl.basmens;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import nl.basmens.generation.GridRandom;
+import nl.basmens.utils.io.JointHistogram;
+import nl.basmens.utils.io.ResultExporter;
+
+// Splits the grids first-grid-index until first-grid-index + grid-count of every grid size over several HeadlessMain
+// processes, and adds their results to the results directory when all of them are finished. Every grid is numbered by
+// a GridCounter, so the merged results are the same for any shard count, and the same as one HeadlessMain run of the
+// whole range with the same seed. Except for invariants that took longer than max-calc-time-per-invariant, which are
+// saved as errors and depend on the load of the machine.
+//
+// Usage: ShardedRunMain --shard-count=<count> --grid-count=<count> [configuration arguments...]
+// The configuration arguments are passed on to every process. Without --seed a random seed is chosen, which is
+// printed and passed on. The results of the processes are kept in <results-directory>-shards, which must not exist
+// yet, and none of the grids may be in the results already. With save-knot-records, the knot records stay there, with
+// the grid index of every knot. A single grid is generated again by a run with that grid index as first-grid-index and
+// a grid-count of 1.
+public final class ShardedRunMain {
+  private ShardedRunMain() {
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int shardCount = Runtime.getRuntime().availableProcessors();
+    ArrayList<String> arguments = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--shard-count=")) {
+        shardCount = Integer.parseInt(arg.substring("--shard-count=".length()));
+      } else {
+        arguments.add(arg);
+      }
+    }
+
+    Configuration configuration = Configuration.load(arguments.toArray(new String[0]));
+    if (configuration.getGridCount() <= 0) {
+      throw new IllegalArgumentException("ERROR: a sharded run needs a grid-count");
+    }
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("ERROR: invalid shard count " + shardCount);
+    }
+    System.out.println(configuration);
+
+    File resultsDirectory = ResultExporter.getResultsDirectory();
+    File shardsDirectory = new File(resultsDirectory.getPath() + "-shards");
+    if (shardsDirectory.exists()) {
+      throw new IllegalArgumentException("ERROR: " + shardsDirectory + " already exists, the shards would add to old "
+          + "results");
+    }
+    long first = configuration.getFirstGridIndex();
+    long end = first + configuration.getGridCount();
+    for (int size : configuration.getGridSizes()) {
+      String fileExportName = getFileExportName(configuration, size);
+      long jobSeed = GridRandom.getJobSeed(configuration.getSeed(), fileExportName);
+      long doneCount = ResultExporter.getExporter(fileExportName).getGridRanges().getCount(jobSeed, first, end);
+      if (doneCount > 0) {
+        throw new IllegalArgumentException("ERROR: " + doneCount + " grids of " + fileExportName + " are in the "
+            + "results already, the shards would count them again");
+      }
+    }
+    shardsDirectory.mkdirs();
+
+    // Run
+    long start = System.nanoTime();
+    List<Process> processes = startShards(arguments, configuration, shardCount, shardsDirectory);
+    Thread shutdownHook = new Thread(() -> processes.forEach(Process::destroy));
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+    boolean isFailed = false;
+    for (int i = 0; i < processes.size(); i++) {
+      int exitCode = processes.get(i).waitFor();
+      System.out.println("Shard " + i + " exited with code " + exitCode);
+      isFailed |= exitCode != 0;
+    }
+    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    if (isFailed) {
+      System.out.println("Not merging, the output of the shards is in " + shardsDirectory);
+      System.exit(1);
+    }
+
+    // Merge
+    for (int size : configuration.getGridSizes()) {
+      String fileExportName = getFileExportName(configuration, size);
+      JointHistogram merged = new JointHistogram();
+      for (int i = 0; i < shardCount; i++) {
+        File jointFile = new File(new File(shardsDirectory, Integer.toString(i)), fileExportName + ".joint");
+        if (jointFile.exists()) {
+          merged.addAll(JointHistogram.read(jointFile));
+        }
+      }
+      ResultExporter exporter = ResultExporter.getExporter(fileExportName);
+      exporter.getGridRanges().add(GridRandom.getJobSeed(configuration.getSeed(), fileExportName), first, end);
+      exporter.save(merged);
+      System.out.println("Merged " + merged.getKnotCount() + " knots into " + fileExportName);
+    }
+    ResultExporter.closeAll();
+
+    System.out.println(String.format(Locale.ENGLISH, "Finished %d grids in %d shards in %.2f seconds",
+        configuration.getGridCount() * configuration.getGridSizes().length, shardCount,
+        (System.nanoTime() - start) / 1E9));
+    System.exit(0);
+  }
+
+  private static String getFileExportName(Configuration configuration, int size) {
+    return configuration.getTileset().toString().toLowerCase(Locale.ENGLISH) + "/" + size + "x" + size;
+  }
+
+  private static List<Process> startShards(List<String> arguments, Configuration configuration, int shardCount,
+      File shardsDirectory) throws IOException {
+    String java = ProcessHandle.current().info().command().orElse("java");
+    long first = configuration.getFirstGridIndex();
+    long count = configuration.getGridCount();
+
+    ArrayList<Process> processes = new ArrayList<>();
+    for (int i = 0; i < shardCount; i++) {
+      // Shard i gets count / shardCount grids, the first count % shardCount shards one more
+      long shardFirst = first + i * (count / shardCount) + Math.min(i, count % shardCount);
+      long shardGridCount = count / shardCount + (i < count % shardCount ? 1 : 0);
+      if (shardGridCount == 0) {
+        continue;
+      }
+
+      File shardDirectory = new File(shardsDirectory, Integer.toString(i));
+      ArrayList<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+          HeadlessMain.class.getName()));
+      command.addAll(arguments);
+      // Later arguments override earlier ones
+      command.add("--seed=" + configuration.getSeed());
+      command.add("--first-grid-index=" + shardFirst);
+      command.add("--grid-count=" + shardGridCount);
+      command.add("--results-directory=" + shardDirectory.getAbsolutePath());
+
+      ProcessBuilder builder = new ProcessBuilder(command);
+      builder.redirectErrorStream(true);
+      builder.redirectOutput(new File(shardsDirectory, "shard " + i + " output.txt"));
+      processes.add(builder.start());
+      System.out.println("Started shard " + i + " with the grids " + shardFirst + " until "
+          + (shardFirst + shardGridCount));
+    }
+    return processes;
+  }
+}
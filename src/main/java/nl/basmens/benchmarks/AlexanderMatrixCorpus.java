@@ -0,0 +1,32 @@
+package nl.basmens.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Fixed, seeded corpus of matrices shaped like the alexander matrix of a knot with a given number of crossings:
+// every crossing (column) gets the four area entries -1, t, -t and 1, of which the first two areas are left out.
+final class AlexanderMatrixCorpus {
+  static final long SEED = 20_240_224L;
+
+  private AlexanderMatrixCorpus() {
+  }
+
+  // Returns entries as { column, row, coefficient, power }
+  static List<int[]> createEntries(Random random, int crossingCount) {
+    ArrayList<int[]> result = new ArrayList<>();
+    int[] coefficients = { -1, 1, -1, 1 };
+    int[] powers = { 0, 1, 1, 0 };
+
+    for (int column = 0; column < crossingCount; column++) {
+      for (int j = 0; j < 4; j++) {
+        // There are crossingCount + 2 areas
+        int area = random.nextInt(crossingCount + 2) - 2;
+        if (area >= 0) {
+          result.add(new int[] { column, area, coefficients[j], powers[j] });
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,85 @@
+package nl.basmens.benchmarks;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import nl.basmens.Configuration;
+import nl.basmens.utils.maths.ModularPolynomialMatrix;
+import nl.basmens.utils.maths.Monomial;
+import nl.basmens.utils.maths.Polynomial;
+import nl.basmens.utils.maths.PolynomialMatrix;
+
+// Verifies the modular alexander polynomial engine against the Bareiss determinant of PolynomialMatrix on a fixed
+// corpus of matrices shaped like alexander matrices (four area entries -1, t, -t and 1 per crossing), and compares
+// their speed. Determinants that could not be compared are reported, they do not count as a match.
+public final class AlexanderPolynomialEngineBenchmark {
+  private static final int[] SIZES = { 3, 5, 8, 10, 15, 20, 25, 30, 40 };
+  private static final int MATRICES_PER_SIZE = 50;
+  private static final long TIME_BUDGET_MILLIS = 60_000L;
+
+  private AlexanderPolynomialEngineBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    Random random = new Random(AlexanderMatrixCorpus.SEED);
+    int totalMismatches = 0;
+    int totalErrors = 0;
+
+    System.out.println("size | compared | mismatches | bareiss errors | bareiss ms | modular ms");
+    for (int size : SIZES) {
+      int compared = 0;
+      int mismatches = 0;
+      int errors = 0;
+      long bareissNanos = 0;
+      long modularNanos = 0;
+
+      for (int m = 0; m < MATRICES_PER_SIZE; m++) {
+        PolynomialMatrix polynomialMatrix = new PolynomialMatrix(size, size);
+        ModularPolynomialMatrix modularMatrix = new ModularPolynomialMatrix(size, size, 1);
+        List<int[]> entries = AlexanderMatrixCorpus.createEntries(random, size);
+        for (int[] e : entries) {
+          polynomialMatrix.get(e[0], e[1]).add(new Polynomial(new Monomial(e[2], e[3])));
+          modularMatrix.add(e[0], e[1], e[2], e[3]);
+        }
+
+        // Shift the start times, so that both engines get TIME_BUDGET_MILLIS instead of MAX_CALC_TIME_PER_INVARIANT
+        long start = System.nanoTime();
+        Polynomial modular = modularMatrix.getDeterminant(getShiftedStartTime());
+        modularNanos += System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Polynomial expected;
+        try {
+          expected = polynomialMatrix.getDeterminantBareiss(getShiftedStartTime());
+        } catch (RuntimeException e) {
+          errors++;
+          continue;
+        } finally {
+          bareissNanos += System.nanoTime() - start;
+        }
+
+        compared++;
+        if (!new Polynomial(expected).sub(modular).isZero()) {
+          mismatches++;
+          System.out.println("Mismatch for size " + size + ": expected " + expected + " but got " + modular);
+        }
+      }
+
+      totalMismatches += mismatches;
+      totalErrors += errors;
+      System.out.println(String.format(Locale.ENGLISH, "%4d | %8d | %10d | %14d | %10.2f | %10.2f", size, compared,
+          mismatches, errors, bareissNanos / 1E6 / MATRICES_PER_SIZE, modularNanos / 1E6 / MATRICES_PER_SIZE));
+    }
+
+    if (totalMismatches == 0 && totalErrors == 0) {
+      System.out.println("All determinants match");
+    } else {
+      System.out.println(totalMismatches + " mismatches found, " + totalErrors + " determinants not compared");
+    }
+  }
+
+  private static long getShiftedStartTime() {
+    return System.currentTimeMillis() + TIME_BUDGET_MILLIS - Configuration.get().getMaxCalcTimePerInvariant();
+  }
+}
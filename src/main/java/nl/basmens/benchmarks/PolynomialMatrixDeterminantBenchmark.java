@@ -0,0 +1,67 @@
+package nl.basmens.benchmarks;
+
+import java.util.Locale;
+import java.util.Random;
+
+import nl.basmens.Configuration;
+import nl.basmens.utils.maths.ModularPolynomialMatrix;
+import nl.basmens.utils.maths.Monomial;
+import nl.basmens.utils.maths.Polynomial;
+import nl.basmens.utils.maths.PolynomialMatrix;
+import nl.basmens.utils.maths.PolynomialMatrix.DeterminantStrategy;
+
+// Compares the determinant strategies of PolynomialMatrix on alexander shaped matrices of 10 to 120 crossings. Both
+// results are checked against the modular engine.
+public final class PolynomialMatrixDeterminantBenchmark {
+  private static final int[] SIZES = { 10, 20, 30, 40, 60, 80, 100, 120 };
+  private static final int MATRICES_PER_SIZE = 3;
+  private static final long TIME_BUDGET_MILLIS = 20_000L;
+
+  private PolynomialMatrixDeterminantBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    Random random = new Random(AlexanderMatrixCorpus.SEED);
+
+    System.out.println("size | strategy                | completed | wrong | avg ms");
+    for (int size : SIZES) {
+      PolynomialMatrix[] matrices = new PolynomialMatrix[MATRICES_PER_SIZE];
+      Polynomial[] expected = new Polynomial[MATRICES_PER_SIZE];
+      for (int m = 0; m < MATRICES_PER_SIZE; m++) {
+        matrices[m] = new PolynomialMatrix(size, size);
+        ModularPolynomialMatrix modularMatrix = new ModularPolynomialMatrix(size, size, 1);
+        for (int[] e : AlexanderMatrixCorpus.createEntries(random, size)) {
+          matrices[m].get(e[0], e[1]).add(new Polynomial(new Monomial(e[2], e[3])));
+          modularMatrix.add(e[0], e[1], e[2], e[3]);
+        }
+        expected[m] = modularMatrix.getDeterminant(System.currentTimeMillis());
+      }
+
+      for (DeterminantStrategy strategy : DeterminantStrategy.values()) {
+        int completed = 0;
+        int wrong = 0;
+        long nanos = 0;
+
+        for (int m = 0; m < MATRICES_PER_SIZE; m++) {
+          // Shift the start time, so that the strategies get TIME_BUDGET_MILLIS instead of MAX_CALC_TIME_PER_INVARIANT
+          long startTime = System.currentTimeMillis() + TIME_BUDGET_MILLIS
+              - Configuration.get().getMaxCalcTimePerInvariant();
+          long start = System.nanoTime();
+          try {
+            Polynomial result = matrices[m].getDeterminant(startTime, strategy);
+            completed++;
+            if (!new Polynomial(result).sub(expected[m]).isZero()) {
+              wrong++;
+            }
+          } catch (RuntimeException e) {
+            // Timed out or resulted in a remainder
+          }
+          nanos += System.nanoTime() - start;
+        }
+
+        System.out.println(String.format(Locale.ENGLISH, "%4d | %-23s | %9d | %5d | %.2f", size, strategy, completed,
+            wrong, nanos / 1E6 / MATRICES_PER_SIZE));
+      }
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package nl.basmens.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import nl.basmens.utils.collections.LongLongHashMap;
+import nl.basmens.utils.io.KnotJson;
+import nl.basmens.utils.io.PolynomialDictionary;
+import nl.basmens.utils.io.ResultJsonReader;
+import nl.basmens.utils.maths.Monomial;
+import nl.basmens.utils.maths.Polynomial;
+import processing.core.PApplet;
+import processing.data.JSONObject;
+
+// Compares loading a results JSON file with Processing's JSONObject, as ResultExporter used to, to ResultJsonReader.
+// The files are generated with a growing amount of buckets, and both loads are checked to give the same counts.
+public final class ResultJsonLoadBenchmark {
+  private static final int[] BUCKET_COUNTS = { 100, 400, 1_600, 3_200 };
+  private static final int POLYNOMIALS_PER_BUCKET = 100;
+  private static final int DETERMINANTS_PER_BUCKET = 20;
+  private static final int DISTINCT_POLYNOMIALS = 5_000;
+  private static final int RUNS = 3;
+  private static final long SEED = 1;
+
+  private ResultJsonLoadBenchmark() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    Random random = new Random(SEED);
+    int[] polynomialIds = new int[DISTINCT_POLYNOMIALS];
+    for (int i = 0; i < polynomialIds.length; i++) {
+      polynomialIds[i] = PolynomialDictionary.getId(createPolynomial(random));
+    }
+
+    System.out.println("buckets | file MB | JSONObject ms | reader ms | JSONObject heap MB | reader heap MB");
+    for (int bucketCount : BUCKET_COUNTS) {
+      File file = File.createTempFile("results", ".json");
+      file.deleteOnExit();
+      writeResults(file, random, polynomialIds, bucketCount);
+
+      long jsonObjectNanos = Long.MAX_VALUE;
+      long readerNanos = Long.MAX_VALUE;
+      long jsonObjectHeap = 0;
+      long readerHeap = 0;
+      for (int run = 0; run < RUNS; run++) {
+        HashMap<Integer, KnotJson> expectedLengths = new HashMap<>();
+        HashMap<Integer, KnotJson> expectedIntersections = new HashMap<>();
+        long heapBefore = getUsedHeap();
+        long start = System.nanoTime();
+        long expectedCount = loadJsonObject(file, expectedLengths, expectedIntersections);
+        jsonObjectNanos = Math.min(jsonObjectNanos, System.nanoTime() - start);
+        jsonObjectHeap = Math.max(jsonObjectHeap, getPeakHeap() - heapBefore);
+
+        HashMap<Integer, KnotJson> lengths = new HashMap<>();
+        HashMap<Integer, KnotJson> intersections = new HashMap<>();
+        heapBefore = getUsedHeap();
+        start = System.nanoTime();
+        long count = ResultJsonReader.read(file, lengths, intersections);
+        readerNanos = Math.min(readerNanos, System.nanoTime() - start);
+        readerHeap = Math.max(readerHeap, getPeakHeap() - heapBefore);
+
+        if (count != expectedCount || !isEqual(lengths, expectedLengths)
+            || !isEqual(intersections, expectedIntersections)) {
+          throw new IllegalStateException("ERROR: ResultJsonReader loaded different counts from " + file);
+        }
+      }
+
+      System.out.println(String.format(Locale.ENGLISH, "%7d | %7.1f | %13.1f | %9.1f | %18.1f | %14.1f", bucketCount,
+          file.length() / 1E6, jsonObjectNanos / 1E6, readerNanos / 1E6, jsonObjectHeap / 1E6, readerHeap / 1E6));
+      file.delete();
+    }
+  }
+
+  private static Polynomial createPolynomial(Random random) {
+    int degree = 2 + random.nextInt(30);
+    Monomial[] monomials = new Monomial[degree + 1];
+    for (int i = 0; i <= degree; i++) {
+      monomials[i] = new Monomial(random.nextInt(2_000_001) - 1_000_000L, i);
+    }
+    return new Polynomial(monomials);
+  }
+
+  private static void writeResults(File file, Random random, int[] polynomialIds, int bucketCount)
+      throws IOException {
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+      long knotCount = 0;
+      StringBuilder lengths = new StringBuilder();
+      StringBuilder intersections = new StringBuilder();
+      for (int bucket = 0; bucket < bucketCount; bucket++) {
+        KnotJson json = createKnotJson(random, polynomialIds);
+        knotCount += json.getCount();
+        lengths.append(bucket == 0 ? "" : ",").append("\n\"").append(bucket).append("\":").append(json);
+        intersections.append(bucket == 0 ? "" : ",").append("\n\"").append(bucket).append("\":").append(json);
+      }
+
+      writer.append("{\n\"count\":").append(Long.toString(knotCount));
+      writer.append(",\n\"length\":{").append(lengths).append("\n},\n\"intersections\":{").append(intersections);
+      writer.append("\n}\n}");
+    }
+  }
+
+  private static KnotJson createKnotJson(Random random, int[] polynomialIds) {
+    LongLongHashMap knotDeterminants = new LongLongHashMap();
+    LongLongHashMap alexanderPolynomials = new LongLongHashMap();
+    long count = 0;
+    for (int i = 0; i < POLYNOMIALS_PER_BUCKET; i++) {
+      long n = 1 + random.nextInt(1_000_000);
+      alexanderPolynomials.addTo(polynomialIds[random.nextInt(polynomialIds.length)], n);
+      count += n;
+    }
+
+    long remaining = count;
+    for (int i = 0; i < DETERMINANTS_PER_BUCKET - 1; i++) {
+      long n = (long) (random.nextDouble() * remaining / 2);
+      knotDeterminants.addTo(1 + 2L * random.nextInt(100_000), n);
+      remaining -= n;
+    }
+    knotDeterminants.addTo(1, remaining);
+
+    KnotJson json = new KnotJson();
+    json.add(count, knotDeterminants, alexanderPolynomials);
+    return json;
+  }
+
+  // The way ResultExporter loaded results before ResultJsonReader
+  private static long loadJsonObject(File file, Map<Integer, KnotJson> lengths, Map<Integer, KnotJson> intersections) {
+    JSONObject json = PApplet.loadJSONObject(file);
+    JSONObject lengthJson = json.getJSONObject("length");
+    ((Set<String>) lengthJson.keys())
+        .forEach(k -> lengths.put(Integer.parseInt(k), readKnotJson(lengthJson.getJSONObject(k))));
+    JSONObject intersectionJson = json.getJSONObject("intersections");
+    ((Set<String>) intersectionJson.keys())
+        .forEach(k -> intersections.put(Integer.parseInt(k), readKnotJson(intersectionJson.getJSONObject(k))));
+    return json.getLong("count", 0);
+  }
+
+  private static KnotJson readKnotJson(JSONObject json) {
+    LongLongHashMap knotDeterminants = new LongLongHashMap();
+    JSONObject kdJson = json.getJSONObject("knot determinant");
+    if (kdJson != null) {
+      ((Set<String>) kdJson.keys()).forEach(k -> knotDeterminants.addTo(Long.parseLong(k), kdJson.getLong(k)));
+    }
+
+    LongLongHashMap alexanderPolynomials = new LongLongHashMap();
+    JSONObject apJson = json.getJSONObject("alexander polynomial");
+    if (apJson != null) {
+      ((Set<String>) apJson.keys()).forEach(k -> alexanderPolynomials.addTo(
+          PolynomialDictionary.getId(Polynomial.parseString(k)), apJson.getLong(k)));
+    }
+
+    KnotJson knotJson = new KnotJson();
+    knotJson.add(json.getLong("count", 0), knotDeterminants, alexanderPolynomials);
+    return knotJson;
+  }
+
+  private static boolean isEqual(Map<Integer, KnotJson> a, Map<Integer, KnotJson> b) {
+    if (!a.keySet().equals(b.keySet())) {
+      return false;
+    }
+    for (Map.Entry<Integer, KnotJson> e : a.entrySet()) {
+      KnotJson json = e.getValue();
+      KnotJson other = b.get(e.getKey());
+      // The entries are in a different order, but have the same length
+      if (json.getCount() != other.getCount() || json.toString().length() != other.toString().length()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long getUsedHeap() {
+    System.gc();
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  // Approximation: the heap in use right after loading, before the garbage collector runs
+  private static long getPeakHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,135 @@
+package nl.basmens.benchmarks;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import nl.basmens.generation.Tile;
+import nl.basmens.generation.TileSampler;
+import nl.basmens.generation.Tileset;
+
+// Compares drawing the tiles of a grid one nextInt at a time with TileSampler, for the tile counts of the tilesets and
+// the grid sizes of the big runs, and checks that every tile index is drawn about equally often. Then compares
+// weighting tiles by adding them several times with the alias table of a weighted Tileset, and checks that every tile
+// is drawn about as often as its weight says.
+public final class TileSamplingBenchmark {
+  private static final long SEED = 20_240_601L;
+  private static final int[] TILE_COUNTS = { 4, 9, 16, 22 };
+  private static final int[] GRID_SIZES = { 200, 3000 };
+  private static final double[][] WEIGHTS = { { 1, 1, 1, 1, 1, 1, 1, 2 }, { 1, 1, 2, 1, 1, 1, 2, 1, 1, 1, 1, 2, 1, 1,
+      1, 1, 1, 1 }, { 0.5, 1, 0.25, 2, 1, 1, 3.5, 1, 1 } };
+  private static final int WARMUP_ROUNDS = 3;
+
+  private TileSamplingBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    System.out.println("tile count | grid size | nextInt ms per grid | TileSampler ms per grid | max deviation");
+    for (int tileCount : TILE_COUNTS) {
+      for (int gridSize : GRID_SIZES) {
+        byte[] indices = new byte[(gridSize - 2) * (gridSize - 2)];
+        int grids = Math.max(1, 20_000_000 / indices.length);
+
+        long nextIntNanos = 0;
+        long samplerNanos = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+          SplittableRandom random = new SplittableRandom(SEED);
+          long start = System.nanoTime();
+          for (int g = 0; g < grids; g++) {
+            for (int i = 0; i < indices.length; i++) {
+              indices[i] = (byte) random.nextInt(tileCount);
+            }
+          }
+          nextIntNanos = System.nanoTime() - start;
+
+          random = new SplittableRandom(SEED);
+          start = System.nanoTime();
+          for (int g = 0; g < grids; g++) {
+            TileSampler.fill(random, tileCount, indices);
+          }
+          samplerNanos = System.nanoTime() - start;
+        }
+
+        System.out.println(String.format(Locale.ENGLISH, "%10d | %9d | %19.3f | %23.3f | %.4f", tileCount, gridSize,
+            nextIntNanos / 1E6 / grids, samplerNanos / 1E6 / grids, getMaxDeviation(indices, tileCount)));
+      }
+    }
+
+    System.out.println();
+    runWeighted();
+  }
+
+  private static void runWeighted() {
+    System.out.println("weights | grid size | duplicated tiles ms per grid | alias table ms per grid | max deviation");
+    for (double[] weights : WEIGHTS) {
+      Tile[] tiles = new Tile[weights.length];
+      for (int i = 0; i < tiles.length; i++) {
+        tiles[i] = new Tile(null) {
+        };
+      }
+      Tileset tileset = new Tileset(tiles, weights);
+
+      // Every tile as often as its weight, only possible for integer weights
+      int duplicatedCount = 0;
+      boolean isIntegral = true;
+      for (double weight : weights) {
+        duplicatedCount += (int) weight;
+        isIntegral &= weight == Math.rint(weight);
+      }
+
+      for (int gridSize : GRID_SIZES) {
+        byte[] indices = new byte[(gridSize - 2) * (gridSize - 2)];
+        int grids = Math.max(1, 20_000_000 / indices.length);
+
+        long duplicatedNanos = 0;
+        long aliasNanos = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+          SplittableRandom random = new SplittableRandom(SEED);
+          long start = System.nanoTime();
+          if (isIntegral) {
+            for (int g = 0; g < grids; g++) {
+              TileSampler.fill(random, duplicatedCount, indices);
+            }
+          }
+          duplicatedNanos = System.nanoTime() - start;
+
+          random = new SplittableRandom(SEED);
+          start = System.nanoTime();
+          for (int g = 0; g < grids; g++) {
+            tileset.sample(random, indices);
+          }
+          aliasNanos = System.nanoTime() - start;
+        }
+
+        double[] expected = new double[weights.length];
+        for (int i = 0; i < expected.length; i++) {
+          expected[i] = tileset.getProbability(i);
+        }
+        System.out.println(String.format(Locale.ENGLISH, "%s | %d | %s | %.3f | %.4f", Arrays.toString(weights),
+            gridSize, isIntegral ? String.format(Locale.ENGLISH, "%.3f", duplicatedNanos / 1E6 / grids) : "-",
+            aliasNanos / 1E6 / grids, getMaxDeviation(indices, expected)));
+      }
+    }
+  }
+
+  // The biggest relative difference between how often an index is drawn and how often it is expected
+  private static double getMaxDeviation(byte[] indices, int tileCount) {
+    double[] expected = new double[tileCount];
+    Arrays.fill(expected, 1.0 / tileCount);
+    return getMaxDeviation(indices, expected);
+  }
+
+  private static double getMaxDeviation(byte[] indices, double[] probabilities) {
+    long[] counts = new long[probabilities.length];
+    for (byte index : indices) {
+      counts[index & 0xFF]++;
+    }
+
+    double maxDeviation = 0;
+    for (int i = 0; i < counts.length; i++) {
+      double expected = indices.length * probabilities[i];
+      maxDeviation = Math.max(maxDeviation, Math.abs(counts[i] - expected) / expected);
+    }
+    return maxDeviation;
+  }
+}
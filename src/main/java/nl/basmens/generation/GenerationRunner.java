@@ -0,0 +1,122 @@
+package nl.basmens.generation;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import nl.basmens.Configuration;
+import nl.basmens.knot.InvariantCache;
+import nl.basmens.utils.concurrent.PerformanceTimer;
+import nl.basmens.utils.io.ResultExporter;
+
+// Runs the generation threads until every grid size reaches its target, and saves the results. Does not depend on a
+// PApplet, so it is used by both Main and HeadlessMain.
+public class GenerationRunner {
+  private final Configuration configuration;
+  private final ExecutorService threadPool;
+  private InvariantWorkerPool invariantWorkerPool;
+  private GenerationScheduler scheduler;
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  public GenerationRunner(Configuration configuration) {
+    this.configuration = configuration;
+    threadPool = Executors.newFixedThreadPool(configuration.getGenerationThreadCount());
+  }
+
+  // =================================================================================================================
+  // Functionality
+  // =================================================================================================================
+  public void start() {
+    if (configuration.isSaveResults()) {
+      invariantWorkerPool = new InvariantWorkerPool(configuration.getGenerationThreadCount(),
+          configuration.getInvariantThreadCount(), configuration.getInvariantQueueCapacity(),
+          configuration.isSaveTricolorability(), configuration.isSaveKnotDeterminant(),
+          configuration.isSaveAlexanderPolynomial());
+    }
+
+    scheduler = new GenerationScheduler(configuration.getTileset(), configuration.getGridSizes(),
+        configuration.getTargetKnotCount(), configuration.getSchedulerSliceTime(), invariantWorkerPool,
+        configuration.getSeed(), configuration.getFirstGridIndex(), configuration.getGridCount());
+    startStatisticsReporter();
+    for (int i = 0; i < configuration.getGenerationThreadCount(); i++) {
+      threadPool.execute(scheduler::runWorker);
+    }
+  }
+
+  private void startStatisticsReporter() {
+    Thread reporter = new Thread(() -> {
+      try {
+        while (true) {
+          Thread.sleep(configuration.getStatisticsReportInterval());
+          System.out.println();
+          System.out.println(scheduler.getStatistics());
+          if (invariantWorkerPool != null) {
+            System.out.println(invariantWorkerPool.getStatistics());
+            System.out.println(InvariantCache.getStatistics());
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, "statistics-reporter");
+    reporter.setDaemon(true);
+    reporter.start();
+  }
+
+  // Blocks until every generation thread has stopped, then finishes the remaining invariant calculations and flushes
+  // the data
+  public void awaitCompletion() {
+    System.out.println();
+    System.out.println("Awaiting termination...");
+    threadPool.shutdown();
+    try {
+      threadPool.awaitTermination(1, TimeUnit.DAYS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      stop();
+      e.printStackTrace();
+    }
+
+    System.out.println();
+    System.out.println("Finishing invariant calculations...");
+    try {
+      if (invariantWorkerPool != null) {
+        invariantWorkerPool.close();
+        System.out.println(invariantWorkerPool.getStatistics());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      e.printStackTrace();
+    }
+
+    System.out.println();
+    System.out.println("Flushing data...");
+    ResultExporter.closeAll();
+    PerformanceTimer.flushData();
+    System.out.println("Flushed data");
+
+    System.out.println();
+    System.out.println(InvariantCache.getStatistics());
+  }
+
+  public void stop() {
+    threadPool.shutdown();
+    // Terminate threads
+    if (scheduler != null) {
+      scheduler.stop();
+    }
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public GenerationScheduler getScheduler() {
+    return scheduler;
+  }
+
+  public InvariantWorkerPool getInvariantWorkerPool() {
+    return invariantWorkerPool;
+  }
+}
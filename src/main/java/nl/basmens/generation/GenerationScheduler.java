@@ -0,0 +1,255 @@
+package nl.basmens.generation;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.basmens.Configuration;
+import nl.basmens.generation.analyzers.GridAnalyzerBasic;
+import nl.basmens.generation.analyzers.GridAnalyzerDouble;
+import nl.basmens.generation.generators.GridGeneratorBasic;
+import nl.basmens.generation.generators.GridGeneratorDouble;
+import nl.basmens.utils.concurrent.PerformanceTimer;
+import nl.basmens.utils.io.GridRanges;
+import nl.basmens.utils.io.ResultExporter;
+
+// Divides the generation threads over the grid sizes. Every grid size is a job with a remaining amount of knots and a
+// measured amount of knots per second per thread. The threads work on a job for one time slice, and then pick the
+// job with the most remaining work per assigned thread, so all grid sizes reach their target at about the same time.
+// When a grid count is given, the target of every job is a range of grids numbered by a GridCounter instead of an
+// amount of knots.
+public class GenerationScheduler {
+  // Weight of the newest time slice in the measured rate
+  private static final double RATE_SMOOTHING = 0.2;
+
+  private final Job[] jobs;
+  private final long sliceNanos;
+  private final InvariantWorkerPool invariantWorkerPool;
+
+  private volatile boolean running = true;
+
+  private final class Job {
+    private final Tilesets tileset;
+    private final int size;
+    private final String fileExportName;
+    private final long targetKnotCount;
+
+    // Knots generated, including the ones saved by a previous run
+    private final AtomicLong knotCount;
+    private final long loadedKnotCount;
+    private final GridCounter gridCounter; // Null if the target is targetKnotCount
+    private final GridRanges gridRanges; // The grids in the results, null if the results are not saved
+    // Pipelines are not thread safe, so every thread working on this job takes its own
+    private final ConcurrentLinkedQueue<KnotGenerationPipeline> idlePipelines = new ConcurrentLinkedQueue<>();
+    // Every pipeline of this job gets its own random streams, see GridRandom
+    private final AtomicInteger pipelineCount = new AtomicInteger();
+
+    // Guarded by the scheduler
+    private int assignedThreads;
+    private double knotsPerSecondPerThread = Double.NaN;
+    private boolean isClosed;
+
+    private Job(Tilesets tileset, int size, long targetKnotCount, long seed, long firstGridIndex, long gridCount) {
+      this.tileset = tileset;
+      this.size = size;
+      this.targetKnotCount = targetKnotCount;
+      fileExportName = tileset.toString().toLowerCase(Locale.ENGLISH) + "/" + size + "x" + size;
+      ResultExporter exporter = ResultExporter.getExporter(fileExportName);
+      loadedKnotCount = exporter.getKnotCount();
+      gridRanges = Configuration.get().isSaveResults() ? exporter.getGridRanges() : null;
+      knotCount = new AtomicLong(loadedKnotCount);
+      gridCounter = gridCount > 0 ? new GridCounter(seed, fileExportName, firstGridIndex, gridCount, gridRanges)
+          : null;
+      if (gridCounter != null && gridCounter.getSkippedCount() > 0) {
+        System.out.println("Skipping " + gridCounter.getSkippedCount() + " grids of " + fileExportName
+            + " that are in the results already");
+      }
+    }
+
+    private boolean isFinished() {
+      return gridCounter != null ? gridCounter.isExhausted() : knotCount.get() >= targetKnotCount;
+    }
+
+    private long getRemainingKnots() {
+      if (gridCounter != null) {
+        // Estimated from the knots per grid so far
+        long gridsDone = Math.max(1, gridCounter.getHandedOutCount());
+        return (long) ((double) gridCounter.getRemainingCount() * (knotCount.get() - loadedKnotCount) / gridsDone);
+      }
+      return Math.max(0, targetKnotCount - knotCount.get());
+    }
+
+    private boolean isMeasured() {
+      return !Double.isNaN(knotsPerSecondPerThread);
+    }
+
+    // Time it takes one thread to finish this job
+    private double getRemainingThreadSeconds() {
+      return getRemainingKnots() / Math.max(knotsPerSecondPerThread, 1E-9);
+    }
+
+    private KnotGenerationPipeline takePipeline() {
+      KnotGenerationPipeline pipeline = idlePipelines.poll();
+      if (pipeline != null) {
+        return pipeline;
+      }
+
+      int pipelineIndex = pipelineCount.getAndIncrement();
+      if (tileset == Tilesets.BASIC) {
+        return new KnotGenerationPipeline(tileset.getTileset(), size, size, GridGeneratorBasic::new,
+            GridAnalyzerBasic::new, fileExportName, invariantWorkerPool, pipelineIndex, gridCounter, gridRanges);
+      } else {
+        return new KnotGenerationPipeline(tileset.getTileset(), size, size, GridGeneratorDouble::new,
+            GridAnalyzerDouble::new, fileExportName, invariantWorkerPool, pipelineIndex, gridCounter, gridRanges);
+      }
+    }
+  }
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  // With a gridCount of 0 every job generates targetKnotCount knots, otherwise the grids firstGridIndex until
+  // firstGridIndex + gridCount
+  public GenerationScheduler(Tilesets tileset, int[] gridSizes, long targetKnotCount, long sliceTime,
+      InvariantWorkerPool invariantWorkerPool, long seed, long firstGridIndex, long gridCount) {
+    this.invariantWorkerPool = invariantWorkerPool;
+    sliceNanos = sliceTime * 1_000_000L;
+
+    jobs = new Job[gridSizes.length];
+    for (int i = 0; i < gridSizes.length; i++) {
+      jobs[i] = new Job(tileset, gridSizes[i], targetKnotCount, seed, firstGridIndex, gridCount);
+    }
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+
+  // Run by every generation thread, returns when all jobs are finished or the scheduler is stopped
+  public void runWorker() {
+    Job job = acquire();
+    while (job != null) {
+      KnotGenerationPipeline pipeline = job.takePipeline();
+      long generated = 0;
+      long start = System.nanoTime();
+      long deadline = start + sliceNanos;
+
+      PerformanceTimer timer = new PerformanceTimer(getClass(), "slice - " + job.fileExportName);
+      while (running && !Thread.currentThread().isInterrupted() && !job.isFinished()
+          && System.nanoTime() - deadline < 0) {
+        int count = pipeline.runThreadedCycle();
+        job.knotCount.addAndGet(count);
+        generated += count;
+      }
+      timer.stop();
+
+      job = release(job, pipeline, generated, System.nanoTime() - start);
+    }
+  }
+
+  // Returns the job the calling thread should work on next, or null if there is none
+  private synchronized Job acquire() {
+    if (!running || Thread.currentThread().isInterrupted()) {
+      return null;
+    }
+
+    Job best = null;
+    double bestScore = Double.NEGATIVE_INFINITY;
+    for (Job job : jobs) {
+      if (job.isFinished()) {
+        continue;
+      }
+
+      double score;
+      if (job.assignedThreads == 0) {
+        // A job without threads never finishes, and its measured rate gets outdated
+        score = Double.POSITIVE_INFINITY;
+      } else if (!job.isMeasured()) {
+        // A job that has no measurement yet only gets another thread when no other job is left, a thread is never
+        // left idle
+        score = -1;
+      } else {
+        score = job.getRemainingThreadSeconds() / (job.assignedThreads + 1);
+      }
+
+      if (score > bestScore) {
+        best = job;
+        bestScore = score;
+      }
+    }
+
+    if (best != null) {
+      best.assignedThreads++;
+    }
+    return best;
+  }
+
+  private Job release(Job job, KnotGenerationPipeline pipeline, long generated, long busyNanos) {
+    boolean shouldClose = false;
+    synchronized (this) {
+      job.assignedThreads--;
+
+      // Time slices that were cut short by the end of the job say little about the rate
+      if (busyNanos >= sliceNanos / 2 || !job.isMeasured()) {
+        double rate = generated / Math.max(busyNanos / 1E9, 1E-9);
+        job.knotsPerSecondPerThread = job.isMeasured()
+            ? RATE_SMOOTHING * rate + (1 - RATE_SMOOTHING) * job.knotsPerSecondPerThread
+            : rate;
+      }
+
+      if (job.isFinished() && job.assignedThreads == 0 && !job.isClosed) {
+        job.isClosed = true;
+        shouldClose = true;
+      }
+    }
+
+    if (shouldClose) {
+      System.out.println("Finished " + job.fileExportName);
+      pipeline.awaitExport();
+      job.idlePipelines.clear();
+    } else {
+      job.idlePipelines.add(pipeline);
+    }
+    return acquire();
+  }
+
+  public void stop() {
+    running = false;
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public boolean isRunning() {
+    return running;
+  }
+
+  public synchronized String getStatistics() {
+    StringBuilder result = new StringBuilder("Scheduler:");
+    for (Job job : jobs) {
+      String projection;
+      if (job.isFinished()) {
+        projection = "finished";
+      } else if (!job.isMeasured() || job.assignedThreads == 0) {
+        projection = "completion unknown";
+      } else {
+        projection = "projected completion in " + formatDuration(job.getRemainingThreadSeconds() / job.assignedThreads);
+      }
+
+      String progress = job.gridCounter != null
+          ? String.format(Locale.ENGLISH, "%d knots in %d / %d grids", job.knotCount.get(),
+              job.gridCounter.getHandedOutCount(), job.gridCounter.getCount())
+          : String.format(Locale.ENGLISH, "%d / %d knots", job.knotCount.get(), job.targetKnotCount);
+      result.append(String.format(Locale.ENGLISH, "%n %s: %s, %d threads, %.1f knots/s per thread, %s",
+          job.fileExportName, progress, job.assignedThreads, job.isMeasured() ? job.knotsPerSecondPerThread : 0,
+          projection));
+    }
+    return result.toString();
+  }
+
+  private static String formatDuration(double seconds) {
+    long s = (long) Math.ceil(seconds);
+    return String.format(Locale.ENGLISH, "%dh %02dm %02ds", s / 3600, (s / 60) % 60, s % 60);
+  }
+}
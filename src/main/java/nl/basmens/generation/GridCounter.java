@@ -0,0 +1,96 @@
+package nl.basmens.generation;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.basmens.utils.io.GridRanges;
+
+// Hands out the grid numbers of a job, first until first + count, to the pipelines of that job. Grid number n is
+// generated with GridRandom.getGridRandom(jobSeed, n), so it does not matter which pipeline, thread or process
+// generates it. Runs that split a range of grids therefore have the same results together as one run of the whole
+// range. Grids that are in the GridRanges of the results already are skipped, and handed out grids are added to them.
+public final class GridCounter {
+  private final long jobSeed;
+  private final GridRanges gridRanges; // Null if the results are not saved
+  // The parts of the range that are not in the results yet, as first and end pairs
+  private final long[] missing;
+  private final long missingCount;
+  private final long skippedCount;
+  private final AtomicLong next = new AtomicLong(); // Counts the missing grids only
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  public GridCounter(long masterSeed, String fileExportName, long first, long count, GridRanges gridRanges) {
+    if (first < 0 || count < 0 || first + count < first) {
+      throw new IllegalArgumentException("ERROR: invalid grid range " + first + " + " + count);
+    }
+
+    jobSeed = GridRandom.getJobSeed(masterSeed, fileExportName);
+    this.gridRanges = gridRanges;
+    missing = gridRanges != null ? gridRanges.getMissing(jobSeed, first, first + count)
+        : new long[] { first, first + count };
+    long total = 0;
+    for (int i = 0; i < missing.length; i += 2) {
+      total += missing[i + 1] - missing[i];
+    }
+    missingCount = total;
+    skippedCount = count - total;
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+
+  // Returns the number of the next grid to generate, or -1 if every grid is handed out
+  public long next() {
+    if (next.get() >= missingCount) {
+      return -1;
+    }
+    long n = next.getAndIncrement();
+    if (n >= missingCount) {
+      return -1;
+    }
+
+    // There are only a few parts, unless the results have many holes
+    int i = 0;
+    while (n >= missing[i + 1] - missing[i]) {
+      n -= missing[i + 1] - missing[i];
+      i += 2;
+    }
+    long gridIndex = missing[i] + n;
+    if (gridRanges != null) {
+      gridRanges.add(jobSeed, gridIndex);
+    }
+    return gridIndex;
+  }
+
+  public SplittableRandom getGridRandom(long gridIndex) {
+    return GridRandom.getGridRandom(jobSeed, gridIndex);
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public boolean isExhausted() {
+    return next.get() >= missingCount;
+  }
+
+  // The grids to generate in this run, without the skipped ones
+  public long getCount() {
+    return missingCount;
+  }
+
+  // The grids of the range that were in the results already
+  public long getSkippedCount() {
+    return skippedCount;
+  }
+
+  public long getHandedOutCount() {
+    return Math.min(next.get(), missingCount);
+  }
+
+  public long getRemainingCount() {
+    return getCount() - getHandedOutCount();
+  }
+}
@@ -0,0 +1,41 @@
+package nl.basmens.generation;
+
+import java.util.SplittableRandom;
+
+// Derives the random streams of the generation from the master seed of the configuration. Every job, an export name,
+// has its own seed, and every grid its own SplittableRandom, so the threads never share a random. Grids are numbered
+// per pipeline, or per job when a GridCounter is used: grid number n can be generated again from the master seed, the
+// export name, the pipeline index without a GridCounter, and n.
+public final class GridRandom {
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  private GridRandom() {
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+  public static long getJobSeed(long masterSeed, String fileExportName) {
+    return mix(masterSeed + GOLDEN_GAMMA * (fileExportName.hashCode() & 0xFFFFFFFFL));
+  }
+
+  public static long getPipelineSeed(long masterSeed, String fileExportName, int pipelineIndex) {
+    return mix(getJobSeed(masterSeed, fileExportName) + GOLDEN_GAMMA * (pipelineIndex + 1L));
+  }
+
+  // The seed is that of a pipeline, or of a job when its grids are numbered by a GridCounter
+  public static long getGridSeed(long seed, long gridIndex) {
+    return mix(seed + GOLDEN_GAMMA * (gridIndex + 1));
+  }
+
+  public static SplittableRandom getGridRandom(long seed, long gridIndex) {
+    return new SplittableRandom(getGridSeed(seed, gridIndex));
+  }
+
+  // The finalizer of SplitMix64, every bit of the input affects every bit of the output
+  static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,203 @@
+package nl.basmens.generation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import nl.basmens.knot.Knot;
+import nl.basmens.utils.concurrent.PerformanceTimer;
+import nl.basmens.utils.concurrent.StageStatistics;
+import nl.basmens.utils.io.ResultExporter;
+
+// Second and third stage of the knot generation. The KnotGenerationPipelines submit their knots into a bounded queue,
+// which blocks them when the invariant threads can not keep up. The invariant threads calculate the invariants and
+// pass the knots on to a single exporter thread, which saves them to their ResultExporter.
+public class InvariantWorkerPool {
+  private static final long POLL_TIMEOUT = 100; // In millis
+  private static final int EXPORT_BATCH_SIZE = 1_000;
+
+  private final BlockingQueue<Job> invariantQueue;
+  private final BlockingQueue<Job> exportQueue = new LinkedBlockingQueue<>();
+  private final boolean[] invariants;
+
+  private final Thread[] invariantThreads;
+  private final Thread exportThread;
+
+  private final StageStatistics generationStage;
+  private final StageStatistics invariantStage;
+  private final StageStatistics exportStage;
+
+  // Knots submitted but not yet exported, per file export name
+  private final HashMap<String, Long> pendingCounts = new HashMap<>();
+
+  private volatile boolean isClosing;
+  private volatile boolean hasInvariantThreadsStopped;
+
+  private static final class Job {
+    private final Knot knot;
+    private final String fileExportName;
+
+    private Job(Knot knot, String fileExportName) {
+      this.knot = knot;
+      this.fileExportName = fileExportName;
+    }
+  }
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  public InvariantWorkerPool(int generationThreadCount, int invariantThreadCount, int queueCapacity,
+      boolean tricolorability, boolean knotDeterminant, boolean alexanderPolynomial) {
+    invariantQueue = new ArrayBlockingQueue<>(queueCapacity);
+    invariants = new boolean[] { tricolorability, knotDeterminant, alexanderPolynomial };
+
+    generationStage = new StageStatistics("generation", generationThreadCount);
+    invariantStage = new StageStatistics("invariants", invariantThreadCount);
+    exportStage = new StageStatistics("export", 1);
+
+    invariantThreads = new Thread[invariantThreadCount];
+    for (int i = 0; i < invariantThreadCount; i++) {
+      invariantThreads[i] = new Thread(this::runInvariantThread, "invariant-worker-" + i);
+      invariantThreads[i].setDaemon(true);
+      invariantThreads[i].start();
+    }
+    exportThread = new Thread(this::runExportThread, "invariant-exporter");
+    exportThread.setDaemon(true);
+    exportThread.start();
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+
+  // Blocks while the queue is full
+  public void submit(List<Knot> knots, String fileExportName) throws InterruptedException {
+    if (isClosing) {
+      throw new IllegalStateException("ERROR: cannot submit knots to a closed InvariantWorkerPool");
+    }
+
+    synchronized (pendingCounts) {
+      pendingCounts.merge(fileExportName, (long) knots.size(), Long::sum);
+    }
+    for (Knot k : knots) {
+      invariantQueue.put(new Job(k, fileExportName));
+    }
+  }
+
+  // Blocks until every knot submitted for fileExportName is saved
+  public void awaitExported(String fileExportName) throws InterruptedException {
+    synchronized (pendingCounts) {
+      while (pendingCounts.getOrDefault(fileExportName, 0L) > 0) {
+        pendingCounts.wait();
+      }
+    }
+  }
+
+  // Finishes the submitted knots and stops the threads
+  public void close() throws InterruptedException {
+    isClosing = true;
+    for (Thread t : invariantThreads) {
+      t.join();
+    }
+    hasInvariantThreadsStopped = true;
+    exportThread.join();
+  }
+
+  private void runInvariantThread() {
+    try {
+      while (!isClosing || !invariantQueue.isEmpty()) {
+        Job job = invariantQueue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+        if (job == null) {
+          continue;
+        }
+
+        long start = System.nanoTime();
+        PerformanceTimer timer = new PerformanceTimer(getClass(), "calc invariants");
+        try {
+          job.knot.startCalcInvariants(invariants[0], invariants[1], invariants[2]);
+        } catch (RuntimeException e) {
+          // Should not happen, the invariant calculations handle their own errors
+          e.printStackTrace();
+        }
+        timer.stop();
+        invariantStage.record(System.nanoTime() - start, 1);
+
+        exportQueue.put(job);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void runExportThread() {
+    ArrayList<Job> batch = new ArrayList<>();
+    HashMap<String, ArrayList<Knot>> knotsPerExport = new HashMap<>();
+    try {
+      while (!hasInvariantThreadsStopped || !exportQueue.isEmpty()) {
+        Job first = exportQueue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+
+        long start = System.nanoTime();
+        batch.add(first);
+        exportQueue.drainTo(batch, EXPORT_BATCH_SIZE - 1);
+        for (Job job : batch) {
+          knotsPerExport.computeIfAbsent(job.fileExportName, s -> new ArrayList<>()).add(job.knot);
+        }
+
+        for (Entry<String, ArrayList<Knot>> e : knotsPerExport.entrySet()) {
+          if (!e.getValue().isEmpty()) {
+            ResultExporter.getExporter(e.getKey()).save(e.getValue());
+          }
+        }
+
+        synchronized (pendingCounts) {
+          for (Entry<String, ArrayList<Knot>> e : knotsPerExport.entrySet()) {
+            pendingCounts.merge(e.getKey(), (long) -e.getValue().size(), Long::sum);
+          }
+          pendingCounts.notifyAll();
+        }
+
+        exportStage.record(System.nanoTime() - start, batch.size());
+        batch.clear();
+        knotsPerExport.values().forEach(ArrayList::clear);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public int getInvariantQueueDepth() {
+    return invariantQueue.size();
+  }
+
+  public int getExportQueueDepth() {
+    return exportQueue.size();
+  }
+
+  public StageStatistics getGenerationStage() {
+    return generationStage;
+  }
+
+  public StageStatistics getInvariantStage() {
+    return invariantStage;
+  }
+
+  public StageStatistics getExportStage() {
+    return exportStage;
+  }
+
+  public String getStatistics() {
+    return "Invariant queue: " + getInvariantQueueDepth() + ", export queue: " + getExportQueueDepth() + "\n"
+        + generationStage + "\n" + invariantStage + "\n" + exportStage;
+  }
+}
@@ -2,14 +2,16 @@ package nl.basmens.generation;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.SplittableRandom;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
-import nl.basmens.Main;
+import nl.basmens.Configuration;
 import nl.basmens.generation.analyzers.GridAnalyzer;
 import nl.basmens.generation.generators.GridGenerator;
 import nl.basmens.knot.Knot;
 import nl.basmens.utils.concurrent.PerformanceTimer;
+import nl.basmens.utils.io.GridRanges;
 import nl.basmens.utils.io.ResultExporter;
 
 public class KnotGenerationPipeline implements Runnable {
@@ -21,17 +23,42 @@ public class KnotGenerationPipeline implements Runnable {
   private GridAnalyzer analyzer;
 
   private String fileExportName;
+  private InvariantWorkerPool invariantWorkerPool;
 
-  private ArrayList<Knot> knots = new ArrayList<>();
+  // Grid number gridIndex is generated with GridRandom.getGridRandom(pipelineSeed, gridIndex), unless the grids are
+  // numbered by the GridCounter of the job
+  private final long pipelineSeed;
+  private final GridCounter gridCounter; // Null if the grids are numbered per pipeline
+  private final GridRanges gridRanges; // The grids in the results, null if the grids are not saved
+  private long gridIndex;
+  private long lastGridIndex = -1;
 
-  private volatile boolean running = true;
+  private ArrayList<Knot> knots = new ArrayList<>();
 
   public KnotGenerationPipeline(Tileset tileset, int gridW, int gridH, Function<Tileset, GridGenerator> gridGenerator,
       Supplier<GridAnalyzer> gridAnalyzer, String fileExportName) {
+    this(tileset, gridW, gridH, gridGenerator, gridAnalyzer, fileExportName, null, 0, null, null);
+  }
+
+  // When an InvariantWorkerPool is given, the invariants are calculated and exported by its threads instead of the
+  // thread running this pipeline. Pipelines of the same export name need a different pipelineIndex, or they generate
+  // the same grids. When a GridCounter is given, the pipeline generates the grids it hands out, and stops when it has
+  // none left. Otherwise it continues after the grids of its pipelineIndex that are in the GridRanges of the results,
+  // and adds every grid it generates to them.
+  public KnotGenerationPipeline(Tileset tileset, int gridW, int gridH, Function<Tileset, GridGenerator> gridGenerator,
+      Supplier<GridAnalyzer> gridAnalyzer, String fileExportName, InvariantWorkerPool invariantWorkerPool,
+      int pipelineIndex, GridCounter gridCounter, GridRanges gridRanges) {
     this.tileset = tileset;
     this.gridW = gridW;
     this.gridH = gridH;
     this.fileExportName = fileExportName;
+    this.invariantWorkerPool = invariantWorkerPool;
+    this.gridCounter = gridCounter;
+    this.gridRanges = gridRanges;
+    pipelineSeed = GridRandom.getPipelineSeed(Configuration.get().getSeed(), fileExportName, pipelineIndex);
+    if (gridCounter == null && gridRanges != null) {
+      gridIndex = gridRanges.getNextMissing(pipelineSeed, 0);
+    }
 
     generator = gridGenerator.apply(tileset);
     analyzer = gridAnalyzer.get();
@@ -45,73 +72,91 @@ public class KnotGenerationPipeline implements Runnable {
   private void runGenCycle() {
     PerformanceTimer timer = new PerformanceTimer(getClass(), "runGenCycle", "clear");
     knots.clear();
+    SplittableRandom random;
+    if (gridCounter == null) {
+      lastGridIndex = gridIndex++;
+      if (gridRanges != null) {
+        gridRanges.add(pipelineSeed, lastGridIndex);
+      }
+      random = GridRandom.getGridRandom(pipelineSeed, lastGridIndex);
+    } else {
+      lastGridIndex = gridCounter.next();
+      if (lastGridIndex < 0) {
+        // Every grid of the job is handed out, the GenerationScheduler sees that the job is finished
+        timer.stop();
+        return;
+      }
+      random = gridCounter.getGridRandom(lastGridIndex);
+    }
+    SplittableRandom analyzerRandom = random.split();
+
     timer.nextSegment("generateGrid");
-    generator.generateGrid();
+    generator.generateGrid(random);
     timer.nextSegment("extractKnots");
-    knots = analyzer.extractKnots(generator.getGrid());
+    knots = analyzer.extractKnots(generator.getGrid(), analyzerRandom);
+    for (Knot k : knots) {
+      k.setGridIndex(lastGridIndex);
+    }
     timer.stop();
   }
 
+  // Generates one grid, used by the single threaded viewer. With more threads the GenerationScheduler runs the
+  // pipeline with runThreadedCycle and awaitExport.
   @Override
   public void run() {
     PerformanceTimer timer = new PerformanceTimer(getClass(), "run - " + fileExportName);
-    if (Main.MULTI_THREAD) {
-      if (!running || ResultExporter.getExporter(fileExportName).getKnotCount() >= Main.TARGET_KNOT_COUNT) {
-        ResultExporter.closeExporter(fileExportName);
-        stop();
-        timer.stop();
-
-        System.out.println("Skipped " + fileExportName);
-        return;
-      }
-      
-      runThreaded();
-    } else {
-      runGenCycle();
-    }
+    runGenCycle();
     timer.stop();
   }
 
-  private void runThreaded() {
-    PerformanceTimer timer = new PerformanceTimer(getClass(), "runThreaded", "start");
-    System.out.println("Starting " + fileExportName);
-    while (running) {
-      timer.nextSegment("gen knots");
-      runGenCycle();
+  // Generates one grid and passes its knots on to be saved, returns the amount of knots generated
+  public int runThreadedCycle() {
+    PerformanceTimer timer = new PerformanceTimer(getClass(), "runThreadedCycle", "gen knots");
+    long start = System.nanoTime();
+    runGenCycle();
+    if (invariantWorkerPool != null) {
+      invariantWorkerPool.getGenerationStage().record(System.nanoTime() - start, knots.size());
+    }
 
-      if (Main.SAVE_RESULTS) {
+    if (Configuration.get().isSaveResults()) {
+      if (invariantWorkerPool != null) {
+        timer.nextSegment("submit knots");
+        try {
+          invariantWorkerPool.submit(knots, fileExportName);
+        } catch (InterruptedException e) {
+          // The GenerationScheduler stops the threads that are interrupted
+          Thread.currentThread().interrupt();
+        }
+      } else {
         // Start calculations
         timer.nextSegment("calc invariants");
+        Configuration configuration = Configuration.get();
         for (Knot k : knots) {
-          if (Main.SAVE_TRICOLORABILITY) {
-            k.startCalcTricolorability();
-          }
-          if (Main.SAVE_KNOT_DETERMINANT) {
-            k.startCalcKnotDeterminant();
-          }
-          if (Main.SAVE_ALEXANDER_POLYNOMIAL) {
-            k.startCalcAlexanderPolynomial();
-          }
+          k.startCalcInvariants(configuration.isSaveTricolorability(), configuration.isSaveKnotDeterminant(),
+              configuration.isSaveAlexanderPolynomial());
         }
 
         // Export
         timer.nextSegment("export");
-        ResultExporter exporter = ResultExporter.getExporter(fileExportName);
-        exporter.save(knots);
-        if (exporter.getKnotCount() >= Main.TARGET_KNOT_COUNT) {
-          System.out.println("Finished " + fileExportName);
-          stop();
-        }
+        ResultExporter.getExporter(fileExportName).save(knots);
       }
     }
-
-    ResultExporter.closeExporter(fileExportName);
-    System.out.println("Stopped " + fileExportName);
     timer.stop();
+    return knots.size();
   }
 
-  public void stop() {
-    running = false;
+  // Blocks until every knot of this pipeline is saved, then closes its ResultExporter
+  public void awaitExport() {
+    if (invariantWorkerPool != null) {
+      try {
+        invariantWorkerPool.awaitExported(fileExportName);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    ResultExporter.closeExporter(fileExportName);
+    System.out.println("Stopped " + fileExportName);
   }
 
   public Tileset getTileset() {
@@ -134,6 +179,19 @@ public class KnotGenerationPipeline implements Runnable {
     return analyzer;
   }
 
+  // Of the last grid generated, -1 if there is none
+  public long getLastGridIndex() {
+    return lastGridIndex;
+  }
+
+  public long getPipelineSeed() {
+    return pipelineSeed;
+  }
+
+  public GridCounter getGridCounter() {
+    return gridCounter;
+  }
+
   public List<Knot> getKnots() {
     return knots;
   }
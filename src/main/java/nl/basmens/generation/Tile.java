@@ -1,15 +1,31 @@
 package nl.basmens.generation;
 
+import java.util.SplittableRandom;
+
 import nl.basmens.knot.Connection;
+import nl.benmens.processing.PAppletProxy;
 import processing.core.PImage;
 
+// A tile type of a grid, with its image. The analyzers do not call the connection methods for every tile of a grid:
+// they call them once per tile type, on a probe grid, and follow tables made from what was connected.
 public class Tile {
+  // Headless runs have no PApplet to load images with, their tiles have no image
+  private static volatile boolean isLoadingImages = true;
+
   public final PImage img;
 
   protected Tile(PImage img) {
     this.img = img;
   }
 
+  public static PImage loadImage(String path) {
+    return isLoadingImages ? PAppletProxy.loadImage(path) : null;
+  }
+
+  public static void setLoadingImages(boolean loadingImages) {
+    isLoadingImages = loadingImages;
+  }
+
   public int setConnectionInputGoingUp(int x, int y, Connection[][] hor, Connection[][] vert,
       IntersectedConnectionsFactory intersectedConnections) {
     throw new UnsupportedOperationException("setConnectionInputGoingUp method hasn't been implemented");
@@ -30,7 +46,7 @@ public class Tile {
     throw new UnsupportedOperationException("setConnectionInputGoingRight method hasn't been implemented");
   }
 
-  public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+  public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
     throw new UnsupportedOperationException("setConnections method hasn't been implemented");
   }
 }
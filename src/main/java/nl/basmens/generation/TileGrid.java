@@ -0,0 +1,66 @@
+package nl.basmens.generation;
+
+// A grid as the id of the tile type on every position, row by row. The id is the index in tileTypes, which are the
+// tiles of the tileset followed by the tiles of the edges. A generator fills the same TileGrid for every grid, and the
+// analyzers look up how the tile types connect in tables made from the tile types, see GridAnalyzer.
+public final class TileGrid {
+  public static final int MAX_TILE_TYPE_COUNT = 256; // The ids are stored in bytes
+
+  private final int width;
+  private final int height;
+  private final Tile[] tileTypes;
+  private final byte[] tileIds;
+
+  // ===================================================================================================================
+  // Constructor
+  // ===================================================================================================================
+  public TileGrid(int width, int height, Tile[] tileTypes) {
+    if (width < 0 || height < 0) {
+      throw new IllegalArgumentException("ERROR: invalid grid size " + width + "x" + height);
+    }
+    if (tileTypes.length > MAX_TILE_TYPE_COUNT) {
+      throw new IllegalArgumentException("ERROR: a grid can not have " + tileTypes.length + " tile types");
+    }
+
+    this.width = width;
+    this.height = height;
+    this.tileTypes = tileTypes;
+    tileIds = new byte[width * height];
+  }
+
+  // ===================================================================================================================
+  // Getters
+  // ===================================================================================================================
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  // The same array for the life of the grid, so tables made from it can be reused
+  public Tile[] getTileTypes() {
+    return tileTypes;
+  }
+
+  // The ids row by row, the id of x, y is at y * width + x. Read them with & 0xFF.
+  public byte[] getTileIds() {
+    return tileIds;
+  }
+
+  public int getTileId(int x, int y) {
+    return tileIds[y * width + x] & 0xFF;
+  }
+
+  public Tile getTile(int x, int y) {
+    return tileTypes[getTileId(x, y)];
+  }
+
+  // ===================================================================================================================
+  // Setters
+  // ===================================================================================================================
+  public void setTileId(int x, int y, int id) {
+    tileIds[y * width + x] = (byte) id;
+  }
+}
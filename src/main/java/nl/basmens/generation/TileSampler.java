@@ -0,0 +1,129 @@
+package nl.basmens.generation;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Draws tile indices in bulk. Every random long is cut into as many indices as fit in it, so the four tiles of the
+// basic tileset take 2 bits each and one long covers 32 tiles. When the tile count is not a power of two, the indices
+// of the next power of two that are too big are rejected. Weighted tiles are drawn from an alias table, three per
+// long.
+public final class TileSampler {
+  public static final int MAX_TILE_COUNT = 256; // The indices are stored in bytes
+  // Bits per weighted draw, 8 of which at most are the column of the alias table
+  static final int WEIGHTED_DRAW_BITS = 21;
+
+  private TileSampler() {
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+
+  // Fills out with indices in [0, tileCount), read them with & 0xFF
+  public static void fill(SplittableRandom random, int tileCount, byte[] out) {
+    if (tileCount < 1 || tileCount > MAX_TILE_COUNT) {
+      throw new IllegalArgumentException("ERROR: can not sample from " + tileCount + " tiles");
+    }
+    if (tileCount == 1) {
+      Arrays.fill(out, (byte) 0);
+      return;
+    }
+
+    int bits = 32 - Integer.numberOfLeadingZeros(tileCount - 1);
+    if ((tileCount & (tileCount - 1)) == 0) {
+      fillPowerOfTwo(random, bits, out);
+    } else {
+      fillWithRejection(random, tileCount, bits, out);
+    }
+  }
+
+  private static void fillPowerOfTwo(SplittableRandom random, int bits, byte[] out) {
+    int mask = (1 << bits) - 1;
+    int perLong = 64 / bits;
+    int i = 0;
+
+    // Whole longs
+    int end = out.length - out.length % perLong;
+    while (i < end) {
+      long word = random.nextLong();
+      for (int j = 0; j < perLong; j++) {
+        out[i++] = (byte) (word & mask);
+        word >>>= bits;
+      }
+    }
+
+    // The rest
+    if (i < out.length) {
+      long word = random.nextLong();
+      while (i < out.length) {
+        out[i++] = (byte) (word & mask);
+        word >>>= bits;
+      }
+    }
+  }
+
+  private static void fillWithRejection(SplittableRandom random, int tileCount, int bits, byte[] out) {
+    int mask = (1 << bits) - 1;
+    int perLong = 64 / bits;
+    int i = 0;
+
+    // Every index is written, but i only moves on when it is accepted. This has no branch that depends on the random,
+    // which the cpu could not predict.
+    int end = out.length - perLong;
+    while (i <= end) {
+      long word = random.nextLong();
+      for (int j = 0; j < perLong; j++) {
+        int index = (int) word & mask;
+        word >>>= bits;
+        out[i] = (byte) index;
+        i += (index - tileCount) >>> 31;
+      }
+    }
+
+    // The rest
+    while (i < out.length) {
+      long word = random.nextLong();
+      for (int j = 0; j < perLong && i < out.length; j++) {
+        int index = (int) word & mask;
+        word >>>= bits;
+        if (index < tileCount) {
+          out[i++] = (byte) index;
+        }
+      }
+    }
+  }
+
+  // Fills out from the alias table of a Tileset, which has a power of two columns. Every draw takes WEIGHTED_DRAW_BITS
+  // bits, three per long: the lowest bits are the column, the rest is a fraction that decides between the column and
+  // its alias.
+  static void fillWeighted(SplittableRandom random, int[] thresholds, byte[] aliases, byte[] out) {
+    int columnBits = Integer.numberOfTrailingZeros(thresholds.length);
+    int columnMask = thresholds.length - 1;
+    int fractionMask = (1 << (WEIGHTED_DRAW_BITS - columnBits)) - 1;
+    int perLong = 64 / WEIGHTED_DRAW_BITS;
+    int i = 0;
+
+    // Whole longs
+    int end = out.length - out.length % perLong;
+    while (i < end) {
+      long word = random.nextLong();
+      for (int j = 0; j < perLong; j++) {
+        int column = (int) word & columnMask;
+        int fraction = (int) (word >>> columnBits) & fractionMask;
+        out[i++] = fraction < thresholds[column] ? (byte) column : aliases[column];
+        word >>>= WEIGHTED_DRAW_BITS;
+      }
+    }
+
+    // The rest
+    if (i < out.length) {
+      long word = random.nextLong();
+      while (i < out.length) {
+        int column = (int) word & columnMask;
+        int fraction = (int) (word >>> columnBits) & fractionMask;
+        out[i++] = fraction < thresholds[column] ? (byte) column : aliases[column];
+        word >>>= WEIGHTED_DRAW_BITS;
+      }
+    }
+  }
+}
@@ -1,12 +1,124 @@
 package nl.basmens.generation;
 
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// The tiles a grid is filled with, each with a weight. Tiles with equal weights are drawn with TileSampler.fill, other
+// weights with the alias table of Walker's alias method, which draws a tile in constant time for any weights. The
+// table has a power of two columns, so a column is drawn from whole bits. The columns past the last tile are empty and
+// always give their alias.
 public class Tileset {
   private final Tile[] tiles;
+  private final double[] weights;
+
+  // In column i, tile i is drawn if the fraction of a draw is below thresholds[i] / 2^fractionBits, and aliases[i]
+  // otherwise. Null if every tile has the same weight.
+  private final int[] thresholds;
+  private final byte[] aliases;
 
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
   public Tileset(Tile... tiles) {
+    this(tiles, getEqualWeights(tiles.length));
+  }
+
+  public Tileset(Tile[] tiles, double[] weights) {
+    if (tiles.length != weights.length) {
+      throw new IllegalArgumentException("ERROR: " + tiles.length + " tiles but " + weights.length + " weights");
+    }
+    if (tiles.length == 0 || tiles.length > TileSampler.MAX_TILE_COUNT) {
+      throw new IllegalArgumentException("ERROR: a tileset can not have " + tiles.length + " tiles");
+    }
+    for (double weight : weights) {
+      if (!(weight > 0) || Double.isInfinite(weight)) {
+        throw new IllegalArgumentException("ERROR: invalid tile weight " + weight);
+      }
+    }
+
     this.tiles = tiles;
+    this.weights = weights.clone();
+
+    if (Arrays.stream(weights).allMatch(w -> w == weights[0])) {
+      thresholds = null;
+      aliases = null;
+    } else {
+      int columnCount = Integer.highestOneBit(tiles.length * 2 - 1);
+      thresholds = new int[columnCount];
+      aliases = new byte[columnCount];
+      createAliasTable();
+    }
+  }
+
+  private static double[] getEqualWeights(int count) {
+    double[] weights = new double[count];
+    Arrays.fill(weights, 1);
+    return weights;
+  }
+
+  // Vose's version of the alias method: every column of the table is filled up to the average weight, by a tile
+  // with less than the average and the rest of one with more
+  private void createAliasTable() {
+    int n = thresholds.length;
+    int fractionBits = TileSampler.WEIGHTED_DRAW_BITS - Integer.numberOfTrailingZeros(n);
+    double total = Arrays.stream(weights).sum();
+    double[] scaled = new double[n];
+    int[] small = new int[n];
+    int[] large = new int[n];
+    int smallCount = 0;
+    int largeCount = 0;
+    for (int i = 0; i < n; i++) {
+      scaled[i] = i < weights.length ? weights[i] * n / total : 0;
+      if (scaled[i] < 1) {
+        small[smallCount++] = i;
+      } else {
+        large[largeCount++] = i;
+      }
+    }
+
+    while (smallCount > 0 && largeCount > 0) {
+      int less = small[--smallCount];
+      int more = large[--largeCount];
+      thresholds[less] = (int) Math.round(Math.scalb(scaled[less], fractionBits));
+      aliases[less] = (byte) more;
+
+      scaled[more] -= 1 - scaled[less];
+      if (scaled[more] < 1) {
+        small[smallCount++] = more;
+      } else {
+        large[largeCount++] = more;
+      }
+    }
+
+    // What is left is 1 apart from rounding errors
+    while (largeCount > 0) {
+      int i = large[--largeCount];
+      thresholds[i] = 1 << fractionBits;
+      aliases[i] = (byte) i;
+    }
+    while (smallCount > 0) {
+      int i = small[--smallCount];
+      thresholds[i] = 1 << fractionBits;
+      aliases[i] = (byte) i;
+    }
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+
+  // Fills out with the indices of tiles drawn by their weights, read them with & 0xFF
+  public void sample(SplittableRandom random, byte[] out) {
+    if (thresholds == null) {
+      TileSampler.fill(random, tiles.length, out);
+    } else {
+      TileSampler.fillWeighted(random, thresholds, aliases, out);
+    }
   }
 
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
   public int getTileCount() {
     return tiles.length;
   }
@@ -18,4 +130,13 @@ public class Tileset {
   public Tile[] getTiles() {
     return tiles;
   }
+
+  public double[] getWeights() {
+    return weights.clone();
+  }
+
+  // The chance that a tile is the tile at index
+  public double getProbability(int index) {
+    return weights[index] / Arrays.stream(weights).sum();
+  }
 }
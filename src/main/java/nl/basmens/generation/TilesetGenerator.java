@@ -2,11 +2,11 @@ package nl.basmens.generation;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.SplittableRandom;
 
-import nl.basmens.Main;
+import nl.basmens.Resources;
 import nl.basmens.knot.Connection;
 import nl.basmens.utils.maths.Vector;
-import nl.benmens.processing.PAppletProxy;
 
 public class TilesetGenerator {
   private TilesetGenerator() {}
@@ -17,9 +17,9 @@ public class TilesetGenerator {
   public static Tileset getTilesetBasicFour() {
     // Corner 0
     ArrayList<Tile> tiles = new ArrayList<>();
-    String path = Main.RESOURCE_PATH + "tilesets/basic_four/";
+    String path = Resources.RESOURCE_PATH + "tilesets/basic_four/";
 
-    tiles.add(new Tile(PAppletProxy.loadImage(path + "corner0.png")) {
+    tiles.add(new Tile(Tile.loadImage(path + "corner0.png")) {
       @Override
       public int setConnectionInputGoingUp(int x, int y, Connection[][] hor, Connection[][] vert,
           IntersectedConnectionsFactory intersectedConnections) {
@@ -50,7 +50,7 @@ public class TilesetGenerator {
     });
 
     // Corner 1
-    tiles.add(new Tile(PAppletProxy.loadImage(path + "corner1.png")) {
+    tiles.add(new Tile(Tile.loadImage(path + "corner1.png")) {
       @Override
       public int setConnectionInputGoingUp(int x, int y, Connection[][] hor, Connection[][] vert,
           IntersectedConnectionsFactory intersectedConnections) {
@@ -81,7 +81,7 @@ public class TilesetGenerator {
     });
 
     // Intersection 0
-    tiles.add(new Tile(PAppletProxy.loadImage(path + "intersection0.png")) {
+    tiles.add(new Tile(Tile.loadImage(path + "intersection0.png")) {
       @Override
       public int setConnectionInputGoingUp(int x, int y, Connection[][] hor, Connection[][] vert,
           IntersectedConnectionsFactory intersectedConnections) {
@@ -124,7 +124,7 @@ public class TilesetGenerator {
     });
 
     // Intersection 1
-    tiles.add(new Tile(PAppletProxy.loadImage(path + "intersection1.png")) {
+    tiles.add(new Tile(Tile.loadImage(path + "intersection1.png")) {
       @Override
       public int setConnectionInputGoingUp(int x, int y, Connection[][] hor, Connection[][] vert,
           IntersectedConnectionsFactory intersectedConnections) {
@@ -172,16 +172,21 @@ public class TilesetGenerator {
   // ===================================================================================================================
   // Tileset doubled
   // ===================================================================================================================
-  public static Tileset getTilesetDoubled(int rrrr, int rlrl, int rlbb, int lrlr, int lbbr, int llll, int brlb,
-      int bbrl, int bbbb) {
+
+  // Every tile type is added once with its weight, which do not have to be integers. Types with a weight of 0 are left
+  // out.
+  public static Tileset getTilesetDoubled(double rrrr, double rlrl, double rlbb, double lrlr, double lbbr, double llll,
+      double brlb, double bbrl, double bbbb) {
     ArrayList<Tile> tiles = new ArrayList<>();
-    String path = Main.RESOURCE_PATH + "tilesets/doubled/";
+    ArrayList<Double> weights = new ArrayList<>();
+    String path = Resources.RESOURCE_PATH + "tilesets/doubled/";
 
     // rrrr
-    for (int i = 0; i < rrrr; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "rrrr.png")) {
+    if (rrrr > 0) {
+      weights.add(rrrr);
+      tiles.add(new Tile(Tile.loadImage(path + "rrrr.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(hor[x][y * 2 + 1]);
           hor[x][y * 2].setNext(vert[x * 2 + 1][y - 1]);
           vert[x * 2][y - 1].setNext(hor[x - 1][y * 2]);
@@ -191,11 +196,12 @@ public class TilesetGenerator {
     }
 
     // rlrl
-    for (int i = 0; i < rlrl; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "rlrl.png")) {
+    if (rlrl > 0) {
+      weights.add(rlrl);
+      tiles.add(new Tile(Tile.loadImage(path + "rlrl.png")) {
 
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(hor[x][y * 2 + 1]);
           hor[x][y * 2].setNext(vert[x * 2][y]);
           vert[x * 2][y - 1].setNext(hor[x - 1][y * 2]);
@@ -205,10 +211,11 @@ public class TilesetGenerator {
     }
 
     // rlbb
-    for (int i = 0; i < rlbb; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "rlbb.png")) {
+    if (rlbb > 0) {
+      weights.add(rlbb);
+      tiles.add(new Tile(Tile.loadImage(path + "rlbb.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(hor[x][y * 2 + 1]);
           hor[x][y * 2].setNext(vert[x * 2][y]);
           vert[x * 2][y - 1].setNext(vert[x * 2 + 1][y - 1]);
@@ -218,10 +225,11 @@ public class TilesetGenerator {
     }
 
     // lrlr
-    for (int i = 0; i < lrlr; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "lrlr.png")) {
+    if (lrlr > 0) {
+      weights.add(lrlr);
+      tiles.add(new Tile(Tile.loadImage(path + "lrlr.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(hor[x - 1][y * 2]);
           hor[x][y * 2].setNext(vert[x * 2 + 1][y - 1]);
           vert[x * 2][y - 1].setNext(hor[x][y * 2 + 1]);
@@ -231,10 +239,11 @@ public class TilesetGenerator {
     }
 
     // lbbr
-    for (int i = 0; i < lbbr; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "lbbr.png")) {
+    if (lbbr > 0) {
+      weights.add(lbbr);
+      tiles.add(new Tile(Tile.loadImage(path + "lbbr.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(hor[x - 1][y * 2]);
           hor[x][y * 2].setNext(hor[x][y * 2 + 1]);
           vert[x * 2][y - 1].setNext(vert[x * 2 + 1][y - 1]);
@@ -244,10 +253,11 @@ public class TilesetGenerator {
     }
 
     // llll
-    for (int i = 0; i < llll; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "llll.png")) {
+    if (llll > 0) {
+      weights.add(llll);
+      tiles.add(new Tile(Tile.loadImage(path + "llll.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           Connection upIn = new Connection(new Vector(x, y - 0.2), Math.PI * 0.35);
           Connection upOut = new Connection(new Vector(x, y - 0.2), -Math.PI * 0.35);
           Connection leftIn = new Connection(new Vector(x - 0.2, y), -Math.PI * 0.15);
@@ -256,10 +266,10 @@ public class TilesetGenerator {
           Connection downOut = new Connection(new Vector(x, y + 0.2), Math.PI * 0.65);
           Connection rightIn = new Connection(new Vector(x + 0.2, y), Math.PI * 0.85);
           Connection rightOut = new Connection(new Vector(x + 0.2, y), Math.PI * 0.15);
-          IntersectedConnectionsFactory.createIntersection(upIn, upOut);
-          IntersectedConnectionsFactory.createIntersection(leftIn, leftOut);
-          IntersectedConnectionsFactory.createIntersection(downIn, downOut);
-          IntersectedConnectionsFactory.createIntersection(rightIn, rightOut);
+          IntersectedConnectionsFactory.createIntersection(upIn, upOut, random);
+          IntersectedConnectionsFactory.createIntersection(leftIn, leftOut, random);
+          IntersectedConnectionsFactory.createIntersection(downIn, downOut, random);
+          IntersectedConnectionsFactory.createIntersection(rightIn, rightOut, random);
 
           vert[x * 2 + 1][y].setNext(downIn);
           downIn.setNext(leftOut);
@@ -278,10 +288,11 @@ public class TilesetGenerator {
     }
 
     // brlb
-    for (int i = 0; i < brlb; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "brlb.png")) {
+    if (brlb > 0) {
+      weights.add(brlb);
+      tiles.add(new Tile(Tile.loadImage(path + "brlb.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(vert[x * 2][y]);
           hor[x][y * 2].setNext(vert[x * 2 + 1][y - 1]);
           vert[x * 2][y - 1].setNext(hor[x][y * 2 + 1]);
@@ -291,10 +302,11 @@ public class TilesetGenerator {
     }
 
     // bbrl
-    for (int i = 0; i < bbrl; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "bbrl.png")) {
+    if (bbrl > 0) {
+      weights.add(bbrl);
+      tiles.add(new Tile(Tile.loadImage(path + "bbrl.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(vert[x * 2][y]);
           hor[x][y * 2].setNext(hor[x][y * 2 + 1]);
           vert[x * 2][y - 1].setNext(hor[x - 1][y * 2]);
@@ -304,10 +316,11 @@ public class TilesetGenerator {
     }
 
     // bbbb
-    for (int i = 0; i < bbbb; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "bbbb.png")) {
+    if (bbbb > 0) {
+      weights.add(bbbb);
+      tiles.add(new Tile(Tile.loadImage(path + "bbbb.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(vert[x * 2][y]);
           hor[x][y * 2].setNext(hor[x][y * 2 + 1]);
           vert[x * 2][y - 1].setNext(vert[x * 2 + 1][y - 1]);
@@ -316,24 +329,30 @@ public class TilesetGenerator {
       });
     }
 
-    return new Tileset(tiles.toArray(Tile[]::new));
+    return new Tileset(tiles.toArray(Tile[]::new), weights.stream().mapToDouble(Double::doubleValue).toArray());
   }
 
   // ===================================================================================================================
   // Tileset doubled with straights
   // ===================================================================================================================
-  public static Tileset getTilesetDoubledStraights(int rrrr, int rsbr, int rlrl, int rlbb, int rrsb, int rssl,
-      int lrlr, int lbbr, int lbsl, int lrss, int llbs, int llll, int bbbb, int brlb, int bsbs, int brrs, int bbrl,
-      int bsll, int sbrr, int sslr, int sbsb, int sllb, int ssss, int slrs) {
-    ArrayList<Tile> tiles = new ArrayList<>(
-        Arrays.asList(getTilesetDoubled(rrrr, rlrl, rlbb, lrlr, lbbr, llll, brlb, bbrl, bbbb).getTiles()));
-    String path = Main.RESOURCE_PATH + "tilesets/doubled_with_straights/";
+  public static Tileset getTilesetDoubledStraights(double rrrr, double rsbr, double rlrl, double rlbb, double rrsb,
+      double rssl, double lrlr, double lbbr, double lbsl, double lrss, double llbs, double llll, double bbbb,
+      double brlb, double bsbs, double brrs, double bbrl, double bsll, double sbrr, double sslr, double sbsb,
+      double sllb, double ssss, double slrs) {
+    Tileset doubled = getTilesetDoubled(rrrr, rlrl, rlbb, lrlr, lbbr, llll, brlb, bbrl, bbbb);
+    ArrayList<Tile> tiles = new ArrayList<>(Arrays.asList(doubled.getTiles()));
+    ArrayList<Double> weights = new ArrayList<>();
+    for (double weight : doubled.getWeights()) {
+      weights.add(weight);
+    }
+    String path = Resources.RESOURCE_PATH + "tilesets/doubled_with_straights/";
 
     // rsbr
-    for (int i = 0; i < rsbr; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "rsbr.png")) {
+    if (rsbr > 0) {
+      weights.add(rsbr);
+      tiles.add(new Tile(Tile.loadImage(path + "rsbr.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(hor[x][y * 2 + 1]);
           hor[x][y * 2].setNext(hor[x - 1][y * 2]);
           vert[x * 2][y - 1].setNext(vert[x * 2 + 1][y - 1]);
@@ -343,11 +362,12 @@ public class TilesetGenerator {
     }
 
     // rrsb
-    for (int i = 0; i < rrsb; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "rrsb.png")) {
+    if (rrsb > 0) {
+      weights.add(rrsb);
+      tiles.add(new Tile(Tile.loadImage(path + "rrsb.png")) {
 
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(hor[x][y * 2 + 1]);
           hor[x][y * 2].setNext(vert[x * 2 + 1][y - 1]);
           vert[x * 2][y - 1].setNext(vert[x * 2][y]);
@@ -357,19 +377,20 @@ public class TilesetGenerator {
     }
 
     // rssl
-    for (int i = 0; i < rssl; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "rssl.png")) {
+    if (rssl > 0) {
+      weights.add(rssl);
+      tiles.add(new Tile(Tile.loadImage(path + "rssl.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           Connection left1 = new Connection(new Vector(x, y - 0.15), Math.PI);
           Connection left2 = new Connection(new Vector(x - 0.15, y - 0.15), Math.PI);
           Connection down1 = new Connection(new Vector(x - 0.15, y - 0.15), Math.PI / 2);
           Connection down2 = new Connection(new Vector(x - 0.15, y), Math.PI / 2);
           Connection right1 = new Connection(new Vector(x - 0.15, y), -Math.PI * 0.15);
           Connection right2 = new Connection(new Vector(x, y - 0.15), -Math.PI * 0.35);
-          IntersectedConnectionsFactory.createIntersection(left1, right2);
-          IntersectedConnectionsFactory.createIntersection(left2, down1);
-          IntersectedConnectionsFactory.createIntersection(down2, right1);
+          IntersectedConnectionsFactory.createIntersection(left1, right2, random);
+          IntersectedConnectionsFactory.createIntersection(left2, down1, random);
+          IntersectedConnectionsFactory.createIntersection(down2, right1, random);
 
           vert[x * 2 + 1][y].setNext(hor[x][y * 2 + 1]);
           hor[x][y * 2].setNext(left1);
@@ -386,19 +407,20 @@ public class TilesetGenerator {
     }
 
     // lbsl
-    for (int i = 0; i < lbsl; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "lbsl.png")) {
+    if (lbsl > 0) {
+      weights.add(lbsl);
+      tiles.add(new Tile(Tile.loadImage(path + "lbsl.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           Connection up1 = new Connection(new Vector(x, y), -Math.PI * 0.65);
           Connection up2 = new Connection(new Vector(x - 0.15, y - 0.1), -Math.PI * 0.85);
           Connection down1 = new Connection(new Vector(x - 0.15, y - 0.1), Math.PI / 2);
           Connection down2 = new Connection(new Vector(x - 0.15, y + 0.1), Math.PI / 2);
           Connection right1 = new Connection(new Vector(x - 0.15, y + 0.1), -Math.PI * 0.15);
           Connection right2 = new Connection(new Vector(x, y), -Math.PI * 0.35);
-          IntersectedConnectionsFactory.createIntersection(up1, right2);
-          IntersectedConnectionsFactory.createIntersection(up2, down1);
-          IntersectedConnectionsFactory.createIntersection(down2, right1);
+          IntersectedConnectionsFactory.createIntersection(up1, right2, random);
+          IntersectedConnectionsFactory.createIntersection(up2, down1, random);
+          IntersectedConnectionsFactory.createIntersection(down2, right1, random);
 
           vert[x * 2 + 1][y].setNext(up1);
           up1.setNext(up2);
@@ -415,19 +437,20 @@ public class TilesetGenerator {
     }
 
     // lrss
-    for (int i = 0; i < lrss; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "lrss.png")) {
+    if (lrss > 0) {
+      weights.add(lrss);
+      tiles.add(new Tile(Tile.loadImage(path + "lrss.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           Connection up1 = new Connection(new Vector(x, y + 0.15), -Math.PI * 0.65);
           Connection up2 = new Connection(new Vector(x - 0.15, y), -Math.PI * 0.85);
           Connection down1 = new Connection(new Vector(x - 0.15, y), Math.PI / 2);
           Connection down2 = new Connection(new Vector(x - 0.15, y + 0.15), Math.PI / 2);
           Connection right1 = new Connection(new Vector(x - 0.15, y + 0.15), 0);
           Connection right2 = new Connection(new Vector(x, y + 0.15), 0);
-          IntersectedConnectionsFactory.createIntersection(up1, right2);
-          IntersectedConnectionsFactory.createIntersection(up2, down1);
-          IntersectedConnectionsFactory.createIntersection(down2, right1);
+          IntersectedConnectionsFactory.createIntersection(up1, right2, random);
+          IntersectedConnectionsFactory.createIntersection(up2, down1, random);
+          IntersectedConnectionsFactory.createIntersection(down2, right1, random);
 
           vert[x * 2 + 1][y].setNext(up1);
           up1.setNext(up2);
@@ -444,19 +467,20 @@ public class TilesetGenerator {
     }
 
     // llbs
-    for (int i = 0; i < llbs; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "llbs.png")) {
+    if (llbs > 0) {
+      weights.add(llbs);
+      tiles.add(new Tile(Tile.loadImage(path + "llbs.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           Connection up1 = new Connection(new Vector(x + 0.1, y + 0.15), -Math.PI * 0.65);
           Connection up2 = new Connection(new Vector(x, y), -Math.PI * 0.85);
           Connection left1 = new Connection(new Vector(x, y), Math.PI * 0.85);
           Connection left2 = new Connection(new Vector(x - 0.1, y + 0.15), Math.PI * 0.65);
           Connection right1 = new Connection(new Vector(x - 0.1, y + 0.15), 0);
           Connection right2 = new Connection(new Vector(x + 0.1, y + 0.15), 0);
-          IntersectedConnectionsFactory.createIntersection(up1, right2);
-          IntersectedConnectionsFactory.createIntersection(up2, left1);
-          IntersectedConnectionsFactory.createIntersection(left2, right1);
+          IntersectedConnectionsFactory.createIntersection(up1, right2, random);
+          IntersectedConnectionsFactory.createIntersection(up2, left1, random);
+          IntersectedConnectionsFactory.createIntersection(left2, right1, random);
 
           vert[x * 2 + 1][y].setNext(up1);
           up1.setNext(up2);
@@ -473,10 +497,11 @@ public class TilesetGenerator {
     }
 
     // bsbs
-    for (int i = 0; i < bsbs; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "bsbs.png")) {
+    if (bsbs > 0) {
+      weights.add(bsbs);
+      tiles.add(new Tile(Tile.loadImage(path + "bsbs.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(vert[x * 2][y]);
           hor[x][y * 2].setNext(hor[x - 1][y * 2]);
           vert[x * 2][y - 1].setNext(vert[x * 2 + 1][y - 1]);
@@ -486,10 +511,11 @@ public class TilesetGenerator {
     }
 
     // brrs
-    for (int i = 0; i < brrs; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "brrs.png")) {
+    if (brrs > 0) {
+      weights.add(brrs);
+      tiles.add(new Tile(Tile.loadImage(path + "brrs.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(vert[x * 2][y]);
           hor[x][y * 2].setNext(vert[x * 2 + 1][y - 1]);
           vert[x * 2][y - 1].setNext(hor[x - 1][y * 2]);
@@ -499,19 +525,20 @@ public class TilesetGenerator {
     }
 
     // bsll
-    for (int i = 0; i < bsll; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "bsll.png")) {
+    if (bsll > 0) {
+      weights.add(bsll);
+      tiles.add(new Tile(Tile.loadImage(path + "bsll.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           Connection left1 = new Connection(new Vector(x + 0.1, y - 0.15), Math.PI);
           Connection left2 = new Connection(new Vector(x - 0.1, y - 0.15), Math.PI);
           Connection down1 = new Connection(new Vector(x - 0.1, y - 0.15), Math.PI * 0.35);
           Connection down2 = new Connection(new Vector(x, y), Math.PI * 0.15);
           Connection right1 = new Connection(new Vector(x, y), -Math.PI * 0.15);
           Connection right2 = new Connection(new Vector(x + 0.1, y - 0.15), -Math.PI * 0.35);
-          IntersectedConnectionsFactory.createIntersection(left1, right2);
-          IntersectedConnectionsFactory.createIntersection(left2, down1);
-          IntersectedConnectionsFactory.createIntersection(down2, right1);
+          IntersectedConnectionsFactory.createIntersection(left1, right2, random);
+          IntersectedConnectionsFactory.createIntersection(left2, down1, random);
+          IntersectedConnectionsFactory.createIntersection(down2, right1, random);
 
           vert[x * 2 + 1][y].setNext(vert[x * 2][y]);
           hor[x][y * 2].setNext(left1);
@@ -528,10 +555,11 @@ public class TilesetGenerator {
     }
 
     // sbrr
-    for (int i = 0; i < sbrr; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "sbrr.png")) {
+    if (sbrr > 0) {
+      weights.add(sbrr);
+      tiles.add(new Tile(Tile.loadImage(path + "sbrr.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(vert[x * 2 + 1][y - 1]);
           hor[x][y * 2].setNext(hor[x][y * 2 + 1]);
           vert[x * 2][y - 1].setNext(hor[x - 1][y * 2]);
@@ -541,19 +569,20 @@ public class TilesetGenerator {
     }
 
     // sslr
-    for (int i = 0; i < sslr; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "sslr.png")) {
+    if (sslr > 0) {
+      weights.add(sslr);
+      tiles.add(new Tile(Tile.loadImage(path + "sslr.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           Connection up1 = new Connection(new Vector(x + 0.15, y), -Math.PI / 2);
           Connection up2 = new Connection(new Vector(x + 0.15, y - 0.15), -Math.PI / 2);
           Connection left1 = new Connection(new Vector(x + 0.15, y - 0.15), Math.PI);
           Connection left2 = new Connection(new Vector(x, y - 0.15), Math.PI);
           Connection down1 = new Connection(new Vector(x, y - 0.15), Math.PI * 0.35);
           Connection down2 = new Connection(new Vector(x + 0.15, y), Math.PI * 0.15);
-          IntersectedConnectionsFactory.createIntersection(up1, down2);
-          IntersectedConnectionsFactory.createIntersection(up2, left1);
-          IntersectedConnectionsFactory.createIntersection(left2, down1);
+          IntersectedConnectionsFactory.createIntersection(up1, down2, random);
+          IntersectedConnectionsFactory.createIntersection(up2, left1, random);
+          IntersectedConnectionsFactory.createIntersection(left2, down1, random);
 
           vert[x * 2 + 1][y].setNext(up1);
           up1.setNext(up2);
@@ -570,10 +599,11 @@ public class TilesetGenerator {
     }
 
     // sbsb
-    for (int i = 0; i < sbsb; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "sbsb.png")) {
+    if (sbsb > 0) {
+      weights.add(sbsb);
+      tiles.add(new Tile(Tile.loadImage(path + "sbsb.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           vert[x * 2 + 1][y].setNext(vert[x * 2 + 1][y - 1]);
           hor[x][y * 2].setNext(hor[x][y * 2 + 1]);
           vert[x * 2][y - 1].setNext(vert[x * 2][y]);
@@ -583,19 +613,20 @@ public class TilesetGenerator {
     }
 
     // sllb
-    for (int i = 0; i < sllb; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "sllb.png")) {
+    if (sllb > 0) {
+      weights.add(sllb);
+      tiles.add(new Tile(Tile.loadImage(path + "sllb.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           Connection up1 = new Connection(new Vector(x + 0.15, y + 0.1), -Math.PI / 2);
           Connection up2 = new Connection(new Vector(x + 0.15, y - 0.1), -Math.PI / 2);
           Connection left1 = new Connection(new Vector(x + 0.15, y - 0.1), Math.PI * 0.85);
           Connection left2 = new Connection(new Vector(x, y), Math.PI * 0.65);
           Connection down1 = new Connection(new Vector(x, y), Math.PI * 0.35);
           Connection down2 = new Connection(new Vector(x + 0.15, y + 0.1), Math.PI * 0.15);
-          IntersectedConnectionsFactory.createIntersection(up1, down2);
-          IntersectedConnectionsFactory.createIntersection(up2, left1);
-          IntersectedConnectionsFactory.createIntersection(left2, down1);
+          IntersectedConnectionsFactory.createIntersection(up1, down2, random);
+          IntersectedConnectionsFactory.createIntersection(up2, left1, random);
+          IntersectedConnectionsFactory.createIntersection(left2, down1, random);
 
           vert[x * 2 + 1][y].setNext(up1);
           up1.setNext(up2);
@@ -612,10 +643,11 @@ public class TilesetGenerator {
     }
 
     // ssss
-    for (int i = 0; i < ssss; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "ssss.png")) {
+    if (ssss > 0) {
+      weights.add(ssss);
+      tiles.add(new Tile(Tile.loadImage(path + "ssss.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           Connection up1 = new Connection(new Vector(x + 0.15, y + 0.15), -Math.PI / 2);
           Connection up2 = new Connection(new Vector(x + 0.15, y - 0.15), -Math.PI / 2);
           Connection left1 = new Connection(new Vector(x + 0.15, y - 0.15), Math.PI);
@@ -624,10 +656,10 @@ public class TilesetGenerator {
           Connection down2 = new Connection(new Vector(x - 0.15, y + 0.15), Math.PI / 2);
           Connection right1 = new Connection(new Vector(x - 0.15, y + 0.15), 0);
           Connection right2 = new Connection(new Vector(x + 0.15, y + 0.15), 0);
-          IntersectedConnectionsFactory.createIntersection(up1, right2);
-          IntersectedConnectionsFactory.createIntersection(up2, left1);
-          IntersectedConnectionsFactory.createIntersection(left2, down1);
-          IntersectedConnectionsFactory.createIntersection(down2, right1);
+          IntersectedConnectionsFactory.createIntersection(up1, right2, random);
+          IntersectedConnectionsFactory.createIntersection(up2, left1, random);
+          IntersectedConnectionsFactory.createIntersection(left2, down1, random);
+          IntersectedConnectionsFactory.createIntersection(down2, right1, random);
 
           vert[x * 2 + 1][y].setNext(up1);
           up1.setNext(up2);
@@ -646,19 +678,20 @@ public class TilesetGenerator {
     }
 
     // slrs
-    for (int i = 0; i < slrs; i++) {
-      tiles.add(new Tile(PAppletProxy.loadImage(path + "slrs.png")) {
+    if (slrs > 0) {
+      weights.add(slrs);
+      tiles.add(new Tile(Tile.loadImage(path + "slrs.png")) {
         @Override
-        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+        public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
           Connection up1 = new Connection(new Vector(x + 0.15, y + 0.15), -Math.PI / 2);
           Connection up2 = new Connection(new Vector(x + 0.15, y), -Math.PI / 2);
           Connection left1 = new Connection(new Vector(x + 0.15, y), Math.PI * 0.85);
           Connection left2 = new Connection(new Vector(x, y + 0.15), Math.PI * 0.65);
           Connection right1 = new Connection(new Vector(x, y + 0.15), 0);
           Connection right2 = new Connection(new Vector(x + 0.15, y + 0.15), 0);
-          IntersectedConnectionsFactory.createIntersection(up1, right2);
-          IntersectedConnectionsFactory.createIntersection(up2, left1);
-          IntersectedConnectionsFactory.createIntersection(left2, right1);
+          IntersectedConnectionsFactory.createIntersection(up1, right2, random);
+          IntersectedConnectionsFactory.createIntersection(up2, left1, random);
+          IntersectedConnectionsFactory.createIntersection(left2, right1, random);
 
           vert[x * 2 + 1][y].setNext(up1);
           up1.setNext(up2);
@@ -674,6 +707,6 @@ public class TilesetGenerator {
       });
     }
 
-    return new Tileset(tiles.toArray(Tile[]::new));
+    return new Tileset(tiles.toArray(Tile[]::new), weights.stream().mapToDouble(Double::doubleValue).toArray());
   }
 }
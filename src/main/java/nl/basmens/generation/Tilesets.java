@@ -0,0 +1,28 @@
+package nl.basmens.generation;
+
+import java.util.function.Supplier;
+
+public enum Tilesets {
+  BASIC(TilesetGenerator::getTilesetBasicFour),
+  UNWEIGHTED(() -> TilesetGenerator.getTilesetDoubled(1, 1, 1, 1, 1, 1, 1, 1, 1)),
+  WEIGHTED_HIGH(() -> TilesetGenerator.getTilesetDoubled(0, 1, 1, 1, 1, 0, 1, 1, 2)),
+  WEIGHTED_LOW(() -> TilesetGenerator.getTilesetDoubled(1, 0, 0, 0, 0, 1, 0, 0, 2)),
+  EXPANDED_UNWEIGHTED(() -> TilesetGenerator.getTilesetDoubledStraights(1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1)),
+  EXPANDED_WEIGHTED(() -> TilesetGenerator.getTilesetDoubledStraights(1, 1, 2, 1, 1, 1, 0, 2, 1, 1, 1, 0, 1, 2, 0, 1,
+      0, 1, 1, 1, 1, 1, 0, 0));
+
+  private final Supplier<Tileset> tilesetSupplier;
+  private Tileset tileset;
+
+  Tilesets(Supplier<Tileset> tilesetSupplier) {
+    this.tilesetSupplier = tilesetSupplier;
+  }
+
+  public synchronized Tileset getTileset() {
+    if (tileset == null) {
+      tileset = tilesetSupplier.get();
+    }
+    return tileset;
+  }
+}
@@ -0,0 +1,153 @@
+package nl.basmens.generation.analyzers;
+
+import java.util.SplittableRandom;
+
+import nl.basmens.generation.IntersectedConnectionsFactory;
+import nl.basmens.generation.Tile;
+import nl.basmens.knot.Connection;
+import nl.basmens.utils.maths.Vector;
+
+// How the tile types of a basic grid connect, read once from their setConnectionInputGoing methods. A path enters a
+// tile going in a direction, 0 up, 1 right, 2 down or 3 left, and leaves it going in the direction of its move. Tiles
+// with a crossing route the path through connection A or B of the crossing on the way.
+final class BasicConnectionTable {
+  static final int NO_MOVE = -1; // The tile can not be entered going that way
+  static final int DIRECTION_MASK = 3;
+  static final int CROSSING_A = 4;
+  static final int CROSSING_B = 8;
+
+  private static final int PROBE_X = 1;
+  private static final int PROBE_Y = 1;
+
+  // At tileId * 4 + direction
+  private final byte[] moves;
+  private final double[] crossingDirs;
+  // At tileId
+  private final boolean[] crossings;
+
+  // ===================================================================================================================
+  // Constructor
+  // ===================================================================================================================
+  BasicConnectionTable(Tile[] tileTypes) {
+    moves = new byte[tileTypes.length * 4];
+    crossingDirs = new double[tileTypes.length * 4];
+    crossings = new boolean[tileTypes.length];
+
+    for (int id = 0; id < tileTypes.length; id++) {
+      for (int dir = 0; dir < 4; dir++) {
+        moves[id * 4 + dir] = (byte) (tileTypes[id] == null ? NO_MOVE : probe(tileTypes[id], id, dir));
+      }
+    }
+  }
+
+  // Lets the tile connect on a grid of its own, and reads back what it connected
+  private int probe(Tile tile, int id, int dir) {
+    Connection[][] hor = createProbeConnections();
+    Connection[][] vert = createProbeConnections();
+    IntersectedConnectionsFactory intersectedConnections = new IntersectedConnectionsFactory(PROBE_X + 2, PROBE_Y + 2,
+        new SplittableRandom(0));
+
+    int exitDir;
+    try {
+      exitDir = enterTile(tile, dir, hor, vert, intersectedConnections);
+    } catch (UnsupportedOperationException e) {
+      return NO_MOVE;
+    }
+    if (exitDir < 0 || exitDir > DIRECTION_MASK) {
+      throw new IllegalStateException("ERROR: tile type " + id + " leaves going in direction " + exitDir);
+    }
+
+    Connection next = getEntry(PROBE_X, PROBE_Y, dir, hor, vert).getNext();
+    Connection exit = getExit(PROBE_X, PROBE_Y, exitDir, hor, vert);
+    int crossing = 0;
+    if (next == intersectedConnections.getConnectionA(PROBE_X, PROBE_Y)) {
+      crossing = CROSSING_A;
+    } else if (next == intersectedConnections.getConnectionB(PROBE_X, PROBE_Y)) {
+      crossing = CROSSING_B;
+    }
+    if (crossing != 0) {
+      crossings[id] = true;
+      crossingDirs[id * 4 + dir] = next.getDir();
+      next = next.getNext();
+    }
+
+    if (next != exit) {
+      throw new IllegalStateException("ERROR: tile type " + id + " makes connections that do not fit in a table");
+    }
+    return exitDir | crossing;
+  }
+
+  private static Connection[][] createProbeConnections() {
+    Connection[][] connections = new Connection[PROBE_X + 2][PROBE_Y + 2];
+    for (int x = 0; x < connections.length; x++) {
+      for (int y = 0; y < connections[x].length; y++) {
+        connections[x][y] = new Connection(new Vector(x, y), 0);
+      }
+    }
+    return connections;
+  }
+
+  private static int enterTile(Tile tile, int dir, Connection[][] hor, Connection[][] vert,
+      IntersectedConnectionsFactory intersectedConnections) {
+    switch (dir) {
+      case 0:
+        return tile.setConnectionInputGoingUp(PROBE_X, PROBE_Y, hor, vert, intersectedConnections);
+      case 1:
+        return tile.setConnectionInputGoingRight(PROBE_X, PROBE_Y, hor, vert, intersectedConnections);
+      case 2:
+        return tile.setConnectionInputGoingDown(PROBE_X, PROBE_Y, hor, vert, intersectedConnections);
+      default:
+        return tile.setConnectionInputGoingLeft(PROBE_X, PROBE_Y, hor, vert, intersectedConnections);
+    }
+  }
+
+  // ===================================================================================================================
+  // Functions
+  // ===================================================================================================================
+
+  // The connection a path comes in through when it enters tile x, y going in direction dir
+  static Connection getEntry(int x, int y, int dir, Connection[][] hor, Connection[][] vert) {
+    switch (dir) {
+      case 0:
+        return vert[x][y];
+      case 1:
+        return hor[x - 1][y];
+      case 2:
+        return vert[x][y - 1];
+      default:
+        return hor[x][y];
+    }
+  }
+
+  // The connection a path goes out through when it leaves tile x, y going in direction dir
+  static Connection getExit(int x, int y, int dir, Connection[][] hor, Connection[][] vert) {
+    switch (dir) {
+      case 0:
+        return vert[x][y - 1];
+      case 1:
+        return hor[x][y];
+      case 2:
+        return vert[x][y];
+      default:
+        return hor[x - 1][y];
+    }
+  }
+
+  // ===================================================================================================================
+  // Getters
+  // ===================================================================================================================
+
+  // The direction the path leaves the tile in, with CROSSING_A or CROSSING_B, or NO_MOVE
+  int getMove(int tileId, int dir) {
+    return moves[tileId * 4 + dir];
+  }
+
+  // The dir of the crossing connection the path goes through
+  double getCrossingDir(int tileId, int dir) {
+    return crossingDirs[tileId * 4 + dir];
+  }
+
+  boolean hasCrossing(int tileId) {
+    return crossings[tileId];
+  }
+}
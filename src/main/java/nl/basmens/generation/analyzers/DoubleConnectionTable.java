@@ -0,0 +1,198 @@
+package nl.basmens.generation.analyzers;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.SplittableRandom;
+
+import nl.basmens.generation.Tile;
+import nl.basmens.knot.Connection;
+import nl.basmens.knot.Intersection;
+import nl.basmens.utils.maths.Vector;
+
+// How the tile types of a doubled grid connect, read once from their setConnections methods. Every tile has a
+// connection going in and one going out on each side, 0 top, 1 right, 2 bottom and 3 left. A path that comes in on a
+// side goes out on the side of its exit, through the inner connections of its route on the way. Inner connections can
+// cross each other.
+final class DoubleConnectionTable {
+  static final int NO_EXIT = -1; // Nothing comes in on that side
+
+  private static final int PROBE_X = 1;
+  private static final int PROBE_Y = 1;
+  private static final int MAX_ROUTE_LENGTH = 64;
+
+  // At tileId * 4 + side
+  private final byte[] exits;
+  private final int[][] routes;
+  // At tileId. The inner connections are x, y and dir relative to their tile, the crossings are pairs of their indices.
+  private final double[][] innerConnections;
+  private final int[][] crossings;
+  private int maxInnerConnectionCount;
+
+  // ===================================================================================================================
+  // Constructor
+  // ===================================================================================================================
+  DoubleConnectionTable(Tile[] tileTypes) {
+    exits = new byte[tileTypes.length * 4];
+    routes = new int[tileTypes.length * 4][];
+    innerConnections = new double[tileTypes.length][];
+    crossings = new int[tileTypes.length][];
+
+    for (int id = 0; id < tileTypes.length; id++) {
+      probe(tileTypes[id], id);
+      maxInnerConnectionCount = Math.max(maxInnerConnectionCount, getInnerConnectionCount(id));
+    }
+  }
+
+  // Lets the tile connect on a grid of its own, and follows what it connected
+  private void probe(Tile tile, int id) {
+    Connection[][] hor = createProbeConnections(PROBE_X + 2, PROBE_Y * 2 + 4);
+    Connection[][] vert = createProbeConnections(PROBE_X * 2 + 4, PROBE_Y + 2);
+    tile.setConnections(PROBE_X, PROBE_Y, hor, vert, new SplittableRandom(0));
+
+    IdentityHashMap<Connection, Integer> innerIndices = new IdentityHashMap<>();
+    ArrayList<Connection> inner = new ArrayList<>();
+    for (int side = 0; side < 4; side++) {
+      ArrayList<Integer> route = new ArrayList<>();
+      Connection c = getIn(PROBE_X, PROBE_Y, side, hor, vert).getNext();
+      int exit = c == null ? NO_EXIT : getOutSide(c, hor, vert);
+      while (c != null && exit == NO_EXIT && route.size() < MAX_ROUTE_LENGTH) {
+        Integer index = innerIndices.get(c);
+        if (index == null && isProbeConnection(c, hor, vert)) {
+          throw new IllegalStateException("ERROR: tile type " + id + " connects to a connection that goes in");
+        }
+        if (index == null) {
+          index = inner.size();
+          innerIndices.put(c, index);
+          inner.add(c);
+        }
+        route.add(index);
+
+        c = c.getNext();
+        exit = c == null ? NO_EXIT : getOutSide(c, hor, vert);
+      }
+      if (c != null && exit == NO_EXIT) {
+        throw new IllegalStateException("ERROR: tile type " + id + " makes connections that do not fit in a table");
+      }
+
+      exits[id * 4 + side] = (byte) exit;
+      routes[id * 4 + side] = route.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    innerConnections[id] = new double[inner.size() * 3];
+    ArrayList<Integer> crossingList = new ArrayList<>();
+    for (int i = 0; i < inner.size(); i++) {
+      Vector pos = inner.get(i).getPos();
+      innerConnections[id][i * 3] = pos.getX() - PROBE_X;
+      innerConnections[id][i * 3 + 1] = pos.getY() - PROBE_Y;
+      innerConnections[id][i * 3 + 2] = inner.get(i).getDir();
+
+      Intersection intersection = inner.get(i).getIntersection();
+      if (intersection != null && intersection.under == inner.get(i)) {
+        Integer over = innerIndices.get(intersection.over);
+        if (over == null) {
+          throw new IllegalStateException("ERROR: tile type " + id + " crosses a connection outside of the tile");
+        }
+        crossingList.add(i);
+        crossingList.add(over);
+      }
+    }
+    crossings[id] = crossingList.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private static Connection[][] createProbeConnections(int w, int h) {
+    Connection[][] connections = new Connection[w][h];
+    for (int x = 0; x < w; x++) {
+      for (int y = 0; y < h; y++) {
+        connections[x][y] = new Connection(new Vector(x, y), 0);
+      }
+    }
+    return connections;
+  }
+
+  private static boolean isProbeConnection(Connection c, Connection[][] hor, Connection[][] vert) {
+    for (Connection[][] connections : new Connection[][][] { hor, vert }) {
+      for (Connection[] column : connections) {
+        for (Connection probeConnection : column) {
+          if (c == probeConnection) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private static int getOutSide(Connection c, Connection[][] hor, Connection[][] vert) {
+    for (int side = 0; side < 4; side++) {
+      if (c == getOut(PROBE_X, PROBE_Y, side, hor, vert)) {
+        return side;
+      }
+    }
+    return NO_EXIT;
+  }
+
+  // ===================================================================================================================
+  // Functions
+  // ===================================================================================================================
+
+  // The connection going into tile x, y on a side
+  static Connection getIn(int x, int y, int side, Connection[][] hor, Connection[][] vert) {
+    switch (side) {
+      case 0:
+        return vert[x * 2][y - 1];
+      case 1:
+        return hor[x][y * 2];
+      case 2:
+        return vert[x * 2 + 1][y];
+      default:
+        return hor[x - 1][y * 2 + 1];
+    }
+  }
+
+  // The connection going out of tile x, y on a side
+  static Connection getOut(int x, int y, int side, Connection[][] hor, Connection[][] vert) {
+    switch (side) {
+      case 0:
+        return vert[x * 2 + 1][y - 1];
+      case 1:
+        return hor[x][y * 2 + 1];
+      case 2:
+        return vert[x * 2][y];
+      default:
+        return hor[x - 1][y * 2];
+    }
+  }
+
+  // A new inner connection of tile x, y. The dir is set afterwards, the constructor would round it again.
+  Connection createInnerConnection(int tileId, int index, int x, int y) {
+    double[] inner = innerConnections[tileId];
+    Connection c = new Connection(new Vector(x + inner[index * 3], y + inner[index * 3 + 1]), 0);
+    c.setDir(inner[index * 3 + 2]);
+    return c;
+  }
+
+  // ===================================================================================================================
+  // Getters
+  // ===================================================================================================================
+  int getExit(int tileId, int side) {
+    return exits[tileId * 4 + side];
+  }
+
+  // The indices of the inner connections a path coming in on the side goes through
+  int[] getRoute(int tileId, int side) {
+    return routes[tileId * 4 + side];
+  }
+
+  int getInnerConnectionCount(int tileId) {
+    return innerConnections[tileId].length / 3;
+  }
+
+  int getMaxInnerConnectionCount() {
+    return maxInnerConnectionCount;
+  }
+
+  // Pairs of inner connection indices, the first of each pair is given first to createIntersection
+  int[] getCrossings(int tileId) {
+    return crossings[tileId];
+  }
+}
@@ -1,8 +1,9 @@
 package nl.basmens.generation.analyzers;
 
 import java.util.ArrayList;
+import java.util.SplittableRandom;
 
-import nl.basmens.generation.Tile;
+import nl.basmens.generation.TileGrid;
 import nl.basmens.knot.Connection;
 import nl.basmens.knot.Intersection;
 import nl.basmens.knot.Knot;
@@ -10,7 +11,9 @@ import nl.basmens.utils.collections.IndexedSet.IndexedSetElement;
 import nl.basmens.utils.maths.Vector;
 
 public interface GridAnalyzer {
-  ArrayList<Knot> extractKnots(Tile[][] grid);
+  // The random decides the crossings and is only used for this grid, see GridRandom. The analyzers follow tables made
+  // from the tile types of the grid, instead of asking every tile how it connects.
+  ArrayList<Knot> extractKnots(TileGrid grid, SplittableRandom random);
 
   int getGridW();
   void setGridW(int gridW);
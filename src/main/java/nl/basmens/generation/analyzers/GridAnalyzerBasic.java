@@ -1,9 +1,11 @@
 package nl.basmens.generation.analyzers;
 
 import java.util.ArrayList;
+import java.util.SplittableRandom;
 
 import nl.basmens.generation.IntersectedConnectionsFactory;
 import nl.basmens.generation.Tile;
+import nl.basmens.generation.TileGrid;
 import nl.basmens.knot.Connection;
 import nl.basmens.knot.Knot;
 import nl.basmens.utils.collections.IndexedSet;
@@ -14,7 +16,18 @@ public class GridAnalyzerBasic implements GridAnalyzer {
   private int gridW;
   private int gridH;
 
-  public ArrayList<Knot> extractKnots(Tile[][] grid) {
+  // Made from the tile types of the last grid, which are the same for every grid of a generator
+  private Tile[] tableTileTypes;
+  private BasicConnectionTable table;
+  // The two crossing connections of every tile with a crossing, at y * gridW + x
+  private Connection[] crossingsA = new Connection[0];
+  private Connection[] crossingsB = new Connection[0];
+
+  public ArrayList<Knot> extractKnots(TileGrid grid, SplittableRandom random) {
+    if (grid.getWidth() != gridW || grid.getHeight() != gridH) {
+      throw new IllegalArgumentException("ERROR: can not analyze a " + grid.getWidth() + "x" + grid.getHeight()
+          + " grid, the analyzer is set to " + gridW + "x" + gridH);
+    }
     PerformanceTimer timer = new PerformanceTimer(getClass(), "extractKnots", "create empty connections");
     ArrayList<Knot> result = new ArrayList<>();
 
@@ -43,21 +56,48 @@ public class GridAnalyzerBasic implements GridAnalyzer {
       }
     }
 
-    IntersectedConnectionsFactory intersectedConnections = new IntersectedConnectionsFactory(gridW, gridH);
+    timer.nextSegment("create crossings");
+    if (grid.getTileTypes() != tableTileTypes) {
+      tableTileTypes = grid.getTileTypes();
+      table = new BasicConnectionTable(tableTileTypes);
+    }
+    createCrossings(grid, random);
 
     timer.nextSegment("Read knots");
     // Read one loop at a time, untill no loops remain unread
     while (!allConnections.isEmpty()) {
-      result.add(readKnot(grid, horizontalConnections, verticalConnections, allConnections, intersectedConnections));
+      result.add(readKnot(grid.getTileIds(), horizontalConnections, verticalConnections, allConnections));
     }
 
     timer.stop();
     return result;
   }
 
-  private static Knot readKnot(Tile[][] grid, IndexAnalyzerConnection[][] horizontalConnections,
-      IndexAnalyzerConnection[][] verticalConnections, IndexedSet<IndexAnalyzerConnection> allConnections,
-      IntersectedConnectionsFactory intersectedConnections) {
+  // Only the tiles with a crossing get crossing connections, row by row
+  private void createCrossings(TileGrid grid, SplittableRandom random) {
+    if (crossingsA.length != gridW * gridH) {
+      crossingsA = new Connection[gridW * gridH];
+      crossingsB = new Connection[gridW * gridH];
+    }
+
+    byte[] tileIds = grid.getTileIds();
+    for (int y = 0; y < gridH; y++) {
+      for (int x = 0; x < gridW; x++) {
+        int i = y * gridW + x;
+        if (table.hasCrossing(tileIds[i] & 0xFF)) {
+          crossingsA[i] = new Connection(new Vector(x, y), 0);
+          crossingsB[i] = new Connection(new Vector(x, y), 0);
+          IntersectedConnectionsFactory.createIntersection(crossingsA[i], crossingsB[i], random);
+        } else {
+          crossingsA[i] = null;
+          crossingsB[i] = null;
+        }
+      }
+    }
+  }
+
+  private Knot readKnot(byte[] tileIds, IndexAnalyzerConnection[][] horizontalConnections,
+      IndexAnalyzerConnection[][] verticalConnections, IndexedSet<IndexAnalyzerConnection> allConnections) {
 
     IndexAnalyzerConnection firstConnection = allConnections.getAny();
     IndexedSet<AnalyzerIntersection> intersectionsToRemove = new IndexedSet<>();
@@ -74,29 +114,40 @@ public class GridAnalyzerBasic implements GridAnalyzer {
         case 0:
           y--;
           current.setDir(current.getDir() + Math.PI);
-          dir = grid[x][y].setConnectionInputGoingUp(x, y, horizontalConnections, verticalConnections,
-              intersectedConnections);
           break;
         case 1:
           x++;
-          dir = grid[x][y].setConnectionInputGoingRight(x, y, horizontalConnections, verticalConnections,
-              intersectedConnections);
           break;
         case 2:
           y++;
-          dir = grid[x][y].setConnectionInputGoingDown(x, y, horizontalConnections, verticalConnections,
-              intersectedConnections);
           break;
         case 3:
           x--;
           current.setDir(current.getDir() + Math.PI);
-          dir = grid[x][y].setConnectionInputGoingLeft(x, y, horizontalConnections, verticalConnections,
-              intersectedConnections);
           break;
         default:
           break;
       }
 
+      // Connect through the tile, as the table says
+      int i = y * gridW + x;
+      int tileId = tileIds[i] & 0xFF;
+      int move = table.getMove(tileId, dir);
+      if (move == BasicConnectionTable.NO_MOVE) {
+        throw new IllegalStateException("ERROR: the tile at " + x + ", " + y + " can not be entered going " + dir);
+      }
+      int exitDir = move & BasicConnectionTable.DIRECTION_MASK;
+      Connection exit = BasicConnectionTable.getExit(x, y, exitDir, horizontalConnections, verticalConnections);
+      if ((move & (BasicConnectionTable.CROSSING_A | BasicConnectionTable.CROSSING_B)) != 0) {
+        Connection c = (move & BasicConnectionTable.CROSSING_A) != 0 ? crossingsA[i] : crossingsB[i];
+        c.setDir(table.getCrossingDir(tileId, dir));
+        current.setNext(c);
+        c.setNext(exit);
+      } else {
+        current.setNext(exit);
+      }
+      dir = exitDir;
+
       // Add intersections
       allConnections.remove(current);
       while (current.getNext().isIntersected()) {
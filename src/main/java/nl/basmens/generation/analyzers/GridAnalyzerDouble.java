@@ -1,8 +1,12 @@
 package nl.basmens.generation.analyzers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
+import nl.basmens.generation.IntersectedConnectionsFactory;
 import nl.basmens.generation.Tile;
+import nl.basmens.generation.TileGrid;
 import nl.basmens.knot.Connection;
 import nl.basmens.knot.Knot;
 import nl.basmens.utils.collections.IndexedSet;
@@ -13,7 +17,16 @@ public class GridAnalyzerDouble implements GridAnalyzer {
   private int gridW;
   private int gridH;
 
-  public ArrayList<Knot> extractKnots(Tile[][] grid) {
+  // Made from the tile types of the last grid, which are the same for every grid of a generator
+  private Tile[] tableTileTypes;
+  private DoubleConnectionTable table;
+  private Connection[] innerConnections = new Connection[0]; // Of the tile being connected
+
+  public ArrayList<Knot> extractKnots(TileGrid grid, SplittableRandom random) {
+    if (grid.getWidth() != gridW || grid.getHeight() != gridH) {
+      throw new IllegalArgumentException("ERROR: can not analyze a " + grid.getWidth() + "x" + grid.getHeight()
+          + " grid, the analyzer is set to " + gridW + "x" + gridH);
+    }
     PerformanceTimer timer = new PerformanceTimer(getClass(), "extractKnots", "create empty connections");
     ArrayList<Knot> result = new ArrayList<>();
 
@@ -42,11 +55,17 @@ public class GridAnalyzerDouble implements GridAnalyzer {
       }
     }
 
-    // Make tiles set the connections
+    // Connect the connections in the tiles, as the table says
     timer.nextSegment("connect connections in tiles");
-    for (int x = 0; x < gridW; x++) {
-      for (int y = 0; y < gridH; y++) {
-        grid[x][y].setConnections(x, y, horizontalConnections, verticalConnections);
+    if (grid.getTileTypes() != tableTileTypes) {
+      tableTileTypes = grid.getTileTypes();
+      table = new DoubleConnectionTable(tableTileTypes);
+      innerConnections = new Connection[table.getMaxInnerConnectionCount()];
+    }
+    byte[] tileIds = grid.getTileIds();
+    for (int y = 0; y < gridH; y++) {
+      for (int x = 0; x < gridW; x++) {
+        connectTile(tileIds[y * gridW + x] & 0xFF, x, y, horizontalConnections, verticalConnections, random);
       }
     }
 
@@ -60,6 +79,36 @@ public class GridAnalyzerDouble implements GridAnalyzer {
     return result;
   }
 
+  private void connectTile(int tileId, int x, int y, Connection[][] hor, Connection[][] vert,
+      SplittableRandom random) {
+    int innerCount = table.getInnerConnectionCount(tileId);
+    for (int i = 0; i < innerCount; i++) {
+      innerConnections[i] = table.createInnerConnection(tileId, i, x, y);
+    }
+    int[] crossings = table.getCrossings(tileId);
+    for (int i = 0; i < crossings.length; i += 2) {
+      IntersectedConnectionsFactory.createIntersection(innerConnections[crossings[i]],
+          innerConnections[crossings[i + 1]], random);
+    }
+
+    for (int side = 0; side < 4; side++) {
+      int exit = table.getExit(tileId, side);
+      if (exit == DoubleConnectionTable.NO_EXIT) {
+        continue;
+      }
+
+      Connection c = DoubleConnectionTable.getIn(x, y, side, hor, vert);
+      for (int i : table.getRoute(tileId, side)) {
+        c.setNext(innerConnections[i]);
+        c = innerConnections[i];
+      }
+      c.setNext(DoubleConnectionTable.getOut(x, y, exit, hor, vert));
+    }
+
+    // The knots keep them, the analyzer does not have to
+    Arrays.fill(innerConnections, 0, innerCount, null);
+  }
+
   private static Knot readKnot(IndexedSet<AnalyzerConnection> allConnections) {
     
     AnalyzerConnection firstConnection = allConnections.getAny();
@@ -1,9 +1,13 @@
 package nl.basmens.generation.generators;
 
+import java.util.SplittableRandom;
+
 import nl.basmens.generation.Tile;
+import nl.basmens.generation.TileGrid;
 
 public interface GridGenerator {
-  void generateGrid();
+  // The random is only used for this grid, see GridRandom
+  void generateGrid(SplittableRandom random);
 
   Tile getTileAtPos(int x, int y);
 
@@ -12,5 +16,6 @@ public interface GridGenerator {
   int getGridH();
   void setGridH(int gridH);
 
-  Tile[][] getGrid();
+  // Filled again by every generateGrid
+  TileGrid getGrid();
 }
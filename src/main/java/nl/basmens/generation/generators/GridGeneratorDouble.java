@@ -1,63 +1,71 @@
 package nl.basmens.generation.generators;
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
-import nl.basmens.Main;
+import nl.basmens.Resources;
 import nl.basmens.generation.Tile;
+import nl.basmens.generation.TileGrid;
 import nl.basmens.generation.Tileset;
 import nl.basmens.knot.Connection;
 import nl.basmens.utils.concurrent.PerformanceTimer;
-import nl.benmens.processing.PAppletProxy;
 
 public class GridGeneratorDouble implements GridGenerator {
   private static final Tile tileEmpty;
   private static final Tile[] tileCurve = new Tile[4];
+  private static final int EDGE_TILE_COUNT = 5; // Empty and the curves
 
-  private final Random random = Main.RANDOM_FACTORY.get();
   private final Tileset tileset;
 
   private int gridW;
   private int gridH;
-  private Tile[][] grid;
+  // The tiles of the tileset followed by the edge tiles, the ids of a TileGrid
+  private final Tile[] tileTypes;
+  private final int emptyId;
+  private final int curveId;
+
+  private TileGrid grid;
+  // Index in the tileset of every tile inside the edges, row by row
+  private byte[] tileIndices;
 
   static {
-    String path = Main.RESOURCE_PATH;
+    String path = Resources.RESOURCE_PATH;
 
     // Empty
-    tileEmpty = new Tile(PAppletProxy.getSharedApplet().loadImage(path + "empty.png")) {
+    tileEmpty = new Tile(Tile.loadImage(path + "empty.png")) {
       @Override
-      public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+      public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
         // No connections to be made
       }
     };
     // Curve 0
-    tileCurve[0] = new Tile(PAppletProxy.getSharedApplet().loadImage(path + "curve0_double.png")) {
+    tileCurve[0] = new Tile(Tile.loadImage(path + "curve0_double.png")) {
       @Override
-      public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+      public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
         hor[x][y * 2].setNext(vert[x * 2 + 1][y - 1]);
         vert[x * 2][y - 1].setNext(hor[x][y * 2 + 1]);
       }
     };
     // Curve 1
-    tileCurve[1] = new Tile(PAppletProxy.getSharedApplet().loadImage(path + "curve1_double.png")) {
+    tileCurve[1] = new Tile(Tile.loadImage(path + "curve1_double.png")) {
       @Override
-      public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+      public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
         vert[x * 2 + 1][y].setNext(hor[x][y * 2 + 1]);
         hor[x][y * 2].setNext(vert[x * 2][y]);
       }
     };
     // Curve 2
-    tileCurve[2] = new Tile(PAppletProxy.getSharedApplet().loadImage(path + "curve2_double.png")) {
+    tileCurve[2] = new Tile(Tile.loadImage(path + "curve2_double.png")) {
       @Override
-      public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+      public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
         vert[x * 2 + 1][y].setNext(hor[x - 1][y * 2]);
         hor[x - 1][y * 2 + 1].setNext(vert[x * 2][y]);
       }
     };
     // Curve 3
-    tileCurve[3] = new Tile(PAppletProxy.getSharedApplet().loadImage(path + "curve3_double.png")) {
+    tileCurve[3] = new Tile(Tile.loadImage(path + "curve3_double.png")) {
       @Override
-      public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert) {
+      public void setConnections(int x, int y, Connection[][] hor, Connection[][] vert, SplittableRandom random) {
         vert[x * 2][y - 1].setNext(hor[x - 1][y * 2]);
         hor[x - 1][y * 2 + 1].setNext(vert[x * 2 + 1][y - 1]);
       }
@@ -66,37 +74,58 @@ public class GridGeneratorDouble implements GridGenerator {
 
   public GridGeneratorDouble(Tileset tileset) {
     this.tileset = tileset;
-  }
 
-  public void generateGrid() {
-    PerformanceTimer timer = new PerformanceTimer(getClass(), "generateGrid");
-    grid = new Tile[gridW][gridH];
+    int tileCount = tileset.getTileCount();
+    if (tileCount + EDGE_TILE_COUNT > TileGrid.MAX_TILE_TYPE_COUNT) {
+      throw new IllegalArgumentException("ERROR: a tileset can not have more than "
+          + (TileGrid.MAX_TILE_TYPE_COUNT - EDGE_TILE_COUNT) + " tiles");
+    }
+    tileTypes = Arrays.copyOf(tileset.getTiles(), tileCount + EDGE_TILE_COUNT);
+    emptyId = tileCount;
+    curveId = tileCount + 1;
+    tileTypes[emptyId] = tileEmpty;
+    System.arraycopy(tileCurve, 0, tileTypes, curveId, 4);
+  }
 
-    // Fill edges
-    for (int x = 1; x < gridW - 1; x++) {
-      grid[x][0] = tileCurve[1 + (x + 1) % 2];
-      grid[x][gridH - 1] = tileCurve[(x + 1) % 2 * 3];
+  public void generateGrid(SplittableRandom random) {
+    PerformanceTimer timer = new PerformanceTimer(getClass(), "generateGrid", "sample");
+    if (grid == null || grid.getWidth() != gridW || grid.getHeight() != gridH) {
+      createGrid();
     }
+    tileset.sample(random, tileIndices);
+
+    // Fill center, the ids of the tileset tiles are their indices
+    timer.nextSegment("fill center");
+    byte[] tileIds = grid.getTileIds();
+    int innerW = Math.max(0, gridW - 2);
     for (int y = 1; y < gridH - 1; y++) {
-      grid[0][y] = tileCurve[y % 2];
-      grid[gridW - 1][y] = tileCurve[2 + (y + 1) % 2];
+      System.arraycopy(tileIndices, (y - 1) * innerW, tileIds, y * gridW + 1, innerW);
     }
-    grid[0][0] = tileEmpty;
-    grid[0][gridH - 1] = tileEmpty;
-    grid[gridW - 1][0] = tileEmpty;
-    grid[gridW - 1][gridH - 1] = tileEmpty;
+    timer.stop();
+  }
+
+  // The grid is reused for every grid generated, only the center changes
+  private void createGrid() {
+    grid = new TileGrid(gridW, gridH, tileTypes);
+    tileIndices = new byte[Math.max(0, gridW - 2) * Math.max(0, gridH - 2)];
 
-    // Fill center
+    // Fill edges
     for (int x = 1; x < gridW - 1; x++) {
-      for (int y = 1; y < gridH - 1; y++) {
-        grid[x][y] = tileset.getTileByIndex(random.nextInt(tileset.getTileCount()));
-      }
+      grid.setTileId(x, 0, curveId + 1 + (x + 1) % 2);
+      grid.setTileId(x, gridH - 1, curveId + (x + 1) % 2 * 3);
     }
-    timer.stop();
+    for (int y = 1; y < gridH - 1; y++) {
+      grid.setTileId(0, y, curveId + y % 2);
+      grid.setTileId(gridW - 1, y, curveId + 2 + (y + 1) % 2);
+    }
+    grid.setTileId(0, 0, emptyId);
+    grid.setTileId(0, gridH - 1, emptyId);
+    grid.setTileId(gridW - 1, 0, emptyId);
+    grid.setTileId(gridW - 1, gridH - 1, emptyId);
   }
 
   public Tile getTileAtPos(int x, int y) {
-    return grid[x][y];
+    return grid.getTile(x, y);
   }
 
   public int getGridW() {
@@ -115,7 +144,7 @@ public class GridGeneratorDouble implements GridGenerator {
     this.gridH = gridH;
   }
 
-  public Tile[][] getGrid() {
+  public TileGrid getGrid() {
     return grid;
   }
 }
@@ -1,6 +1,6 @@
 package nl.basmens.knot;
 
-import nl.basmens.Main;
+import nl.basmens.Configuration;
 import nl.basmens.utils.maths.Vector;
 
 public class Connection implements Comparable<Connection> {
@@ -34,7 +34,7 @@ public class Connection implements Comparable<Connection> {
   // ===================================================================================================================
 
   protected boolean propagateTricolorability(int sectionValue, long startTime) {
-    if (System.currentTimeMillis() - startTime > Main.MAX_CALC_TIME_PER_INVARIANT) {
+    if (System.currentTimeMillis() - startTime > Configuration.get().getMaxCalcTimePerInvariant()) {
       throw new RuntimeException("Max calculation time exceeded in tricolorability");
     }
 
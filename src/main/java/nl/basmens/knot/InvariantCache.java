@@ -0,0 +1,127 @@
+package nl.basmens.knot;
+
+import java.util.Locale;
+
+import nl.basmens.Configuration;
+import nl.basmens.utils.collections.ConcurrentLruCache;
+import nl.basmens.utils.maths.Polynomial;
+
+// Invariants of reduced knots by their fingerprint, shared by all threads. Most generated knots are one of a few
+// small diagrams, so this saves calculating the same invariants over and over again. Only successfully calculated
+// invariants are stored.
+public final class InvariantCache {
+  private static final int SEGMENT_COUNT = 32;
+  private static final long NOT_CALCULATED = -1;
+
+  private static final ConcurrentLruCache<KnotFingerprint, Entry> CACHE = new ConcurrentLruCache<>(
+      Configuration.get().getInvariantCacheMaxBytes(), SEGMENT_COUNT,
+      (KnotFingerprint key, Entry value) -> key.getEstimatedSize() + value.getEstimatedSize());
+
+  private InvariantCache() {
+  }
+
+  // Immutable, merging results creates a new entry
+  public static final class Entry {
+    private final long knotDeterminant;
+    private final Polynomial alexanderPolynomial;
+    private final int alexanderPolynomialId; // PolynomialDictionary id, only valid if there is a polynomial
+    private final long estimatedSize;
+
+    private Entry(long knotDeterminant, Polynomial alexanderPolynomial, int alexanderPolynomialId) {
+      this.knotDeterminant = knotDeterminant;
+      this.alexanderPolynomial = alexanderPolynomial;
+      this.alexanderPolynomialId = alexanderPolynomialId;
+
+      long size = 64;
+      if (alexanderPolynomial != null && !alexanderPolynomial.isZero()) {
+        size += 80L * (alexanderPolynomial.getHighestMonomial().getPower()
+            - alexanderPolynomial.getLowestMonomial().getPower() + 1);
+      }
+      estimatedSize = size;
+    }
+
+    public boolean hasKnotDeterminant() {
+      return knotDeterminant != NOT_CALCULATED;
+    }
+
+    public long getKnotDeterminant() {
+      return knotDeterminant;
+    }
+
+    public boolean hasAlexanderPolynomial() {
+      return alexanderPolynomial != null;
+    }
+
+    // Returns a copy, so the cached polynomial can not be modified
+    public Polynomial getAlexanderPolynomial() {
+      return alexanderPolynomial == null ? null : new Polynomial(alexanderPolynomial);
+    }
+
+    public int getAlexanderPolynomialId() {
+      return alexanderPolynomialId;
+    }
+
+    private long getEstimatedSize() {
+      return estimatedSize;
+    }
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+  public static Entry get(KnotFingerprint fingerprint) {
+    return CACHE.get(fingerprint);
+  }
+
+  // Pass a negative knot determinant or a null alexander polynomial if it was not calculated. The id is the
+  // PolynomialDictionary id of the alexander polynomial, so knots found in the cache do not have to encode it.
+  public static void put(KnotFingerprint fingerprint, long knotDeterminant, Polynomial alexanderPolynomial,
+      int alexanderPolynomialId) {
+    if (knotDeterminant < 0 && alexanderPolynomial == null) {
+      return;
+    }
+
+    Entry entry = new Entry(knotDeterminant < 0 ? NOT_CALCULATED : knotDeterminant,
+        alexanderPolynomial == null ? null : new Polynomial(alexanderPolynomial), alexanderPolynomialId);
+    CACHE.merge(fingerprint, entry, (Entry old, Entry given) -> given.hasAlexanderPolynomial()
+        ? new Entry(given.hasKnotDeterminant() ? given.knotDeterminant : old.knotDeterminant,
+            given.alexanderPolynomial, given.alexanderPolynomialId)
+        : new Entry(given.knotDeterminant, old.alexanderPolynomial, old.alexanderPolynomialId));
+  }
+
+  public static void clear() {
+    CACHE.clear();
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public static long getHitCount() {
+    return CACHE.getHitCount();
+  }
+
+  public static long getMissCount() {
+    return CACHE.getMissCount();
+  }
+
+  public static long getEvictionCount() {
+    return CACHE.getEvictionCount();
+  }
+
+  public static int size() {
+    return CACHE.size();
+  }
+
+  public static long getEstimatedSize() {
+    return CACHE.getWeight();
+  }
+
+  public static String getStatistics() {
+    long hits = getHitCount();
+    long lookups = hits + getMissCount();
+    return String.format(Locale.ENGLISH,
+        "Invariant cache: %d hits, %d misses (%.1f%% hit rate), %d evictions, %d entries, %.1f MB", hits,
+        getMissCount(), lookups == 0 ? 0 : 100.0 * hits / lookups, getEvictionCount(), size(),
+        getEstimatedSize() / 1E6);
+  }
+}
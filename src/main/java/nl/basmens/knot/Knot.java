@@ -6,15 +6,28 @@ import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.FutureTask;
 
+import nl.basmens.Configuration;
 import nl.basmens.Main;
 import nl.basmens.utils.concurrent.PerformanceTimer;
-import nl.basmens.utils.maths.Matrix;
+import nl.basmens.utils.io.PolynomialDictionary;
+import nl.basmens.utils.maths.ModularPolynomialMatrix;
 import nl.basmens.utils.maths.Monomial;
 import nl.basmens.utils.maths.Polynomial;
 import nl.basmens.utils.maths.PolynomialMatrix;
+import nl.basmens.utils.maths.PolynomialMatrix.DeterminantStrategy;
+import nl.basmens.utils.maths.SparseMatrix;
 import nl.basmens.utils.maths.Vector;
 
 public class Knot {
+  public enum AlexanderPolynomialEngine {
+    // Gaussian elimination on a matrix of Polynomial objects
+    POLYNOMIAL_MATRIX,
+    // Fraction-free Bareiss elimination on a matrix of Polynomial objects
+    POLYNOMIAL_MATRIX_BAREISS,
+    // Evaluation in integer points modulo several primes, followed by interpolation and chinese remaindering
+    MODULAR
+  }
+
   // Predefined values
   private static final FutureTask<Boolean> FUTURE_UNKNOT_TRICOLORABILITY = new FutureTask<>(() -> false);
   private static final FutureTask<Long> FUTURE_UNKNOT_KNOT_DETERMINANT = new FutureTask<>(() -> 1L);
@@ -32,6 +45,12 @@ public class Knot {
   private static final FutureTask<Polynomial> ERROR_FUTURE_ALEXANDER_POLYNOMIAL = new FutureTask<>(
       () -> ERROR_VALUE_ALEXANDER_POLYNOMIAL);
 
+  private static final int NO_ALEXANDER_POLYNOMIAL_ID = -1;
+  private static final int UNKNOT_ALEXANDER_POLYNOMIAL_ID = PolynomialDictionary.getId(
+      new Polynomial(new Monomial(1, 0)));
+  private static final int ERROR_ALEXANDER_POLYNOMIAL_ID = PolynomialDictionary.getId(
+      ERROR_VALUE_ALEXANDER_POLYNOMIAL);
+
   static {
     FUTURE_UNKNOT_TRICOLORABILITY.run();
     FUTURE_UNKNOT_KNOT_DETERMINANT.run();
@@ -54,10 +73,15 @@ public class Knot {
   private int intersectionCount;
   private int length;
 
+  // Number of the grid the knot was found in, see GridRandom. -1 if unknown.
+  private long gridIndex = -1;
+
   // Invariants
   private FutureTask<Boolean> tricolorabilityFuture;
   private FutureTask<Long> knotDeterminantFuture;
   private FutureTask<Polynomial> alexanderPolynomialFuture;
+  // PolynomialDictionary id of the alexander polynomial, so it is encoded at most once per knot
+  private int alexanderPolynomialId = NO_ALEXANDER_POLYNOMIAL_ID;
 
   // ===================================================================================================================
   // Constructor
@@ -113,7 +137,7 @@ public class Knot {
       simplifyUsingReidemeisterMoves();
 
       // If there are too many intersectons, set invariants to error
-      if (intersections.size() > Main.CALC_INVARIANT_MAX_INTERSECTION_COUNT) {
+      if (intersections.size() > Configuration.get().getCalcInvariantMaxIntersectionCount()) {
         initInvariantsToError();
       }
     }
@@ -154,7 +178,7 @@ public class Knot {
       simplifyUsingReidemeisterMoves();
 
       // If there are too many intersectons, set invariants to error
-      if (intersections.size() > Main.CALC_INVARIANT_MAX_INTERSECTION_COUNT) {
+      if (intersections.size() > Configuration.get().getCalcInvariantMaxIntersectionCount()) {
         initInvariantsToError();
       }
 
@@ -170,6 +194,7 @@ public class Knot {
     tricolorabilityFuture = FUTURE_UNKNOT_TRICOLORABILITY;
     knotDeterminantFuture = FUTURE_UNKNOT_KNOT_DETERMINANT;
     alexanderPolynomialFuture = FUTURE_UNKNOT_ALEXANDER_POLYNOMIAL;
+    alexanderPolynomialId = UNKNOT_ALEXANDER_POLYNOMIAL_ID;
 
     hasAsignedSectionIds = true;
     hasAsignedAreaIds = true;
@@ -179,6 +204,7 @@ public class Knot {
     tricolorabilityFuture = ERROR_FUTURE_TRICOLORABILITY;
     knotDeterminantFuture = ERROR_FUTURE_KNOT_DETERMINANT;
     alexanderPolynomialFuture = ERROR_FUTURE_ALEXANDER_POLYNOMIAL;
+    alexanderPolynomialId = ERROR_ALEXANDER_POLYNOMIAL_ID;
 
     hasAsignedSectionIds = true;
     hasAsignedAreaIds = true;
@@ -375,30 +401,28 @@ public class Knot {
   // ===================================================================================================================
 
   // Tricolorability
+  // A knot is tricolorable iff the coloring matrix has a nullity greater than 1 over GF(3), the trivial colorings
+  // (every section the same color) account for a nullity of 1
   private boolean calculateTricolorability() {
     PerformanceTimer timer = new PerformanceTimer(getClass(), "calculateTricolorability");
-
-    long startTime = System.currentTimeMillis();
     try {
-      Connection connection = reducedFirstConnection;
-      while (!connection.isUnder() && connection != reducedFirstConnection.getPrev()) {
-        connection = connection.getNext();
+      if (intersections.size() < 3) {
+        timer.stop();
+        return false;
       }
-      connection.propagateTricolorability(1, startTime);
 
-      connection = reducedFirstConnection;
-      int firstSectionValue = connection.getSectionValue();
-      do {
-        int sectionValue = connection.getSectionValue();
-        if (firstSectionValue != sectionValue) {
-          timer.stop();
-          return true;
-        }
-        connection = connection.getNext();
-      } while (connection != reducedFirstConnection);
+      asignSectionIds();
+
+      int size = intersections.size();
+      boolean isTricolorable = createColoringMatrix(size).getRank(3) < size - 1;
+
+      // Only the renderer needs an actual coloring of the sections
+      if (isTricolorable && !Configuration.get().isMultiThread()) {
+        colorSectionsForRendering();
+      }
 
       timer.stop();
-      return false;
+      return isTricolorable;
     } catch (RuntimeException e) {
       e.printStackTrace();
       timer.stop();
@@ -406,6 +430,18 @@ public class Knot {
     }
   }
 
+  private void colorSectionsForRendering() {
+    try {
+      Connection connection = reducedFirstConnection;
+      while (!connection.isUnder() && connection != reducedFirstConnection.getPrev()) {
+        connection = connection.getNext();
+      }
+      connection.propagateTricolorability(1, System.currentTimeMillis());
+    } catch (RuntimeException e) {
+      // Timed out, the knot will be drawn without colors
+    }
+  }
+
   // KnotDeterminant
   private long calculateKnotDeterminant() {
     PerformanceTimer timer = new PerformanceTimer(getClass(), "calculateKnotDeterminant");
@@ -415,27 +451,14 @@ public class Knot {
         return 1;
       }
 
-      long startTime = System.currentTimeMillis();
       asignSectionIds();
 
-      Matrix matrix = new Matrix(intersections.size() - 1, intersections.size() - 1);
+      SparseMatrix matrix = createColoringMatrix(intersections.size() - 1);
 
-      for (int i = 0; i < intersections.size() - 1; i++) {
-        Intersection intersection = intersections.get(i);
-        if (intersection.overSectionId < intersections.size() - 1) {
-          matrix.add(intersection.overSectionId, i, 2);
-        }
-        if (intersection.underSectionId1 < intersections.size() - 1) {
-          matrix.add(intersection.underSectionId1, i, -1);
-        }
-        if (intersection.underSectionId2 < intersections.size() - 1) {
-          matrix.add(intersection.underSectionId2, i, -1);
-        }
-      }
-
-      // round to get rid of precision loss
+      // Exact, throws an ArithmeticException if the determinant does not fit in a long
+      long determinant = matrix.getExactDeterminant().abs().longValueExact();
       timer.stop();
-      return Math.round(Math.abs(matrix.getDeterminant(startTime)));
+      return determinant;
     } catch (RuntimeException e) {
       // e.printStackTrace();
       timer.stop();
@@ -443,6 +466,25 @@ public class Knot {
     }
   }
 
+  // Rows are intersections, columns are sections. Only the first size rows and columns are included.
+  private SparseMatrix createColoringMatrix(int size) {
+    SparseMatrix matrix = new SparseMatrix(size, size);
+
+    for (int i = 0; i < size; i++) {
+      Intersection intersection = intersections.get(i);
+      if (intersection.overSectionId < size) {
+        matrix.add(intersection.overSectionId, i, 2);
+      }
+      if (intersection.underSectionId1 < size) {
+        matrix.add(intersection.underSectionId1, i, -1);
+      }
+      if (intersection.underSectionId2 < size) {
+        matrix.add(intersection.underSectionId2, i, -1);
+      }
+    }
+    return matrix;
+  }
+
   // AlexanderPolynomial
   private Polynomial calculateAlexanderPolynomial() {
     PerformanceTimer timer = new PerformanceTimer(getClass(), "calculateAlexanderPolynomial");
@@ -455,37 +497,15 @@ public class Knot {
       long startTime = System.currentTimeMillis();
       asignAreaIds();
 
-      int s = intersections.size();
-      PolynomialMatrix matrix = new PolynomialMatrix(s, s);
-      for (int i = 0; i < s; i++) {
-        Intersection intersection = intersections.get(i);
-        for (int j = 0; j < 4; j++) {
-          if (intersection.areaIds[j] < 2) {
-            continue;
-          }
-
-          // / / | / /
-          // /-t | t /
-          // >---|--->
-          // / 1 | -1 /
-          // / / | / /
-
-          // Also take the transpose of the matrix, because the right top tends to have
-          // more zeros
-          matrix.get(i, intersection.areaIds[j] - 2).add(switch (j) {
-            case 0:
-              yield new Polynomial(new Monomial(-1, 0));
-            case 1:
-              yield new Polynomial(new Monomial(1, 1));
-            case 2:
-              yield new Polynomial(new Monomial(-1, 1));
-            default:
-              yield new Polynomial(new Monomial(1, 0));
-          });
-        }
-      }
+      Polynomial determinant = switch (Configuration.get().getAlexanderPolynomialEngine()) {
+        case MODULAR:
+          yield createModularAlexanderMatrix().getDeterminant(startTime);
+        case POLYNOMIAL_MATRIX_BAREISS:
+          yield createAlexanderMatrix().getDeterminant(startTime, DeterminantStrategy.BAREISS);
+        default:
+          yield createAlexanderMatrix().getDeterminant(startTime);
+      };
 
-      Polynomial determinant = matrix.getDeterminant(startTime);
       Monomial smallestTerm = determinant.getLowestMonomial();
       if (smallestTerm != null) {
         determinant = Polynomial.div(determinant,
@@ -500,6 +520,178 @@ public class Knot {
     }
   }
 
+  private PolynomialMatrix createAlexanderMatrix() {
+    int s = intersections.size();
+    PolynomialMatrix matrix = new PolynomialMatrix(s, s);
+    for (int i = 0; i < s; i++) {
+      Intersection intersection = intersections.get(i);
+      for (int j = 0; j < 4; j++) {
+        if (intersection.areaIds[j] < 2) {
+          continue;
+        }
+
+        // / / | / /
+        // /-t | t /
+        // >---|--->
+        // / 1 | -1 /
+        // / / | / /
+
+        // Also take the transpose of the matrix, because the right top tends to have
+        // more zeros
+        matrix.get(i, intersection.areaIds[j] - 2).add(switch (j) {
+          case 0:
+            yield new Polynomial(new Monomial(-1, 0));
+          case 1:
+            yield new Polynomial(new Monomial(1, 1));
+          case 2:
+            yield new Polynomial(new Monomial(-1, 1));
+          default:
+            yield new Polynomial(new Monomial(1, 0));
+        });
+      }
+    }
+    return matrix;
+  }
+
+  private ModularPolynomialMatrix createModularAlexanderMatrix() {
+    int s = intersections.size();
+    ModularPolynomialMatrix matrix = new ModularPolynomialMatrix(s, s, 1);
+    for (int i = 0; i < s; i++) {
+      Intersection intersection = intersections.get(i);
+      for (int j = 0; j < 4; j++) {
+        if (intersection.areaIds[j] < 2) {
+          continue;
+        }
+
+        // Same layout as createAlexanderMatrix
+        switch (j) {
+          case 0:
+            matrix.add(i, intersection.areaIds[j] - 2, -1, 0);
+            break;
+          case 1:
+            matrix.add(i, intersection.areaIds[j] - 2, 1, 1);
+            break;
+          case 2:
+            matrix.add(i, intersection.areaIds[j] - 2, -1, 1);
+            break;
+          default:
+            matrix.add(i, intersection.areaIds[j] - 2, 1, 0);
+            break;
+        }
+      }
+    }
+    return matrix;
+  }
+
+  // ===================================================================================================================
+  // Invariant bundle
+  // ===================================================================================================================
+
+  // Calculates the requested invariants with as little work as possible: the knot determinant equals |alexander(-1)|
+  // and a knot is tricolorable iff 3 divides its determinant. So only the most expensive requested invariant is
+  // calculated, and the cheaper ones are derived from it. The direct calculations are only used as a fallback, when
+  // the more expensive invariant could not be calculated. Tricolorability only uses the determinant if it is known
+  // already, its own calculation is a rank modulo 3, which is much cheaper than the exact determinant.
+  public void startCalcInvariants(boolean tricolorability, boolean knotDeterminant, boolean alexanderPolynomial) {
+    if ((!tricolorability || tricolorabilityFuture != null) && (!knotDeterminant || knotDeterminantFuture != null)
+        && (!alexanderPolynomial || alexanderPolynomialFuture != null)) {
+      return;
+    }
+
+    synchronized (this) {
+      PerformanceTimer timer = new PerformanceTimer(getClass(), "startCalcInvariants", "cache lookup");
+      KnotFingerprint fingerprint = null;
+      boolean isCached = false;
+      if (Configuration.get().isUseInvariantCache()) {
+        fingerprint = KnotFingerprint.of(this);
+        isCached = loadCachedInvariants(fingerprint, knotDeterminant || tricolorability, alexanderPolynomial);
+      }
+
+      timer.nextSegment("alexander polynomial");
+      if (alexanderPolynomial) {
+        startCalcAlexanderPolynomial();
+      }
+
+      timer.nextSegment("knot determinant");
+      if ((knotDeterminant || tricolorability) && knotDeterminantFuture == null) {
+        long determinant = deriveKnotDeterminant();
+        if (determinant != ERROR_VALUE_KNOT_DETERMINANT) {
+          knotDeterminantFuture = createDoneFuture(determinant);
+        } else if (knotDeterminant) {
+          startCalcKnotDeterminant();
+        }
+      }
+
+      timer.nextSegment("tricolorability");
+      if (tricolorability && tricolorabilityFuture == null) {
+        long determinant = hasCalculatedKnotDeterminant() ? getKnotDeterminant() : ERROR_VALUE_KNOT_DETERMINANT;
+        if (determinant == ERROR_VALUE_KNOT_DETERMINANT) {
+          startCalcTricolorability();
+        } else {
+          tricolorabilityFuture = createDoneFuture(determinant % 3 == 0);
+        }
+      }
+
+      timer.nextSegment("cache store");
+      if (fingerprint != null && !isCached) {
+        storeCachedInvariants(fingerprint);
+      }
+      timer.stop();
+    }
+  }
+
+  // Returns true if all requested invariants were found in the cache
+  private boolean loadCachedInvariants(KnotFingerprint fingerprint, boolean knotDeterminant,
+      boolean alexanderPolynomial) {
+    InvariantCache.Entry cached = InvariantCache.get(fingerprint);
+    if (cached == null) {
+      return false;
+    }
+
+    if (alexanderPolynomial && alexanderPolynomialFuture == null && cached.hasAlexanderPolynomial()) {
+      alexanderPolynomialFuture = createDoneFuture(cached.getAlexanderPolynomial());
+      alexanderPolynomialId = cached.getAlexanderPolynomialId();
+    }
+    if (knotDeterminant && knotDeterminantFuture == null && cached.hasKnotDeterminant()) {
+      knotDeterminantFuture = createDoneFuture(cached.getKnotDeterminant());
+    }
+    return (!alexanderPolynomial || alexanderPolynomialFuture != null)
+        && (!knotDeterminant || knotDeterminantFuture != null);
+  }
+
+  private void storeCachedInvariants(KnotFingerprint fingerprint) {
+    long determinant = hasCalculatedKnotDeterminant() ? getKnotDeterminant() : ERROR_VALUE_KNOT_DETERMINANT;
+    Polynomial alexander = hasCalculatedAlexanderPolynomial() ? getAlexanderPolynomial() : null;
+    if (alexander == ERROR_VALUE_ALEXANDER_POLYNOMIAL) {
+      alexander = null;
+    }
+    InvariantCache.put(fingerprint, determinant, alexander,
+        alexander == null ? NO_ALEXANDER_POLYNOMIAL_ID : getAlexanderPolynomialId());
+  }
+
+  private long deriveKnotDeterminant() {
+    if (!hasCalculatedAlexanderPolynomial()) {
+      return ERROR_VALUE_KNOT_DETERMINANT;
+    }
+
+    Polynomial alexander = getAlexanderPolynomial();
+    if (alexander == ERROR_VALUE_ALEXANDER_POLYNOMIAL) {
+      return ERROR_VALUE_KNOT_DETERMINANT;
+    }
+
+    try {
+      return alexander.evaluateOnTExact(-1).abs().longValueExact();
+    } catch (ArithmeticException e) {
+      return ERROR_VALUE_KNOT_DETERMINANT;
+    }
+  }
+
+  private static <T> FutureTask<T> createDoneFuture(T value) {
+    FutureTask<T> future = new FutureTask<>(() -> value);
+    future.run();
+    return future;
+  }
+
   // ===================================================================================================================
   // Getters
   // ===================================================================================================================
@@ -523,6 +715,19 @@ public class Knot {
     return intersectionCount;
   }
 
+  // After simplifying using reidemeister moves
+  public int getReducedIntersectionCount() {
+    return intersections.size();
+  }
+
+  public long getGridIndex() {
+    return gridIndex;
+  }
+
+  public void setGridIndex(long gridIndex) {
+    this.gridIndex = gridIndex;
+  }
+
   public boolean hasCalculatedTricolorability() {
     return tricolorabilityFuture != null && tricolorabilityFuture.isDone();
   }
@@ -646,6 +851,18 @@ public class Knot {
     }
   }
 
+  // Same as PolynomialDictionary.getId(getAlexanderPolynomial()), but only encodes the polynomial the first time
+  public int getAlexanderPolynomialId() {
+    int id = alexanderPolynomialId;
+    if (id == NO_ALEXANDER_POLYNOMIAL_ID) {
+      Polynomial alexander = getAlexanderPolynomial();
+      id = alexander == ERROR_VALUE_ALEXANDER_POLYNOMIAL ? ERROR_ALEXANDER_POLYNOMIAL_ID
+          : PolynomialDictionary.getId(alexander);
+      alexanderPolynomialId = id;
+    }
+    return id;
+  }
+
   public String getAlexanderPolynomialState() {
     if (hasCalculatedAlexanderPolynomial()) {
       return getAlexanderPolynomial().toString();
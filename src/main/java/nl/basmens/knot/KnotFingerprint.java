@@ -0,0 +1,155 @@
+package nl.basmens.knot;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Canonical encoding of a reduced knot diagram: its signed Gauss code, minimized over every starting point, both
+// directions and the mirror image. Walking along the knot, every passage through a crossing is encoded as
+// (label << 2) | (isOver << 1) | sign, where crossings are labeled in order of first appearance. The sign is the
+// crossing type, which does not change when the direction is reversed, and the mirror image swaps over and under and
+// flips every sign. Knots with the same fingerprint therefore have the same knot determinant and alexander
+// polynomial.
+public final class KnotFingerprint {
+  private final int[] code;
+  private final int hash;
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  private KnotFingerprint(int[] code) {
+    this.code = code;
+    this.hash = Arrays.hashCode(code);
+  }
+
+  public static KnotFingerprint of(Knot knot) {
+    int crossingCount = knot.getIntersections().size();
+    int length = crossingCount * 2;
+
+    HashMap<Intersection, Integer> crossingIndices = new HashMap<>();
+    for (int i = 0; i < crossingCount; i++) {
+      crossingIndices.put(knot.getIntersections().get(i), i);
+    }
+
+    // Walk the knot once
+    int[] crossings = new int[length];
+    boolean[] isOver = new boolean[length];
+    boolean[] signs = new boolean[crossingCount];
+    Connection connection = knot.getReducedFirstConnection();
+    for (int i = 0; i < length; i++) {
+      Intersection intersection = connection.getIntersection();
+      crossings[i] = crossingIndices.get(intersection);
+      isOver[i] = connection.isOver();
+      signs[crossings[i]] = intersection.getType() == 1;
+      connection = connection.getNext();
+    }
+    if (connection != knot.getReducedFirstConnection()) {
+      throw new IllegalStateException("ERROR: the reduced knot does not pass every crossing exactly twice");
+    }
+
+    int[] best = null;
+    int[] candidate = new int[length];
+    int[] labels = new int[crossingCount];
+    for (int mirror = 0; mirror < 2; mirror++) {
+      for (int direction = 1; direction >= -1; direction -= 2) {
+        for (int start = 0; start < length; start++) {
+          if (encode(crossings, isOver, signs, mirror == 1, direction, start, labels, candidate, best)) {
+            int[] temp = best == null ? new int[length] : best;
+            best = candidate;
+            candidate = temp;
+          }
+        }
+      }
+    }
+
+    return new KnotFingerprint(best);
+  }
+
+  // The signed Gauss code of the reduced knot, walked from its first connection, in the same encoding as the
+  // fingerprint but without minimizing. Much cheaper than of(knot), but different diagrams of the same walk differ.
+  public static int[] gaussCode(Knot knot) {
+    int length = knot.getIntersections().size() * 2;
+    int[] code = new int[length];
+    HashMap<Intersection, Integer> labels = new HashMap<>();
+    Connection connection = knot.getReducedFirstConnection();
+    for (int i = 0; i < length; i++) {
+      Intersection intersection = connection.getIntersection();
+      Integer label = labels.get(intersection);
+      if (label == null) {
+        label = labels.size();
+        labels.put(intersection, label);
+      }
+
+      code[i] = (label << 2) | (connection.isOver() ? 2 : 0) | (intersection.getType() == 1 ? 1 : 0);
+      connection = connection.getNext();
+    }
+    return code;
+  }
+
+  // Writes the code starting at start into candidate. Returns true if it is smaller than best, stops as soon as it is
+  // known to be bigger.
+  private static boolean encode(int[] crossings, boolean[] isOver, boolean[] signs, boolean isMirrored, int direction,
+      int start, int[] labels, int[] candidate, int[] best) {
+    int length = crossings.length;
+    Arrays.fill(labels, -1);
+    int nextLabel = 0;
+    boolean isSmaller = best == null;
+
+    for (int i = 0; i < length; i++) {
+      int position = Math.floorMod(start + direction * i, length);
+      int crossing = crossings[position];
+      if (labels[crossing] == -1) {
+        labels[crossing] = nextLabel++;
+      }
+
+      int value = (labels[crossing] << 2) | ((isOver[position] ^ isMirrored) ? 2 : 0)
+          | ((signs[crossing] ^ isMirrored) ? 1 : 0);
+      if (!isSmaller) {
+        if (value > best[i]) {
+          return false;
+        }
+        isSmaller = value < best[i];
+      }
+      candidate[i] = value;
+    }
+    return isSmaller;
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public int getCrossingCount() {
+    return code.length / 2;
+  }
+
+  // Rough number of bytes used by this object
+  public long getEstimatedSize() {
+    return 48L + 4L * code.length;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof KnotFingerprint)) {
+      return false;
+    }
+    KnotFingerprint other = (KnotFingerprint) obj;
+    return hash == other.hash && Arrays.equals(code, other.code);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder stringBuilder = new StringBuilder();
+    for (int value : code) {
+      stringBuilder.append(value >> 2).append((value & 2) == 0 ? 'U' : 'O').append((value & 1) == 0 ? '-' : '+');
+      stringBuilder.append(' ');
+    }
+    return stringBuilder.toString().trim();
+  }
+}
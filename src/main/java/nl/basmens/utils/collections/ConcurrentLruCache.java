@@ -0,0 +1,148 @@
+package nl.basmens.utils.collections;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.function.ToLongBiFunction;
+
+// Thread safe least recently used cache, bounded by the total weight of its entries instead of their count. The keys
+// are spread over independently locked segments, each holding an equal share of the maximum weight, so threads
+// rarely wait for each other.
+public class ConcurrentLruCache<K, V> {
+  private final Segment<K, V>[] segments;
+  private final ToLongBiFunction<K, V> weigher;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  private static final class Segment<K, V> {
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxWeight;
+    private long weight;
+
+    private Segment(long maxWeight) {
+      this.maxWeight = maxWeight;
+    }
+  }
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public ConcurrentLruCache(long maxWeight, int segmentCount, ToLongBiFunction<K, V> weigher) {
+    if (maxWeight < 0 || segmentCount <= 0) {
+      throw new IllegalArgumentException("ERROR: invalid cache size " + maxWeight + " with " + segmentCount
+          + " segments");
+    }
+
+    this.weigher = weigher;
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment<>(maxWeight / segmentCount);
+    }
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+  private Segment<K, V> getSegment(Object key) {
+    int hash = key.hashCode();
+    hash ^= hash >>> 16;
+    return segments[Math.floorMod(hash, segments.length)];
+  }
+
+  public V get(K key) {
+    Segment<K, V> segment = getSegment(key);
+    V value;
+    synchronized (segment) {
+      value = segment.entries.get(key);
+    }
+
+    if (value == null) {
+      missCount.increment();
+    } else {
+      hitCount.increment();
+    }
+    return value;
+  }
+
+  public void put(K key, V value) {
+    merge(key, value, (V old, V given) -> given);
+  }
+
+  // Inserts the value, or combines it with the present value using merger. Afterwards the least recently used entries
+  // are evicted until the segment fits again. Values heavier than a whole segment are not stored.
+  public void merge(K key, V value, BinaryOperator<V> merger) {
+    Segment<K, V> segment = getSegment(key);
+
+    synchronized (segment) {
+      V old = segment.entries.remove(key);
+      if (old != null) {
+        segment.weight -= weigher.applyAsLong(key, old);
+        value = merger.apply(old, value);
+      }
+      long entryWeight = weigher.applyAsLong(key, value);
+      if (entryWeight > segment.maxWeight) {
+        return;
+      }
+
+      segment.entries.put(key, value);
+      segment.weight += entryWeight;
+
+      Iterator<Map.Entry<K, V>> iterator = segment.entries.entrySet().iterator();
+      while (segment.weight > segment.maxWeight) {
+        Map.Entry<K, V> eldest = iterator.next();
+        segment.weight -= weigher.applyAsLong(eldest.getKey(), eldest.getValue());
+        iterator.remove();
+        evictionCount.increment();
+      }
+    }
+  }
+
+  public void clear() {
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        segment.entries.clear();
+        segment.weight = 0;
+      }
+    }
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        size += segment.entries.size();
+      }
+    }
+    return size;
+  }
+
+  public long getWeight() {
+    long weight = 0;
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        weight += segment.weight;
+      }
+    }
+    return weight;
+  }
+}
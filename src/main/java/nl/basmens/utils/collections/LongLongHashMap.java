@@ -0,0 +1,146 @@
+package nl.basmens.utils.collections;
+
+import java.util.Arrays;
+
+// Map from long to long without boxing, used for counting. Open addressing with linear probing, missing keys have a
+// value of 0. Not thread safe.
+public final class LongLongHashMap {
+  private static final int MIN_CAPACITY = 16;
+  private static final int DEFAULT_EXPECTED_SIZE = 8;
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private long[] keys;
+  private long[] values;
+  private boolean[] used;
+  private int size;
+  private int mask;
+
+  @FunctionalInterface
+  public interface EntryConsumer {
+    void accept(long key, long value);
+  }
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  public LongLongHashMap() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  public LongLongHashMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new long[capacity];
+    used = new boolean[capacity];
+    mask = capacity - 1;
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+  private int indexOf(long key) {
+    // Murmur3 finalizer, the keys are often small consecutive numbers
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    int index = (int) h & mask;
+    while (used[index] && keys[index] != key) {
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  public long get(long key) {
+    int index = indexOf(key);
+    return used[index] ? values[index] : 0;
+  }
+
+  public boolean containsKey(long key) {
+    return used[indexOf(key)];
+  }
+
+  public void addTo(long key, long delta) {
+    int index = indexOf(key);
+    if (used[index]) {
+      values[index] += delta;
+      return;
+    }
+
+    keys[index] = key;
+    values[index] = delta;
+    used[index] = true;
+    if (++size > keys.length * LOAD_FACTOR) {
+      rehash(keys.length << 1);
+    }
+  }
+
+  public void increment(long key) {
+    addTo(key, 1);
+  }
+
+  // Adds all values of the other map to this one
+  public void addAll(LongLongHashMap other) {
+    other.forEach(this::addTo);
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    long[] oldValues = values;
+    boolean[] oldUsed = used;
+    allocate(capacity);
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        int index = indexOf(oldKeys[i]);
+        keys[index] = oldKeys[i];
+        values[index] = oldValues[i];
+        used[index] = true;
+      }
+    }
+  }
+
+  public void forEach(EntryConsumer consumer) {
+    for (int i = 0; i < keys.length; i++) {
+      if (used[i]) {
+        consumer.accept(keys[i], values[i]);
+      }
+    }
+  }
+
+  // The keys and values as [key, value, key, value, ...]
+  public long[] toEntryArray() {
+    long[] entries = new long[size * 2];
+    int j = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (used[i]) {
+        entries[j++] = keys[i];
+        entries[j++] = values[i];
+      }
+    }
+    return entries;
+  }
+
+  // Keeps the capacity, so a map that is filled and cleared repeatedly does not allocate
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(used, false);
+      size = 0;
+    }
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+}
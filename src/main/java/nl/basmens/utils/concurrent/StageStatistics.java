@@ -0,0 +1,56 @@
+package nl.basmens.utils.concurrent;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts the work done by the threads of one stage of a pipeline. The utilisation is the fraction of the available
+// thread time that was spent working instead of waiting on the other stages.
+public final class StageStatistics {
+  private final String name;
+  private final int threadCount;
+  private final long startNanos = System.nanoTime();
+
+  private final LongAdder busyNanos = new LongAdder();
+  private final LongAdder itemCount = new LongAdder();
+
+  public StageStatistics(String name, int threadCount) {
+    this.name = name;
+    this.threadCount = threadCount;
+  }
+
+  public void record(long busy, long items) {
+    busyNanos.add(busy);
+    itemCount.add(items);
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public String getName() {
+    return name;
+  }
+
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  public long getItemCount() {
+    return itemCount.sum();
+  }
+
+  public double getUtilisation() {
+    long available = (System.nanoTime() - startNanos) * threadCount;
+    return available <= 0 ? 0 : (double) busyNanos.sum() / available;
+  }
+
+  public double getItemsPerSecond() {
+    long elapsed = System.nanoTime() - startNanos;
+    return elapsed <= 0 ? 0 : getItemCount() / (elapsed / 1E9);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ENGLISH, "%s: %d items (%.1f/s), %.1f%% busy over %d threads", name, getItemCount(),
+        getItemsPerSecond(), getUtilisation() * 100, threadCount);
+  }
+}
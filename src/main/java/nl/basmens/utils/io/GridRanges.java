@@ -0,0 +1,121 @@
+package nl.basmens.utils.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+// The grids that are in the results of one export, as ranges of grid numbers per seed, see GridRandom. A grid is
+// added when it is handed out to a pipeline, before its knots are saved. The ranges are saved in the ResultLog, so a
+// resumed run continues with the grids that are not in the results yet, instead of counting the same grids again.
+// Grids that were handed out when the run crashed are skipped, they are never counted twice.
+public final class GridRanges {
+  // Per seed the first grid number of every range to the end of the range, exclusive. Ranges never touch.
+  private final HashMap<Long, TreeMap<Long, Long>> ranges = new HashMap<>();
+  private long modificationCount;
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+  public synchronized void add(long seed, long gridIndex) {
+    add(seed, gridIndex, gridIndex + 1);
+  }
+
+  public synchronized void add(long seed, long first, long end) {
+    if (first >= end) {
+      return;
+    }
+
+    TreeMap<Long, Long> seedRanges = ranges.computeIfAbsent(seed, s -> new TreeMap<>());
+    // Merge with the range before it and every range it touches
+    Entry<Long, Long> before = seedRanges.floorEntry(first);
+    if (before != null && before.getValue() >= first) {
+      first = before.getKey();
+      end = Math.max(end, before.getValue());
+    }
+    Entry<Long, Long> after = seedRanges.ceilingEntry(first);
+    while (after != null && after.getKey() <= end) {
+      end = Math.max(end, after.getValue());
+      seedRanges.remove(after.getKey());
+      after = seedRanges.ceilingEntry(first);
+    }
+    seedRanges.put(first, end);
+    modificationCount++;
+  }
+
+  // The first grid number from gridIndex on that is not in a range
+  public synchronized long getNextMissing(long seed, long gridIndex) {
+    TreeMap<Long, Long> seedRanges = ranges.get(seed);
+    if (seedRanges == null) {
+      return gridIndex;
+    }
+    Entry<Long, Long> range = seedRanges.floorEntry(gridIndex);
+    return range != null && range.getValue() > gridIndex ? range.getValue() : gridIndex;
+  }
+
+  // The parts of first until end that are not in a range, as first and end pairs
+  public synchronized long[] getMissing(long seed, long first, long end) {
+    ArrayList<Long> missing = new ArrayList<>();
+    long gridIndex = getNextMissing(seed, first);
+    TreeMap<Long, Long> seedRanges = ranges.get(seed);
+    while (gridIndex < end) {
+      Long next = seedRanges == null ? null : seedRanges.higherKey(gridIndex);
+      long missingEnd = next == null ? end : Math.min(next, end);
+      missing.add(gridIndex);
+      missing.add(missingEnd);
+      gridIndex = missingEnd < end ? seedRanges.get(next) : end;
+    }
+    return missing.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  // The amount of grids of first until end that are in a range
+  public synchronized long getCount(long seed, long first, long end) {
+    long count = end - first;
+    long[] missing = getMissing(seed, first, end);
+    for (int i = 0; i < missing.length; i += 2) {
+      count -= missing[i + 1] - missing[i];
+    }
+    return count;
+  }
+
+  // =================================================================================================================
+  // Serialization
+  // =================================================================================================================
+  // [seed count: int] * [seed: long][range count: int] * [first: long][end: long]
+  synchronized void write(DataOutput out) throws IOException {
+    out.writeInt(ranges.size());
+    for (Entry<Long, TreeMap<Long, Long>> e : ranges.entrySet()) {
+      out.writeLong(e.getKey());
+      out.writeInt(e.getValue().size());
+      for (Entry<Long, Long> range : e.getValue().entrySet()) {
+        out.writeLong(range.getKey());
+        out.writeLong(range.getValue());
+      }
+    }
+  }
+
+  // Replaces the ranges by the ones written by write
+  synchronized void read(DataInput in) throws IOException {
+    ranges.clear();
+    int seedCount = in.readInt();
+    for (int i = 0; i < seedCount; i++) {
+      long seed = in.readLong();
+      int rangeCount = in.readInt();
+      for (int j = 0; j < rangeCount; j++) {
+        add(seed, in.readLong(), in.readLong());
+      }
+    }
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+
+  // Changes with every add, to know whether the ranges have to be saved again
+  public synchronized long getModificationCount() {
+    return modificationCount;
+  }
+}
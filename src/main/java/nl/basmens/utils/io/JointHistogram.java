@@ -0,0 +1,367 @@
+package nl.basmens.utils.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Sparse histogram of knots by (length, intersection count, reduced intersection count, knot determinant, alexander
+// polynomial) together, so questions like "the knot determinants of knots with length L and C intersections" can be
+// answered afterwards. The length and intersections views of KnotJson are sums over this histogram.
+//
+// Open addressing with linear probing over parallel primitive arrays, a slot with a count of 0 is empty. Not thread
+// safe.
+//
+// Cells: [cell count: varint], then the cells sorted by their key, column by column: the lengths, the intersection
+// counts, the reduced intersection counts and the knot determinants as zigzag varint differences with the previous
+// cell, the alexander polynomial ids as zigzag varints and the counts as varints. Sorting makes most differences 0
+// or 1, so a cell takes a few bytes.
+// File: MAGIC, VERSION, then deflated: [polynomial count: varint] * [id: varint][key length: varint][PolynomialKey]
+//       and the cells.
+public final class JointHistogram {
+  public static final long NO_KNOT_DETERMINANT = Long.MIN_VALUE; // Knot determinants were not saved
+  public static final int NO_ALEXANDER_POLYNOMIAL = -1; // Alexander polynomials were not saved
+
+  private static final int MAGIC = 0x4B4A4E54; // "KJNT"
+  private static final int VERSION = 1;
+
+  private static final int MIN_CAPACITY = 16;
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private int[] lengths;
+  private int[] intersectionCounts;
+  private int[] reducedIntersectionCounts;
+  private long[] knotDeterminants;
+  private int[] alexanderPolynomials; // By their PolynomialDictionary id
+  private long[] counts;
+  private int size;
+  private int mask;
+  private long knotCount;
+
+  @FunctionalInterface
+  public interface CellConsumer {
+    void accept(int length, int intersectionCount, int reducedIntersectionCount, long knotDeterminant,
+        int alexanderPolynomial, long count);
+  }
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  public JointHistogram() {
+    allocate(MIN_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    lengths = new int[capacity];
+    intersectionCounts = new int[capacity];
+    reducedIntersectionCounts = new int[capacity];
+    knotDeterminants = new long[capacity];
+    alexanderPolynomials = new int[capacity];
+    counts = new long[capacity];
+    mask = capacity - 1;
+  }
+
+  // Reads a file written by write(OutputStream)
+  public static JointHistogram read(File file) {
+    JointHistogram histogram = new JointHistogram();
+    try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+      histogram.read(in);
+    } catch (IOException e) {
+      throw new IllegalStateException("ERROR: could not read " + file, e);
+    }
+    return histogram;
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+  private int indexOf(int length, int intersectionCount, int reducedIntersectionCount, long knotDeterminant,
+      int alexanderPolynomial) {
+    long h = knotDeterminant;
+    h = h * 31 + length;
+    h = h * 31 + intersectionCount;
+    h = h * 31 + reducedIntersectionCount;
+    h = h * 31 + alexanderPolynomial;
+    // Murmur3 finalizer
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+
+    int index = (int) h & mask;
+    while (counts[index] != 0 && (lengths[index] != length || intersectionCounts[index] != intersectionCount
+        || reducedIntersectionCounts[index] != reducedIntersectionCount || knotDeterminants[index] != knotDeterminant
+        || alexanderPolynomials[index] != alexanderPolynomial)) {
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  public void add(int length, int intersectionCount, int reducedIntersectionCount, long knotDeterminant,
+      int alexanderPolynomial, long count) {
+    if (count <= 0) {
+      if (count < 0) {
+        throw new IllegalArgumentException("ERROR: negative knot count " + count);
+      }
+      return;
+    }
+
+    knotCount += count;
+    int index = indexOf(length, intersectionCount, reducedIntersectionCount, knotDeterminant, alexanderPolynomial);
+    if (counts[index] != 0) {
+      counts[index] += count;
+      return;
+    }
+
+    lengths[index] = length;
+    intersectionCounts[index] = intersectionCount;
+    reducedIntersectionCounts[index] = reducedIntersectionCount;
+    knotDeterminants[index] = knotDeterminant;
+    alexanderPolynomials[index] = alexanderPolynomial;
+    counts[index] = count;
+    if (++size > counts.length * LOAD_FACTOR) {
+      rehash(counts.length << 1);
+    }
+  }
+
+  public long get(int length, int intersectionCount, int reducedIntersectionCount, long knotDeterminant,
+      int alexanderPolynomial) {
+    return counts[indexOf(length, intersectionCount, reducedIntersectionCount, knotDeterminant, alexanderPolynomial)];
+  }
+
+  public void addAll(JointHistogram other) {
+    other.forEach(this::add);
+  }
+
+  private void rehash(int capacity) {
+    int[] oldLengths = lengths;
+    int[] oldIntersectionCounts = intersectionCounts;
+    int[] oldReducedIntersectionCounts = reducedIntersectionCounts;
+    long[] oldKnotDeterminants = knotDeterminants;
+    int[] oldAlexanderPolynomials = alexanderPolynomials;
+    long[] oldCounts = counts;
+    allocate(capacity);
+
+    for (int i = 0; i < oldCounts.length; i++) {
+      if (oldCounts[i] != 0) {
+        int index = indexOf(oldLengths[i], oldIntersectionCounts[i], oldReducedIntersectionCounts[i],
+            oldKnotDeterminants[i], oldAlexanderPolynomials[i]);
+        lengths[index] = oldLengths[i];
+        intersectionCounts[index] = oldIntersectionCounts[i];
+        reducedIntersectionCounts[index] = oldReducedIntersectionCounts[i];
+        knotDeterminants[index] = oldKnotDeterminants[i];
+        alexanderPolynomials[index] = oldAlexanderPolynomials[i];
+        counts[index] = oldCounts[i];
+      }
+    }
+  }
+
+  public void forEach(CellConsumer consumer) {
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) {
+        consumer.accept(lengths[i], intersectionCounts[i], reducedIntersectionCounts[i], knotDeterminants[i],
+            alexanderPolynomials[i], counts[i]);
+      }
+    }
+  }
+
+  // Adds the knots to the histograms by length and by intersection count, returns the amount of knots added
+  public long addTo(Map<Integer, KnotJson> lengthJsons, Map<Integer, KnotJson> intersectionJsons) {
+    forEach((length, intersectionCount, reducedIntersectionCount, knotDeterminant, alexanderPolynomial, count) -> {
+      lengthJsons.computeIfAbsent(length, s -> new KnotJson()).add(count, knotDeterminant, alexanderPolynomial);
+      intersectionJsons.computeIfAbsent(intersectionCount, s -> new KnotJson()).add(count, knotDeterminant,
+          alexanderPolynomial);
+    });
+    return knotCount;
+  }
+
+  // Keeps the capacity, so a histogram that is filled and cleared repeatedly does not allocate
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(counts, 0);
+      size = 0;
+      knotCount = 0;
+    }
+  }
+
+  // =================================================================================================================
+  // Serialization
+  // =================================================================================================================
+
+  // Writes the cells with the PolynomialDictionary ids, which are only valid in this run
+  void writeCells(DataOutput out) throws IOException {
+    Integer[] order = new Integer[size];
+    int j = 0;
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) {
+        order[j++] = i;
+      }
+    }
+    Arrays.sort(order, this::compareSlots);
+
+    Varints.writeVarLong(out, size);
+    long previous = 0;
+    for (int i : order) {
+      Varints.writeSignedVarLong(out, (long) lengths[i] - previous);
+      previous = lengths[i];
+    }
+    previous = 0;
+    for (int i : order) {
+      Varints.writeSignedVarLong(out, (long) intersectionCounts[i] - previous);
+      previous = intersectionCounts[i];
+    }
+    previous = 0;
+    for (int i : order) {
+      Varints.writeSignedVarLong(out, (long) reducedIntersectionCounts[i] - previous);
+      previous = reducedIntersectionCounts[i];
+    }
+    previous = 0;
+    for (int i : order) {
+      // Wraps around for the extremes, which is undone by the same wrap around when reading
+      Varints.writeSignedVarLong(out, knotDeterminants[i] - previous);
+      previous = knotDeterminants[i];
+    }
+    for (int i : order) {
+      Varints.writeSignedVarLong(out, alexanderPolynomials[i]);
+    }
+    for (int i : order) {
+      Varints.writeVarLong(out, counts[i]);
+    }
+  }
+
+  private int compareSlots(int a, int b) {
+    int compare = Integer.compare(lengths[a], lengths[b]);
+    if (compare == 0) {
+      compare = Integer.compare(intersectionCounts[a], intersectionCounts[b]);
+    }
+    if (compare == 0) {
+      compare = Integer.compare(reducedIntersectionCounts[a], reducedIntersectionCounts[b]);
+    }
+    if (compare == 0) {
+      compare = Long.compare(knotDeterminants[a], knotDeterminants[b]);
+    }
+    if (compare == 0) {
+      compare = Integer.compare(alexanderPolynomials[a], alexanderPolynomials[b]);
+    }
+    return compare;
+  }
+
+  // Adds cells written by writeCells, polynomialIds maps the ids of the writer to PolynomialDictionary ids
+  void readCells(DataInput in, IntUnaryOperator polynomialIds) throws IOException {
+    int cellCount = Varints.readVarInt(in);
+    int[] cellLengths = new int[cellCount];
+    int[] cellIntersectionCounts = new int[cellCount];
+    int[] cellReducedIntersectionCounts = new int[cellCount];
+    long[] cellKnotDeterminants = new long[cellCount];
+
+    long previous = 0;
+    for (int i = 0; i < cellCount; i++) {
+      previous += Varints.readSignedVarLong(in);
+      cellLengths[i] = Math.toIntExact(previous);
+    }
+    previous = 0;
+    for (int i = 0; i < cellCount; i++) {
+      previous += Varints.readSignedVarLong(in);
+      cellIntersectionCounts[i] = Math.toIntExact(previous);
+    }
+    previous = 0;
+    for (int i = 0; i < cellCount; i++) {
+      previous += Varints.readSignedVarLong(in);
+      cellReducedIntersectionCounts[i] = Math.toIntExact(previous);
+    }
+    previous = 0;
+    for (int i = 0; i < cellCount; i++) {
+      previous += Varints.readSignedVarLong(in);
+      cellKnotDeterminants[i] = previous;
+    }
+    int[] cellAlexanderPolynomials = new int[cellCount];
+    for (int i = 0; i < cellCount; i++) {
+      int id = Varints.readSignedVarInt(in);
+      cellAlexanderPolynomials[i] = id == NO_ALEXANDER_POLYNOMIAL ? id : polynomialIds.applyAsInt(id);
+    }
+    for (int i = 0; i < cellCount; i++) {
+      add(cellLengths[i], cellIntersectionCounts[i], cellReducedIntersectionCounts[i], cellKnotDeterminants[i],
+          cellAlexanderPolynomials[i], Varints.readVarLong(in));
+    }
+  }
+
+  // Writes the histogram together with the alexander polynomials it uses, so it can be read by another run
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream header = new DataOutputStream(out);
+    header.writeInt(MAGIC);
+    header.writeInt(VERSION);
+    header.flush();
+
+    BitSet usedPolynomials = new BitSet();
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0 && alexanderPolynomials[i] != NO_ALEXANDER_POLYNOMIAL) {
+        usedPolynomials.set(alexanderPolynomials[i]);
+      }
+    }
+
+    DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(deflater));
+    Varints.writeVarLong(data, usedPolynomials.cardinality());
+    for (int id = usedPolynomials.nextSetBit(0); id >= 0; id = usedPolynomials.nextSetBit(id + 1)) {
+      byte[] key = PolynomialDictionary.getKey(id).getBytes();
+      Varints.writeVarLong(data, id);
+      Varints.writeVarLong(data, key.length);
+      data.write(key);
+    }
+    writeCells(data);
+    data.flush();
+    deflater.finish();
+  }
+
+  private void read(InputStream in) throws IOException {
+    DataInputStream header = new DataInputStream(in);
+    if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+      throw new IllegalStateException("ERROR: not a joint histogram file");
+    }
+
+    DataInputStream data = new DataInputStream(new BufferedInputStream(new InflaterInputStream(in)));
+    HashMap<Integer, Integer> polynomialIds = new HashMap<>();
+    int polynomialCount = Varints.readVarInt(data);
+    for (int i = 0; i < polynomialCount; i++) {
+      int id = Varints.readVarInt(data);
+      byte[] key = new byte[Varints.readVarInt(data)];
+      data.readFully(key);
+      polynomialIds.put(id, PolynomialDictionary.getId(new PolynomialKey(key)));
+    }
+    readCells(data, id -> {
+      Integer dictionaryId = polynomialIds.get(id);
+      if (dictionaryId == null) {
+        throw new IllegalStateException("ERROR: undefined alexander polynomial in joint histogram");
+      }
+      return dictionaryId;
+    });
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getKnotCount() {
+    return knotCount;
+  }
+}
@@ -0,0 +1,65 @@
+package nl.basmens.utils.io;
+
+import java.util.Collection;
+
+import nl.basmens.knot.Knot;
+
+// The part of the histogram of one ResultExporter that is filled by one thread. The shard is double buffered: the
+// owning thread adds knots to the active buffer, and when flushing the writer thread swaps it for the spare buffer
+// and merges the full one without holding the lock. The lock is only contended for the swap itself.
+final class KnotHistogramShard {
+  private final boolean saveKnotDeterminant;
+  private final boolean saveAlexanderPolynomial;
+
+  private JointHistogram active = new JointHistogram();
+  private JointHistogram spare = new JointHistogram();
+
+  KnotHistogramShard(boolean saveKnotDeterminant, boolean saveAlexanderPolynomial) {
+    this.saveKnotDeterminant = saveKnotDeterminant;
+    this.saveAlexanderPolynomial = saveAlexanderPolynomial;
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+  void add(Collection<Knot> knots) {
+    // Reading the invariants can calculate them, so that is done before locking
+    long[] knotDeterminants = new long[knots.size()];
+    int[] alexanderPolynomials = new int[knots.size()];
+    int i = 0;
+    for (Knot k : knots) {
+      knotDeterminants[i] = saveKnotDeterminant ? k.getKnotDeterminant() : JointHistogram.NO_KNOT_DETERMINANT;
+      alexanderPolynomials[i] = saveAlexanderPolynomial ? k.getAlexanderPolynomialId()
+          : JointHistogram.NO_ALEXANDER_POLYNOMIAL;
+      i++;
+    }
+
+    synchronized (this) {
+      JointHistogram histogram = active;
+      i = 0;
+      for (Knot k : knots) {
+        histogram.add(k.getLength(), k.getIntersectionCount(), k.getReducedIntersectionCount(), knotDeterminants[i],
+            alexanderPolynomials[i], 1);
+        i++;
+      }
+    }
+  }
+
+  synchronized void addAll(JointHistogram histogram) {
+    active.addAll(histogram);
+  }
+
+  // Returns the histogram with the knots added so far, which must be given back with recycle after merging it
+  synchronized JointHistogram swap() {
+    JointHistogram full = active;
+    active = spare != null ? spare : new JointHistogram();
+    spare = null;
+    return full;
+  }
+
+  // Clears the histogram and uses it for the next swap
+  synchronized void recycle(JointHistogram histogram) {
+    histogram.clear();
+    spare = histogram;
+  }
+}
@@ -1,47 +1,66 @@
 package nl.basmens.utils.io;
 
-import java.util.HashMap;
-import java.util.Set;
-
-import nl.basmens.Main;
-import nl.basmens.knot.Knot;
-import nl.basmens.utils.maths.Polynomial;
-import processing.data.JSONObject;
+import nl.basmens.utils.collections.LongLongHashMap;
 
 public class KnotJson {
   private long count;
 
   // Leaving out tricolorability because it is never used
-  private HashMap<Long, LongValue> knotDeterminants = new HashMap<>();
-  private HashMap<Polynomial, LongValue> alexanderPolynomials = new HashMap<>();
+  private LongLongHashMap knotDeterminants = new LongLongHashMap();
+  // By their PolynomialDictionary id
+  private LongLongHashMap alexanderPolynomials = new LongLongHashMap();
 
   public KnotJson() {
   }
 
-  public KnotJson(JSONObject fromJson) {
-    count = fromJson.getLong("count", 0);
+  // Adds the counts of a ResultLog bucket
+  public void add(long knotCount, LongLongHashMap knotDeterminantCounts, LongLongHashMap alexanderPolynomialCounts) {
+    count += knotCount;
+    knotDeterminants.addAll(knotDeterminantCounts);
+    alexanderPolynomials.addAll(alexanderPolynomialCounts);
+  }
 
-    JSONObject kdJson = fromJson.getJSONObject("knot determinant");
-    if (kdJson != null) {
-      ((Set<String>) kdJson.keys())
-          .forEach(k -> knotDeterminants.put(Long.parseLong(k), new LongValue(kdJson.getLong(k))));
+  // Adds the knots of one JointHistogram cell
+  void add(long knotCount, long knotDeterminant, int alexanderPolynomial) {
+    count += knotCount;
+    if (knotDeterminant != JointHistogram.NO_KNOT_DETERMINANT) {
+      knotDeterminants.addTo(knotDeterminant, knotCount);
     }
-    
-    JSONObject apJson = fromJson.getJSONObject("alexander polynomial");
-    if (apJson != null) {
-      ((Set<String>) apJson.keys())
-          .forEach(k -> alexanderPolynomials.put(Polynomial.parseString(k), new LongValue(apJson.getLong(k))));
+    if (alexanderPolynomial != JointHistogram.NO_ALEXANDER_POLYNOMIAL) {
+      alexanderPolynomials.addTo(alexanderPolynomial, knotCount);
     }
   }
 
-  public void addKnot(Knot knot) {
-    count++;
-    if (Main.SAVE_KNOT_DETERMINANT) {
-      knotDeterminants.computeIfAbsent(knot.getKnotDeterminant(), k -> new LongValue()).increment();
-    }
-    if (Main.SAVE_ALEXANDER_POLYNOMIAL) {
-      alexanderPolynomials.computeIfAbsent(knot.getAlexanderPolynomial(), k -> new LongValue()).increment();
-    }
+  void addCount(long knotCount) {
+    count += knotCount;
+  }
+
+  public void add(KnotJson other) {
+    add(other.count, other.knotDeterminants, other.alexanderPolynomials);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  // The amount of knots with a saved alexander polynomial
+  public long getAlexanderPolynomialCount() {
+    long[] total = { 0 };
+    alexanderPolynomials.forEach((k, v) -> total[0] += v);
+    return total[0];
+  }
+
+  // By PolynomialDictionary id
+  public long getAlexanderPolynomialCount(int alexanderPolynomial) {
+    return alexanderPolynomials.get(alexanderPolynomial);
+  }
+
+  LongLongHashMap getKnotDeterminants() {
+    return knotDeterminants;
+  }
+
+  LongLongHashMap getAlexanderPolynomials() {
+    return alexanderPolynomials;
   }
 
   public String toString() {
@@ -50,13 +69,14 @@ public class KnotJson {
 
     if (!knotDeterminants.isEmpty()) {
       b.append(",\n\"knot determinant\":{\n\"");
-      knotDeterminants.forEach((k, v) -> b.append(k).append("\":").append(v.get()).append(",\n\""));
+      knotDeterminants.forEach((k, v) -> b.append(k).append("\":").append(v).append(",\n\""));
       b.setLength(b.length() - 3);
       b.append("\n}");
     }
     if (!alexanderPolynomials.isEmpty()) {
       b.append(",\n\"alexander polynomial\":{\n\"");
-      alexanderPolynomials.forEach((k, v) -> b.append(k.toString()).append("\":").append(v.get()).append(",\n\""));
+      alexanderPolynomials.forEach((k, v) -> b.append(PolynomialDictionary.toString((int) k)).append("\":")
+          .append(v).append(",\n\""));
       b.setLength(b.length() - 3);
       b.append("\n}");
     }
@@ -64,23 +84,4 @@ public class KnotJson {
     b.append("\n}");
     return b.toString();
   }
-
-  private static class LongValue {
-    private long value;
-
-    public LongValue() {
-    }
-
-    public LongValue(long value) {
-      this.value = value;
-    }
-
-    public long get() {
-      return value;
-    }
-
-    public void increment() {
-      this.value++;
-    }
-  }
 }
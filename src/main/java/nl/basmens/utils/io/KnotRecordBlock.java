@@ -0,0 +1,162 @@
+package nl.basmens.utils.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import nl.basmens.utils.collections.LongLongHashMap;
+
+// A block of knot records that is filled column by column, and encoded as one compressed block of the knot record
+// file. Not thread safe.
+//
+// File layout: MAGIC, VERSION, then blocks of
+//   [record count: int][uncompressed length: int][compressed length: int][crc32 of the compressed payload: int]
+//   [payload: deflated]
+// Payload: [columns: byte], with the COLUMN_ flags of the optional columns that are present
+//          the lengths, intersection counts and reduced intersection counts: varint per record
+//          the grid indices: per record the zigzag varint difference with the grid index of the previous record
+//          the knot determinants: zigzag varint per record
+//          the alexander polynomials: [polynomial count: varint] * [key length: varint][PolynomialKey], then per
+//          record the index in those polynomials as a varint
+//          the gauss codes: per record 2 * its reduced intersection count varints, see KnotFingerprint.gaussCode
+final class KnotRecordBlock {
+  static final int MAGIC = 0x4B524543; // "KREC"
+  static final int VERSION = 1;
+  static final int BLOCK_HEADER_SIZE = 16;
+  static final int COLUMN_KNOT_DETERMINANT = 1;
+  static final int COLUMN_ALEXANDER_POLYNOMIAL = 2;
+  static final int COLUMN_GRID_INDEX = 4;
+
+  private final boolean saveKnotDeterminant;
+  private final boolean saveAlexanderPolynomial;
+  private final boolean saveGridIndex;
+
+  private final int[] lengths;
+  private final int[] intersectionCounts;
+  private final int[] reducedIntersectionCounts;
+  private final long[] gridIndices;
+  private final long[] knotDeterminants;
+  private final int[] alexanderPolynomials; // By their PolynomialDictionary id
+  private int[] gaussCodes = new int[1024]; // All gauss codes after each other
+  private int gaussCodeLength;
+  private int size;
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  KnotRecordBlock(int capacity, boolean saveKnotDeterminant, boolean saveAlexanderPolynomial, boolean saveGridIndex) {
+    this.saveKnotDeterminant = saveKnotDeterminant;
+    this.saveAlexanderPolynomial = saveAlexanderPolynomial;
+    this.saveGridIndex = saveGridIndex;
+
+    lengths = new int[capacity];
+    intersectionCounts = new int[capacity];
+    reducedIntersectionCounts = new int[capacity];
+    gridIndices = new long[capacity];
+    knotDeterminants = new long[capacity];
+    alexanderPolynomials = new int[capacity];
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+  void add(int length, int intersectionCount, long gridIndex, long knotDeterminant, int alexanderPolynomial,
+      int[] gaussCode) {
+    lengths[size] = length;
+    intersectionCounts[size] = intersectionCount;
+    reducedIntersectionCounts[size] = gaussCode.length / 2;
+    gridIndices[size] = gridIndex;
+    knotDeterminants[size] = knotDeterminant;
+    alexanderPolynomials[size] = alexanderPolynomial;
+    size++;
+
+    if (gaussCodeLength + gaussCode.length > gaussCodes.length) {
+      gaussCodes = Arrays.copyOf(gaussCodes, Math.max(gaussCodeLength + gaussCode.length, gaussCodes.length * 2));
+    }
+    System.arraycopy(gaussCode, 0, gaussCodes, gaussCodeLength, gaussCode.length);
+    gaussCodeLength += gaussCode.length;
+  }
+
+  // The uncompressed payload
+  byte[] encode() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(size * 8 + gaussCodeLength);
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeByte((saveKnotDeterminant ? COLUMN_KNOT_DETERMINANT : 0)
+          | (saveAlexanderPolynomial ? COLUMN_ALEXANDER_POLYNOMIAL : 0) | (saveGridIndex ? COLUMN_GRID_INDEX : 0));
+      for (int i = 0; i < size; i++) {
+        Varints.writeVarLong(out, lengths[i]);
+      }
+      for (int i = 0; i < size; i++) {
+        Varints.writeVarLong(out, intersectionCounts[i]);
+      }
+      for (int i = 0; i < size; i++) {
+        Varints.writeVarLong(out, reducedIntersectionCounts[i]);
+      }
+
+      if (saveGridIndex) {
+        // The knots of a grid are saved together, so most differences are 0 or small
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+          Varints.writeSignedVarLong(out, gridIndices[i] - previous);
+          previous = gridIndices[i];
+        }
+      }
+
+      if (saveKnotDeterminant) {
+        for (int i = 0; i < size; i++) {
+          Varints.writeSignedVarLong(out, knotDeterminants[i]);
+        }
+      }
+
+      if (saveAlexanderPolynomial) {
+        // Block local indices, so the block can be read without the rest of the file
+        LongLongHashMap indices = new LongLongHashMap();
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        DataOutputStream tableOut = new DataOutputStream(table);
+        for (int i = 0; i < size; i++) {
+          if (!indices.containsKey(alexanderPolynomials[i])) {
+            indices.addTo(alexanderPolynomials[i], indices.size());
+            byte[] key = PolynomialDictionary.getKey(alexanderPolynomials[i]).getBytes();
+            Varints.writeVarLong(tableOut, key.length);
+            tableOut.write(key);
+          }
+        }
+        Varints.writeVarLong(out, indices.size());
+        table.writeTo(out);
+        for (int i = 0; i < size; i++) {
+          Varints.writeVarLong(out, indices.get(alexanderPolynomials[i]));
+        }
+      }
+
+      for (int i = 0; i < gaussCodeLength; i++) {
+        Varints.writeVarLong(out, gaussCodes[i]);
+      }
+    } catch (IOException e) {
+      // Unreachable: writing to a ByteArrayOutputStream
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  void clear() {
+    size = 0;
+    gaussCodeLength = 0;
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  boolean isFull() {
+    return size == lengths.length;
+  }
+}
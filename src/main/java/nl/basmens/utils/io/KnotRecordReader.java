@@ -0,0 +1,291 @@
+package nl.basmens.utils.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import nl.basmens.utils.maths.Polynomial;
+
+// Reads the knot records written by KnotRecordSink one block at a time, so files of any size can be read. A block
+// that was cut off by a crash ends the file.
+//
+// Usage: KnotRecordReader <file.knots>... prints every record as a tab separated line of the length, the intersection
+// count, the reduced intersection count, the grid index, the knot determinant, the alexander polynomial and the gauss
+// code.
+public final class KnotRecordReader implements Closeable {
+  private final DataInputStream in;
+  private final String name;
+  private final Inflater inflater = new Inflater();
+  private final CRC32 crc = new CRC32();
+
+  // The current block
+  private int blockSize;
+  private int[] lengths = new int[0];
+  private int[] intersectionCounts = new int[0];
+  private int[] reducedIntersectionCounts = new int[0];
+  private long[] gridIndices; // Null if the block has no grid indices
+  private long[] knotDeterminants; // Null if the block has no knot determinants
+  private PolynomialKey[] polynomials; // Null if the block has no alexander polynomials
+  private int[] alexanderPolynomials = new int[0]; // Index in polynomials
+  private int[] gaussCodes = new int[0];
+  private int[] gaussCodeStarts = new int[0];
+
+  private int index = -1; // Of the current record in the block
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  private KnotRecordReader(DataInputStream in, String name) {
+    this.in = in;
+    this.name = name;
+  }
+
+  public static KnotRecordReader open(File file) {
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+      if (in.readInt() != KnotRecordBlock.MAGIC || in.readInt() != KnotRecordBlock.VERSION) {
+        in.close();
+        throw new IllegalStateException("ERROR: " + file + " is not a knot record file");
+      }
+      return new KnotRecordReader(in, file.getName());
+    } catch (IOException e) {
+      throw new IllegalStateException("ERROR: could not read " + file, e);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.out.println("Usage: KnotRecordReader <file.knots>...");
+      return;
+    }
+
+    BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+    writer.write("length\tintersections\treduced intersections\tgrid index\tknot determinant\talexander polynomial"
+        + "\tgauss code\n");
+    for (String arg : args) {
+      try (KnotRecordReader reader = open(new File(arg))) {
+        while (reader.next()) {
+          writer.write(reader.getLength() + "\t" + reader.getIntersectionCount() + "\t"
+              + reader.getReducedIntersectionCount() + "\t"
+              + (reader.hasGridIndex() ? Long.toString(reader.getGridIndex()) : "") + "\t"
+              + (reader.hasKnotDeterminant() ? Long.toString(reader.getKnotDeterminant()) : "") + "\t"
+              + (reader.hasAlexanderPolynomial() ? reader.getAlexanderPolynomialString() : "") + "\t"
+              + Arrays.toString(reader.getGaussCode()) + "\n");
+        }
+      }
+    }
+    writer.flush();
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+
+  // Moves to the next record, returns false at the end of the file
+  public boolean next() {
+    index++;
+    while (index >= blockSize) {
+      if (!readBlock()) {
+        return false;
+      }
+      index = 0;
+    }
+    return true;
+  }
+
+  private boolean readBlock() {
+    byte[] compressed;
+    int recordCount;
+    int uncompressedLength;
+    try {
+      try {
+        recordCount = in.readInt();
+      } catch (EOFException e) {
+        return false;
+      }
+      uncompressedLength = in.readInt();
+      compressed = new byte[in.readInt()];
+      int checksum = in.readInt();
+      in.readFully(compressed);
+
+      crc.reset();
+      crc.update(compressed);
+      if ((int) crc.getValue() != checksum) {
+        System.out.println("Stopped at a damaged block in " + name);
+        return false;
+      }
+    } catch (EOFException e) {
+      System.out.println("Stopped at a block that was cut off in " + name);
+      return false;
+    } catch (IOException e) {
+      throw new IllegalStateException("ERROR: could not read " + name, e);
+    }
+
+    byte[] payload = new byte[uncompressedLength];
+    inflater.reset();
+    inflater.setInput(compressed);
+    try {
+      if (inflater.inflate(payload) != uncompressedLength) {
+        throw new IllegalStateException("ERROR: damaged block in " + name);
+      }
+      decode(new DataInputStream(new ByteArrayInputStream(payload)), recordCount);
+    } catch (DataFormatException | IOException e) {
+      throw new IllegalStateException("ERROR: damaged block in " + name, e);
+    }
+    return true;
+  }
+
+  private void decode(DataInputStream payload, int recordCount) throws IOException {
+    if (lengths.length < recordCount) {
+      lengths = new int[recordCount];
+      intersectionCounts = new int[recordCount];
+      reducedIntersectionCounts = new int[recordCount];
+      alexanderPolynomials = new int[recordCount];
+      gaussCodeStarts = new int[recordCount + 1];
+    }
+    blockSize = recordCount;
+
+    int columns = payload.readByte();
+    for (int i = 0; i < recordCount; i++) {
+      lengths[i] = Varints.readVarInt(payload);
+    }
+    for (int i = 0; i < recordCount; i++) {
+      intersectionCounts[i] = Varints.readVarInt(payload);
+    }
+    int gaussCodeLength = 0;
+    for (int i = 0; i < recordCount; i++) {
+      reducedIntersectionCounts[i] = Varints.readVarInt(payload);
+      gaussCodeStarts[i] = gaussCodeLength;
+      gaussCodeLength += reducedIntersectionCounts[i] * 2;
+    }
+    gaussCodeStarts[recordCount] = gaussCodeLength;
+
+    gridIndices = null;
+    if ((columns & KnotRecordBlock.COLUMN_GRID_INDEX) != 0) {
+      gridIndices = new long[recordCount];
+      long previous = 0;
+      for (int i = 0; i < recordCount; i++) {
+        previous += Varints.readSignedVarLong(payload);
+        gridIndices[i] = previous;
+      }
+    }
+
+    knotDeterminants = null;
+    if ((columns & KnotRecordBlock.COLUMN_KNOT_DETERMINANT) != 0) {
+      knotDeterminants = new long[recordCount];
+      for (int i = 0; i < recordCount; i++) {
+        knotDeterminants[i] = Varints.readSignedVarLong(payload);
+      }
+    }
+
+    polynomials = null;
+    if ((columns & KnotRecordBlock.COLUMN_ALEXANDER_POLYNOMIAL) != 0) {
+      polynomials = new PolynomialKey[Varints.readVarInt(payload)];
+      for (int i = 0; i < polynomials.length; i++) {
+        byte[] key = new byte[Varints.readVarInt(payload)];
+        payload.readFully(key);
+        polynomials[i] = new PolynomialKey(key);
+      }
+      for (int i = 0; i < recordCount; i++) {
+        alexanderPolynomials[i] = Varints.readVarInt(payload);
+      }
+    }
+
+    if (gaussCodes.length < gaussCodeLength) {
+      gaussCodes = new int[gaussCodeLength];
+    }
+    for (int i = 0; i < gaussCodeLength; i++) {
+      gaussCodes[i] = Varints.readVarInt(payload);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    inflater.end();
+    in.close();
+  }
+
+  // The length of the file without a block that was cut off at the end. Only reads the block headers.
+  static long getValidLength(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      long length = raf.length();
+      if (length < 8 || raf.readInt() != KnotRecordBlock.MAGIC || raf.readInt() != KnotRecordBlock.VERSION) {
+        throw new IllegalStateException("ERROR: " + file + " is not a knot record file");
+      }
+
+      long position = 8;
+      while (position + KnotRecordBlock.BLOCK_HEADER_SIZE <= length) {
+        raf.seek(position + 8);
+        long end = position + KnotRecordBlock.BLOCK_HEADER_SIZE + raf.readInt();
+        if (end > length) {
+          break;
+        }
+        position = end;
+      }
+      return position;
+    }
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public int getLength() {
+    return lengths[index];
+  }
+
+  public int getIntersectionCount() {
+    return intersectionCounts[index];
+  }
+
+  public int getReducedIntersectionCount() {
+    return reducedIntersectionCounts[index];
+  }
+
+  public boolean hasGridIndex() {
+    return gridIndices != null;
+  }
+
+  // See GridCounter
+  public long getGridIndex() {
+    return gridIndices[index];
+  }
+
+  public boolean hasKnotDeterminant() {
+    return knotDeterminants != null;
+  }
+
+  public long getKnotDeterminant() {
+    return knotDeterminants[index];
+  }
+
+  public boolean hasAlexanderPolynomial() {
+    return polynomials != null;
+  }
+
+  public Polynomial getAlexanderPolynomial() {
+    return polynomials[alexanderPolynomials[index]].toPolynomial();
+  }
+
+  // Same as getAlexanderPolynomial().toString(), without decoding the polynomial
+  public String getAlexanderPolynomialString() {
+    return polynomials[alexanderPolynomials[index]].toString();
+  }
+
+  // See KnotFingerprint.gaussCode for the encoding
+  public int[] getGaussCode() {
+    return Arrays.copyOfRange(gaussCodes, gaussCodeStarts[index], gaussCodeStarts[index + 1]);
+  }
+}
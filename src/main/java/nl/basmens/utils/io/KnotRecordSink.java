@@ -0,0 +1,240 @@
+package nl.basmens.utils.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import nl.basmens.knot.Knot;
+import nl.basmens.knot.KnotFingerprint;
+import nl.basmens.utils.concurrent.PerformanceTimer;
+
+// Writes a record of every knot to a file of compressed column blocks, see KnotRecordBlock for the format. Every
+// thread fills its own block, and hands it to the writer thread of the sink when it is full. The queue of full blocks
+// is bounded, so the memory use is bounded as well: a thread that saves knots faster than they can be written waits
+// for the writer. Resuming appends to the file, after dropping a block that was cut off by a crash.
+public final class KnotRecordSink {
+  public static final int BLOCK_SIZE = 4096; // In knots
+
+  // Put in the queue by close, after the last block
+  private static final KnotRecordBlock END = new KnotRecordBlock(0, false, false, false);
+
+  private final File file;
+  private final boolean saveKnotDeterminant;
+  private final boolean saveAlexanderPolynomial;
+  private final boolean saveGridIndex;
+
+  private final ThreadLocal<Slot> localSlot = ThreadLocal.withInitial(this::createSlot);
+  private final ArrayList<Slot> slots = new ArrayList<>();
+  private final ArrayBlockingQueue<KnotRecordBlock> fullBlocks;
+  // Written blocks, which are reused by the threads instead of allocating new ones
+  private final ArrayBlockingQueue<KnotRecordBlock> emptyBlocks;
+
+  private final Thread writer;
+  private final DataOutputStream out;
+  private final FileOutputStream fileOut;
+  private volatile boolean isClosed;
+
+  // The block a thread is filling, the lock of the slot guards the block
+  private static final class Slot {
+    private KnotRecordBlock block;
+  }
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  // The grid index is only worth saving when the grids are numbered by a GridCounter
+  public KnotRecordSink(File file, boolean saveKnotDeterminant, boolean saveAlexanderPolynomial, boolean saveGridIndex,
+      int queueCapacity) {
+    this.file = file;
+    this.saveKnotDeterminant = saveKnotDeterminant;
+    this.saveAlexanderPolynomial = saveAlexanderPolynomial;
+    this.saveGridIndex = saveGridIndex;
+    fullBlocks = new ArrayBlockingQueue<>(queueCapacity + 1); // Room for END
+    emptyBlocks = new ArrayBlockingQueue<>(queueCapacity);
+
+    try {
+      boolean isNew = !file.exists() || file.length() == 0;
+      if (!isNew) {
+        dropDamagedEnd();
+      }
+      file.getParentFile().mkdirs();
+      fileOut = new FileOutputStream(file, true);
+      out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+      if (isNew) {
+        out.writeInt(KnotRecordBlock.MAGIC);
+        out.writeInt(KnotRecordBlock.VERSION);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("ERROR: could not open " + file, e);
+    }
+
+    writer = new Thread(this::runWriter, "knot-record-writer-" + file.getName());
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  private void dropDamagedEnd() throws IOException {
+    long validLength = KnotRecordReader.getValidLength(file);
+    if (validLength < file.length()) {
+      System.out.println("Dropped " + (file.length() - validLength) + " damaged bytes at the end of "
+          + file.getName());
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.setLength(validLength);
+      }
+    }
+  }
+
+  private Slot createSlot() {
+    Slot slot = new Slot();
+    slot.block = createBlock();
+    synchronized (slots) {
+      slots.add(slot);
+    }
+    return slot;
+  }
+
+  private KnotRecordBlock createBlock() {
+    KnotRecordBlock block = emptyBlocks.poll();
+    return block != null ? block : new KnotRecordBlock(BLOCK_SIZE, saveKnotDeterminant, saveAlexanderPolynomial,
+        saveGridIndex);
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+  public void add(Collection<Knot> knots) throws InterruptedException {
+    if (isClosed) {
+      throw new IllegalStateException("ERROR: " + file.getName() + " is closed");
+    }
+
+    PerformanceTimer timer = new PerformanceTimer(getClass(), "add");
+    Slot slot = localSlot.get();
+    for (Knot k : knots) {
+      // Reading the invariants can calculate them, so that is done before locking
+      long knotDeterminant = saveKnotDeterminant ? k.getKnotDeterminant() : JointHistogram.NO_KNOT_DETERMINANT;
+      int alexanderPolynomial = saveAlexanderPolynomial ? k.getAlexanderPolynomialId()
+          : JointHistogram.NO_ALEXANDER_POLYNOMIAL;
+      int[] gaussCode = KnotFingerprint.gaussCode(k);
+
+      synchronized (slot) {
+        // Checked again under the lock, close drains the slot under it and puts END after the last block. A slot
+        // created after close copied the slots sees isClosed here as well.
+        if (isClosed) {
+          throw new IllegalStateException("ERROR: " + file.getName() + " is closed");
+        }
+        slot.block.add(k.getLength(), k.getIntersectionCount(), k.getGridIndex(), knotDeterminant, alexanderPolynomial,
+            gaussCode);
+        if (slot.block.isFull()) {
+          fullBlocks.put(slot.block);
+          slot.block = createBlock();
+        }
+      }
+    }
+    timer.stop();
+  }
+
+  private void runWriter() {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    CRC32 crc = new CRC32();
+    byte[] compressed = new byte[1 << 16];
+    boolean isFailed = false;
+
+    while (true) {
+      KnotRecordBlock block;
+      try {
+        block = fullBlocks.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (block == END) {
+        break;
+      }
+
+      // After a failure the blocks are still taken, so the threads that save knots never wait forever
+      if (!isFailed) {
+        PerformanceTimer timer = new PerformanceTimer(getClass(), "writeBlock", "encode");
+        byte[] payload = block.encode();
+
+        timer.nextSegment("compress");
+        deflater.reset();
+        deflater.setInput(payload);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+          if (compressedLength == compressed.length) {
+            compressed = Arrays.copyOf(compressed, compressed.length * 2);
+          }
+          compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        crc.reset();
+        crc.update(compressed, 0, compressedLength);
+
+        timer.nextSegment("write");
+        try {
+          out.writeInt(block.size());
+          out.writeInt(payload.length);
+          out.writeInt(compressedLength);
+          out.writeInt((int) crc.getValue());
+          out.write(compressed, 0, compressedLength);
+          out.flush();
+        } catch (IOException e) {
+          System.out.println("ERROR: could not write to " + file.getName() + ", no more knot records are saved");
+          e.printStackTrace();
+          isFailed = true;
+        }
+        timer.stop();
+      }
+
+      block.clear();
+      emptyBlocks.offer(block);
+    }
+    deflater.end();
+  }
+
+  // Writes the blocks that are not full yet and waits for the writer, the sink can not be used afterwards
+  public synchronized void close() {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+
+    PerformanceTimer timer = new PerformanceTimer(getClass(), "close");
+    ArrayList<Slot> slotsCopy;
+    synchronized (slots) {
+      slotsCopy = new ArrayList<>(slots);
+    }
+    try {
+      for (Slot slot : slotsCopy) {
+        synchronized (slot) {
+          if (!slot.block.isEmpty()) {
+            fullBlocks.put(slot.block);
+            slot.block = createBlock();
+          }
+        }
+      }
+      fullBlocks.put(END);
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    try {
+      out.flush();
+      fileOut.getFD().sync();
+      out.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    timer.stop();
+  }
+}
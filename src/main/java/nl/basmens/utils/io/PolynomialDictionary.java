@@ -0,0 +1,59 @@
+package nl.basmens.utils.io;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.basmens.utils.maths.Polynomial;
+
+// Gives every distinct polynomial a small id, so the histograms can count them in primitive maps. There are only a
+// few thousand distinct alexander polynomials, so the dictionary is never cleared. The polynomials are kept as their
+// PolynomialKey, which takes a few dozen bytes instead of two BigIntegers per term.
+public final class PolynomialDictionary {
+  private static final ConcurrentHashMap<PolynomialKey, Integer> IDS = new ConcurrentHashMap<>();
+  private static final ArrayList<PolynomialKey> KEYS = new ArrayList<>();
+
+  private PolynomialDictionary() {
+  }
+
+  public static int getId(Polynomial polynomial) {
+    return getId(PolynomialKey.of(polynomial));
+  }
+
+  static int getId(PolynomialKey key) {
+    Integer id = IDS.get(key);
+    if (id != null) {
+      return id;
+    }
+
+    synchronized (KEYS) {
+      id = IDS.get(key);
+      if (id == null) {
+        id = KEYS.size();
+        KEYS.add(key);
+        IDS.put(key, id);
+      }
+      return id;
+    }
+  }
+
+  public static Polynomial get(int id) {
+    return getKey(id).toPolynomial();
+  }
+
+  // Same as get(id).toString(), without decoding the polynomial
+  public static String toString(int id) {
+    return getKey(id).toString();
+  }
+
+  static PolynomialKey getKey(int id) {
+    synchronized (KEYS) {
+      return KEYS.get(id);
+    }
+  }
+
+  public static int size() {
+    synchronized (KEYS) {
+      return KEYS.size();
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package nl.basmens.utils.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import nl.basmens.utils.maths.Monomial;
+import nl.basmens.utils.maths.Polynomial;
+
+// Compact canonical encoding of a polynomial, used as the key of the PolynomialDictionary instead of the Polynomial
+// itself, which holds two BigIntegers per term. Equal polynomials have equal bytes, so the key compares with a single
+// array comparison and its hash is computed once.
+//
+// DENSE: [lowest power: zigzag varint][term count: varint], then every coefficient from the lowest to the highest
+//        power as a zigzag varlong, including the zeros in between. Alexander polynomials have no gaps.
+// TEXT:  the toString of the polynomial as UTF-8, for coefficients that are not integers or do not fit in a double
+final class PolynomialKey {
+  private static final byte DENSE = 0;
+  private static final byte TEXT = 1;
+
+  // Larger coefficients are not printed exactly by Monomial.toString, so those polynomials are stored as text
+  private static final long MAX_DENSE_COEFFICIENT = 1L << 53;
+
+  private final byte[] bytes;
+  private final int hash;
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  PolynomialKey(byte[] bytes) {
+    this.bytes = bytes;
+    this.hash = Arrays.hashCode(bytes);
+  }
+
+  static PolynomialKey of(Polynomial polynomial) {
+    byte[] dense = encodeDense(polynomial);
+    if (dense != null) {
+      return new PolynomialKey(dense);
+    }
+
+    byte[] text = polynomial.toString().getBytes(StandardCharsets.UTF_8);
+    byte[] bytes = new byte[text.length + 1];
+    bytes[0] = TEXT;
+    System.arraycopy(text, 0, bytes, 1, text.length);
+    return new PolynomialKey(bytes);
+  }
+
+  // Returns null if a coefficient can not be stored densely
+  private static byte[] encodeDense(Polynomial polynomial) {
+    Monomial[] monomials = polynomial.getMonomials();
+    int lowestPower = monomials.length == 0 ? 0 : monomials[0].getPower();
+    int termCount = monomials.length == 0 ? 0 : monomials[monomials.length - 1].getPower() - lowestPower + 1;
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(3 + termCount * 2);
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeByte(DENSE);
+      Varints.writeSignedVarLong(out, lowestPower);
+      Varints.writeVarLong(out, termCount);
+      int power = lowestPower;
+      for (Monomial m : monomials) {
+        for (; power < m.getPower(); power++) {
+          out.writeByte(0);
+        }
+
+        BigInteger coefficient;
+        try {
+          coefficient = m.getIntegerCoefficient();
+        } catch (ArithmeticException e) {
+          return null;
+        }
+        if (coefficient.abs().compareTo(BigInteger.valueOf(MAX_DENSE_COEFFICIENT)) > 0) {
+          return null;
+        }
+        Varints.writeSignedVarLong(out, coefficient.longValue());
+        power++;
+      }
+    } catch (IOException e) {
+      // Unreachable: writing to a ByteArrayOutputStream
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+  Polynomial toPolynomial() {
+    if (bytes[0] == TEXT) {
+      return Polynomial.parse(toString());
+    }
+
+    int[] lowestPower = new int[1];
+    long[] coefficients = readCoefficients(lowestPower);
+    Monomial[] monomials = new Monomial[coefficients.length];
+    for (int i = 0; i < coefficients.length; i++) {
+      monomials[i] = new Monomial(coefficients[i], lowestPower[0] + i);
+    }
+    return new Polynomial(monomials);
+  }
+
+  // Same format as Polynomial.toString, without decoding the polynomial
+  @Override
+  public String toString() {
+    if (bytes[0] == TEXT) {
+      return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+    }
+
+    int[] lowestPower = new int[1];
+    long[] coefficients = readCoefficients(lowestPower);
+    StringBuilder b = new StringBuilder();
+    for (int i = coefficients.length - 1; i >= 0; i--) {
+      long coefficient = coefficients[i];
+      if (coefficient == 0) {
+        continue;
+      }
+
+      int power = lowestPower[0] + i;
+      if (b.length() > 0) {
+        b.append(coefficient < 0 ? " - " : " + ");
+        coefficient = Math.abs(coefficient);
+      }
+      if (power == 0 || (coefficient != 1 && coefficient != -1)) {
+        b.append(coefficient);
+      } else if (coefficient == -1) {
+        b.append('-');
+      }
+      if (power == 1) {
+        b.append('t');
+      } else if (power != 0) {
+        b.append("t^").append(power);
+      }
+    }
+    return b.length() == 0 ? "0" : b.toString();
+  }
+
+  // The coefficients of a DENSE key from the lowest to the highest power
+  private long[] readCoefficients(int[] outLowestPower) {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+    try {
+      outLowestPower[0] = Varints.readSignedVarInt(in);
+      long[] coefficients = new long[Varints.readVarInt(in)];
+      for (int i = 0; i < coefficients.length; i++) {
+        coefficients[i] = Varints.readSignedVarLong(in);
+      }
+      return coefficients;
+    } catch (IOException e) {
+      throw new IllegalStateException("ERROR: damaged polynomial key", e);
+    }
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  byte[] getBytes() {
+    return bytes;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof PolynomialKey && Arrays.equals(bytes, ((PolynomialKey) obj).bytes);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+}
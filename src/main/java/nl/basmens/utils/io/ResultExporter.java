@@ -1,139 +1,380 @@
 package nl.basmens.utils.io;
 
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+import nl.basmens.Configuration;
 import nl.basmens.knot.Knot;
 import nl.basmens.utils.concurrent.PerformanceTimer;
 import processing.core.PApplet;
-import processing.data.JSONObject;
 
+// Saves the histograms of the knots of one export name. Knots are counted in a JointHistogram, from which the
+// histograms by length and by intersection count are derived. Flushing appends the counts since the previous flush to
+// a binary ResultLog, which is replayed when resuming. Compacting rewrites the log as one record, exports the length
+// and intersection histograms to the JSON file that is read by the rest of the tools, and the joint histogram to a
+// .joint file next to it. Both are done by a background writer thread, every FLUSH_INTERVAL and COMPACTION_INTERVAL,
+// and when the exporter is closed. With save-knot-records, every knot is written to a .knots file by a KnotRecordSink
+// as well.
 public final class ResultExporter {
   private static final String COUNT_KEY = "count";
   private static final String LENGTH_BASED_KEY = "length";
   private static final String INTERSECTIONS_BASED_KEY = "intersections";
   private static final long FLUSH_INTERVAL = 60 * 1_000L; // in millis
+  private static final long COMPACTION_INTERVAL = 10 * 60 * 1_000L; // in millis
 
   private static HashMap<String, ResultExporter> exporters = new HashMap<>();
+  private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "result-writer");
+    t.setDaemon(true);
+    return t;
+  });
 
   private final File file;
+  private final File jointFile;
+  private final ResultLog log;
+  private final KnotRecordSink recordSink; // Null if knot records are not saved
   private HashMap<Integer, KnotJson> lengths = new HashMap<>();
   private HashMap<Integer, KnotJson> intersections = new HashMap<>();
-  private long knotCount;
+  private long knotCount; // Knots in lengths and intersections
+  private final JointHistogram joint = new JointHistogram();
+  // Results read from a JSON file from before the log existed, which are in lengths and intersections but not in joint
+  private final HashMap<Integer, KnotJson> importedLengths = new HashMap<>();
+  private final HashMap<Integer, KnotJson> importedIntersections = new HashMap<>();
+  private long importedKnotCount;
+  // Knots taken from the shards that are not in the log yet, because appending them failed
+  private final JointHistogram unwritten = new JointHistogram();
+  // The grids of the results, added to by the pipelines when they hand out a grid
+  private final GridRanges gridRanges = new GridRanges();
+  private long writtenGridRangesVersion; // Modification count of gridRanges in the log
 
-  private long lastFlushMillis;
+  // Every thread saves into its own shard, which are merged into lengths and intersections when flushing. This way
+  // saving does not lock the exporter, and never waits for the disk.
+  private final ThreadLocal<KnotHistogramShard> localShard = ThreadLocal.withInitial(this::createShard);
+  private final ArrayList<KnotHistogramShard> shards = new ArrayList<>();
+  private final LongAdder savedKnotCount = new LongAdder();
+  private final long loadedKnotCount;
+
+  private volatile long lastFlushMillis;
+  private final AtomicBoolean isFlushScheduled = new AtomicBoolean();
+  private long lastCompactionMillis = System.currentTimeMillis();
+  private boolean isClosed;
+
+  // Compactions can finish out of order, an older snapshot must not overwrite a newer one
+  private final Object jsonLock = new Object();
+  private long snapshotVersion;
+  private long writtenSnapshotVersion;
 
   private ResultExporter(String fileExportName) {
     // Get file
-    URL resource = getClass().getResource("/");
-    String path = null;
+    Configuration configuration = Configuration.get();
+    String path = new File(getResultsDirectory(), fileExportName + ".json").getPath();
+    file = new File(path);
+    String basePath = path.substring(0, path.length() - ".json".length());
+    jointFile = new File(basePath + ".joint");
+    log = new ResultLog(new File(basePath + ".log"));
+    recordSink = configuration.isSaveKnotRecords() ? new KnotRecordSink(new File(basePath + ".knots"),
+        configuration.isSaveKnotDeterminant(), configuration.isSaveAlexanderPolynomial(),
+        configuration.getGridCount() > 0, configuration.getKnotRecordQueueCapacity()) : null;
+
+    PerformanceTimer timer = new PerformanceTimer(getClass(), "load");
+    if (log.exists()) {
+      importedKnotCount = log.replay(importedLengths, importedIntersections, joint, gridRanges);
+      writtenGridRangesVersion = gridRanges.getModificationCount();
+    } else if (file.exists()) {
+      // Results from before the log existed
+      importedKnotCount = ResultJsonReader.read(file, importedLengths, importedIntersections);
+      log.compact(importedKnotCount, importedLengths, importedIntersections, joint, gridRanges);
+    }
+    importedLengths.forEach((k, v) -> lengths.computeIfAbsent(k, s -> new KnotJson()).add(v));
+    importedIntersections.forEach((k, v) -> intersections.computeIfAbsent(k, s -> new KnotJson()).add(v));
+    knotCount = importedKnotCount + joint.addTo(lengths, intersections);
+    loadedKnotCount = knotCount;
+    timer.stop();
+  }
+
+  // The results-directory of the configuration, relative to the project directory unless it is absolute
+  public static File getResultsDirectory() {
+    File directory = new File(Configuration.get().getResultsDirectory());
+    if (directory.isAbsolute()) {
+      return directory;
+    }
+
+    URL resource = ResultExporter.class.getResource("/");
     try {
-      path = Paths.get(resource.toURI()).toAbsolutePath().toString();
+      String path = Paths.get(resource.toURI()).toAbsolutePath().toString();
       path = path.substring(0, path.length() - "target/classes".length());
-      path += "results/" + fileExportName + ".json";
+      return new File(path + directory.getPath());
     } catch (URISyntaxException e) {
-      e.printStackTrace();
+      throw new IllegalStateException("ERROR: could not find the project directory", e);
     }
-    file = new File(path);
-
-    // Read file
-    if (file.exists()) {
-      JSONObject json = PApplet.loadJSONObject(file);
-      knotCount = json.getLong(COUNT_KEY, 0);
-
-      JSONObject lengthJson = json.getJSONObject(LENGTH_BASED_KEY);
-      if (lengthJson != null) {
-        ((Set<String>) lengthJson.keys())
-            .forEach(k -> lengths.put(Integer.parseInt(k), new KnotJson(lengthJson.getJSONObject(k))));
-      }
+  }
 
-      JSONObject intersectionJson = json.getJSONObject(INTERSECTIONS_BASED_KEY);
-      if (intersectionJson != null) {
-        ((Set<String>) intersectionJson.keys())
-            .forEach(k -> intersections.put(Integer.parseInt(k), new KnotJson(intersectionJson.getJSONObject(k))));
-      }
+  private KnotHistogramShard createShard() {
+    KnotHistogramShard shard = new KnotHistogramShard(Configuration.get().isSaveKnotDeterminant(),
+        Configuration.get().isSaveAlexanderPolynomial());
+    synchronized (shards) {
+      shards.add(shard);
     }
+    return shard;
   }
 
   public static synchronized ResultExporter getExporter(String fileExportName) {
     return exporters.computeIfAbsent(fileExportName, ResultExporter::new);
   }
 
-  public static synchronized void closeExporter(String fileExportName) {
-    ResultExporter exporter = exporters.get(fileExportName);
+  // Closing writes to disk, which is done outside of the lock so getExporter of other exports does not wait for it
+  public static void closeExporter(String fileExportName) {
+    ResultExporter exporter;
+    synchronized (ResultExporter.class) {
+      exporter = exporters.remove(fileExportName);
+    }
     if (exporter != null) {
-      exporter.flush();
-      exporters.remove(fileExportName);
+      exporter.close();
     }
   }
 
-  public static synchronized void closeAll() {
-    exporters.forEach((String k, ResultExporter v) -> v.flush());
-    exporters.clear();
+  public static void closeAll() {
+    ArrayList<ResultExporter> closing;
+    synchronized (ResultExporter.class) {
+      closing = new ArrayList<>(exporters.values());
+      exporters.clear();
+    }
+    closing.forEach(ResultExporter::close);
   }
 
-  public synchronized void save(Collection<Knot> knots) {
-    PerformanceTimer timer = new PerformanceTimer(getClass(), "save");
+  public void save(Collection<Knot> knots) {
+    PerformanceTimer timer = new PerformanceTimer(getClass(), "save", "histograms");
+
+    localShard.get().add(knots);
+    savedKnotCount.add(knots.size());
+    if (recordSink != null) {
+      timer.nextSegment("records");
+      try {
+        recordSink.add(knots);
+      } catch (InterruptedException e) {
+        // Only while shutting down, the knots are still in the histograms
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (isFlushDue() && isFlushScheduled.compareAndSet(false, true)) {
+      WRITER.execute(this::flushInBackground);
+    }
+
+    timer.stop();
+  }
 
-    for (Knot k : knots) {
-      lengths.computeIfAbsent(k.getLength(), s -> new KnotJson()).addKnot(k);
-      intersections.computeIfAbsent(k.getIntersectionCount(), s -> new KnotJson()).addKnot(k);
+  // Adds knots that were counted elsewhere, for example by another process
+  public void save(JointHistogram histogram) {
+    localShard.get().addAll(histogram);
+    savedKnotCount.add(histogram.getKnotCount());
+    if (isFlushDue() && isFlushScheduled.compareAndSet(false, true)) {
+      WRITER.execute(this::flushInBackground);
     }
+  }
 
-    knotCount += knots.size();
-    if (lastFlushMillis == 0 || System.currentTimeMillis() - lastFlushMillis > FLUSH_INTERVAL) {
+  private boolean isFlushDue() {
+    return lastFlushMillis == 0 || System.currentTimeMillis() - lastFlushMillis > FLUSH_INTERVAL;
+  }
+
+  private void flushInBackground() {
+    try {
       flush();
+      compact(false);
+    } catch (RuntimeException e) {
+      // The knots stay in the unwritten histogram, and are written by the next flush
+      e.printStackTrace();
+    } finally {
+      isFlushScheduled.set(false);
     }
+  }
 
-    timer.stop();
+  // The grids in the results, a pipeline adds a grid before generating it
+  public GridRanges getGridRanges() {
+    return gridRanges;
   }
 
-  public synchronized long getKnotCount() {
-    return knotCount;
+  // Includes knots that are not merged yet
+  public long getKnotCount() {
+    return loadedKnotCount + savedKnotCount.sum();
   }
 
+  // Blocks until the knots saved so far are written to the log
   public synchronized void flush() {
-    PerformanceTimer timer = new PerformanceTimer(getClass(), "flush");
-    PApplet.createPath(file);
-    try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
-      bw.append("{\n\"").append(COUNT_KEY).append("\":").append(Long.toString(knotCount));
-
-      bw.append(",\n\"").append(LENGTH_BASED_KEY).append("\":{");
-      boolean addComma = false;
-      for (Entry<Integer, KnotJson> e : lengths.entrySet()) {
-        if (addComma) {
-          bw.append(",");
-        }
-        bw.append("\n\"").append(e.getKey().toString()).append("\":").append(e.getValue().toString());
-        addComma = true;
-      }
-      
-      bw.append("\n},\n\"").append(INTERSECTIONS_BASED_KEY).append("\":{");
-      addComma = false;
-      for (Entry<Integer, KnotJson> e : intersections.entrySet()) {
-        if (addComma) {
-          bw.append(",");
-        }
-        bw.append("\n\"").append(e.getKey().toString()).append("\":").append(e.getValue().toString());
-        addComma = true;
+    if (isClosed) {
+      return;
+    }
+
+    PerformanceTimer timer = new PerformanceTimer(getClass(), "flush", "swap");
+    ArrayList<KnotHistogramShard> shardsCopy;
+    synchronized (shards) {
+      shardsCopy = new ArrayList<>(shards);
+    }
+    ArrayList<JointHistogram> buffers = new ArrayList<>(shardsCopy.size());
+    for (KnotHistogramShard shard : shardsCopy) {
+      buffers.add(shard.swap());
+    }
+
+    timer.nextSegment("merge");
+    for (int i = 0; i < buffers.size(); i++) {
+      unwritten.addAll(buffers.get(i));
+      shardsCopy.get(i).recycle(buffers.get(i));
+    }
+    HashMap<Integer, KnotJson> deltaLengths = new HashMap<>();
+    HashMap<Integer, KnotJson> deltaIntersections = new HashMap<>();
+    long deltaCount = unwritten.addTo(deltaLengths, deltaIntersections);
+    // Read after the swap, so the ranges hold the grids of every knot of the delta
+    long gridRangesVersion = gridRanges.getModificationCount();
+    boolean isGridRangesChanged = gridRangesVersion != writtenGridRangesVersion;
+
+    if (deltaCount > 0 || isGridRangesChanged) {
+      if (log.isDamaged()) {
+        // A failed append left part of a record behind, that would hide every record after it when replaying
+        timer.nextSegment("repair");
+        log.compact(importedKnotCount, importedLengths, importedIntersections, joint, gridRanges);
       }
-      bw.append("\n}\n}");
-    } catch (Exception e) {
-      e.printStackTrace();
+
+      // The knots are only applied once they are in the log, when appending throws they stay in unwritten
+      timer.nextSegment("append");
+      log.append(unwritten, isGridRangesChanged ? gridRanges : null);
+      writtenGridRangesVersion = gridRangesVersion;
+
+      timer.nextSegment("apply");
+      deltaLengths.forEach((k, v) -> lengths.computeIfAbsent(k, s -> new KnotJson()).add(v));
+      deltaIntersections.forEach((k, v) -> intersections.computeIfAbsent(k, s -> new KnotJson()).add(v));
+      joint.addAll(unwritten);
+      unwritten.clear();
+      knotCount += deltaCount;
     }
 
-    System.out.println("Flushed " + knotCount + " knots to " + file.getName() + " | "
+    System.out.println("Flushed " + deltaCount + " knots to " + file.getName() + " (" + knotCount + " total) | "
         + (System.currentTimeMillis() - lastFlushMillis) / 1E3 + " seconds after last flush");
     lastFlushMillis = System.currentTimeMillis();
-
     timer.stop();
   }
+
+  // Flushes and compacts, the exporter can not be used afterwards
+  private void close() {
+    if (recordSink != null) {
+      recordSink.close();
+    }
+    flush();
+    compact(true);
+    synchronized (this) {
+      isClosed = true;
+      log.close();
+    }
+  }
+
+  private void compact(boolean isClosing) {
+    String json;
+    byte[] jointBytes;
+    long version;
+    synchronized (this) {
+      if (isClosed || !isClosing && System.currentTimeMillis() - lastCompactionMillis <= COMPACTION_INTERVAL) {
+        return;
+      }
+
+      PerformanceTimer timer = new PerformanceTimer(getClass(), "compact", "log");
+      log.compact(importedKnotCount, importedLengths, importedIntersections, joint, gridRanges);
+      timer.nextSegment("json");
+      json = toJson();
+      timer.nextSegment("joint");
+      jointBytes = toJointBytes();
+      version = ++snapshotVersion;
+      lastCompactionMillis = System.currentTimeMillis();
+      timer.stop();
+    }
+
+    // Writing the files does not need the exporter, so flushes can continue meanwhile
+    writeExports(json, jointBytes, version);
+  }
+
+  private String toJson() {
+    StringBuilder b = new StringBuilder();
+    b.append("{\n\"").append(COUNT_KEY).append("\":").append(knotCount);
+
+    b.append(",\n\"").append(LENGTH_BASED_KEY).append("\":{");
+    boolean addComma = false;
+    for (Entry<Integer, KnotJson> e : lengths.entrySet()) {
+      if (addComma) {
+        b.append(",");
+      }
+      b.append("\n\"").append(e.getKey()).append("\":").append(e.getValue());
+      addComma = true;
+    }
+
+    b.append("\n},\n\"").append(INTERSECTIONS_BASED_KEY).append("\":{");
+    addComma = false;
+    for (Entry<Integer, KnotJson> e : intersections.entrySet()) {
+      if (addComma) {
+        b.append(",");
+      }
+      b.append("\n\"").append(e.getKey()).append("\":").append(e.getValue());
+      addComma = true;
+    }
+    b.append("\n}\n}");
+    return b.toString();
+  }
+
+  private byte[] toJointBytes() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      joint.write(bytes);
+    } catch (IOException e) {
+      // Unreachable: writing to a ByteArrayOutputStream
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  // Writes temporary files and moves them over the old ones, so the files are never half written
+  private void writeExports(String json, byte[] jointBytes, long version) {
+    synchronized (jsonLock) {
+      if (version <= writtenSnapshotVersion) {
+        return;
+      }
+
+      PerformanceTimer timer = new PerformanceTimer(getClass(), "writeExports");
+      PApplet.createPath(file);
+      writeAtomically(file, json.getBytes(StandardCharsets.UTF_8));
+      writeAtomically(jointFile, jointBytes);
+      writtenSnapshotVersion = version;
+      timer.stop();
+    }
+    System.out.println("Exported " + file.getName() + " and " + jointFile.getName());
+  }
+
+  private static void writeAtomically(File destination, byte[] bytes) {
+    File tempFile = new File(destination.getPath() + ".tmp");
+    try (FileOutputStream out = new FileOutputStream(tempFile)) {
+      out.write(bytes);
+      out.getFD().sync();
+    } catch (IOException e) {
+      e.printStackTrace();
+      return;
+    }
+
+    try {
+      Files.move(tempFile.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
 }
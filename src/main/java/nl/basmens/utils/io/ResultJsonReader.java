@@ -0,0 +1,323 @@
+package nl.basmens.utils.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import nl.basmens.utils.maths.Polynomial;
+
+// Reads a results JSON file straight into the histograms, without building a JSONObject tree of the whole file.
+// Unknown keys are skipped, so files with extra data can still be read. Also reads the files in old_results, which
+// only have the histograms by length, as buckets in the root object.
+public final class ResultJsonReader {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Reader reader;
+  private final String name;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private int position;
+  private int limit;
+
+  private final StringBuilder string = new StringBuilder();
+  // Most polynomials appear in many buckets, so every distinct string is only parsed once
+  private final HashMap<String, Integer> polynomialIds = new HashMap<>();
+
+  private ResultJsonReader(Reader reader, String name) {
+    this.reader = reader;
+    this.name = name;
+  }
+
+  // Adds the histograms in the file to the given ones, returns the knot count
+  public static long read(File file, Map<Integer, KnotJson> lengths, Map<Integer, KnotJson> intersections) {
+    try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+      return new ResultJsonReader(reader, file.getName()).readResults(lengths, intersections);
+    } catch (IOException e) {
+      throw new IllegalStateException("ERROR: could not read " + file, e);
+    }
+  }
+
+  // =================================================================================================================
+  // Structure
+  // =================================================================================================================
+  private long readResults(Map<Integer, KnotJson> lengths, Map<Integer, KnotJson> intersections)
+      throws IOException {
+    long knotCount = 0;
+    long rootBucketKnotCount = 0;
+    boolean hasCount = false;
+    expect('{');
+    if (!tryConsume('}')) {
+      do {
+        String key = readString().toString();
+        expect(':');
+        switch (key) {
+          case "count":
+            knotCount = readLong();
+            hasCount = true;
+            break;
+          case "length":
+            readBuckets(lengths);
+            break;
+          case "intersections":
+            readBuckets(intersections);
+            break;
+          default:
+            if (isBucketKey(key)) {
+              KnotJson json = lengths.computeIfAbsent(Integer.parseInt(key), s -> new KnotJson());
+              long countBefore = json.getCount();
+              readKnotJson(json);
+              rootBucketKnotCount += json.getCount() - countBefore;
+            } else {
+              skipValue();
+            }
+            break;
+        }
+      } while (tryConsume(','));
+      expect('}');
+    }
+    return hasCount ? knotCount : rootBucketKnotCount;
+  }
+
+  private static boolean isBucketKey(String key) {
+    if (key.isEmpty() || key.length() > 9) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); i++) {
+      if (key.charAt(i) < '0' || key.charAt(i) > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void readBuckets(Map<Integer, KnotJson> jsons) throws IOException {
+    expect('{');
+    if (tryConsume('}')) {
+      return;
+    }
+
+    do {
+      int bucket = (int) parseLong(readString());
+      expect(':');
+      readKnotJson(jsons.computeIfAbsent(bucket, s -> new KnotJson()));
+    } while (tryConsume(','));
+    expect('}');
+  }
+
+  private void readKnotJson(KnotJson json) throws IOException {
+    expect('{');
+    if (tryConsume('}')) {
+      return;
+    }
+
+    do {
+      String key = readString().toString();
+      expect(':');
+      switch (key) {
+        case "count":
+          json.addCount(readLong());
+          break;
+        case "knot determinant":
+          expect('{');
+          if (!tryConsume('}')) {
+            do {
+              long knotDeterminant = parseLong(readString());
+              expect(':');
+              json.getKnotDeterminants().addTo(knotDeterminant, readLong());
+            } while (tryConsume(','));
+            expect('}');
+          }
+          break;
+        case "alexander polynomial":
+          expect('{');
+          if (!tryConsume('}')) {
+            do {
+              int id = getPolynomialId(readString());
+              expect(':');
+              json.getAlexanderPolynomials().addTo(id, readLong());
+            } while (tryConsume(','));
+            expect('}');
+          }
+          break;
+        default:
+          skipValue();
+          break;
+      }
+    } while (tryConsume(','));
+    expect('}');
+  }
+
+  private int getPolynomialId(CharSequence polynomial) {
+    String key = polynomial.toString();
+    Integer id = polynomialIds.get(key);
+    if (id == null) {
+      id = PolynomialDictionary.getId(Polynomial.parse(key));
+      polynomialIds.put(key, id);
+    }
+    return id;
+  }
+
+  private void skipValue() throws IOException {
+    char c = peek();
+    if (c == '"') {
+      readString();
+    } else if (c == '{' || c == '[') {
+      char close = c == '{' ? '}' : ']';
+      next();
+      if (tryConsume(close)) {
+        return;
+      }
+      do {
+        if (close == '}') {
+          readString();
+          expect(':');
+        }
+        skipValue();
+      } while (tryConsume(','));
+      expect(close);
+    } else {
+      // Number, true, false or null
+      while (position < limit || fill()) {
+        c = buffer[position];
+        if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+          break;
+        }
+        position++;
+      }
+    }
+  }
+
+  // =================================================================================================================
+  // Tokens
+  // =================================================================================================================
+
+  // Returns a buffer that is reused by the next call
+  private StringBuilder readString() throws IOException {
+    expect('"');
+    string.setLength(0);
+    while (true) {
+      char c = next();
+      if (c == '"') {
+        return string;
+      }
+      if (c == '\\') {
+        c = next();
+        switch (c) {
+          case 'n':
+            c = '\n';
+            break;
+          case 't':
+            c = '\t';
+            break;
+          case 'r':
+            c = '\r';
+            break;
+          case 'b':
+            c = '\b';
+            break;
+          case 'f':
+            c = '\f';
+            break;
+          case 'u':
+            c = (char) Integer.parseInt(new String(new char[] { next(), next(), next(), next() }), 16);
+            break;
+          default:
+            // \" \\ and \/ stand for themselves
+            break;
+        }
+      }
+      string.append(c);
+    }
+  }
+
+  private long readLong() throws IOException {
+    skipWhitespace();
+    boolean isNegative = tryConsumeDirect('-');
+    long value = 0;
+    int digits = 0;
+    while ((position < limit || fill()) && buffer[position] >= '0' && buffer[position] <= '9') {
+      value = Math.addExact(Math.multiplyExact(value, 10), buffer[position] - '0');
+      position++;
+      digits++;
+    }
+    if (digits == 0) {
+      throw error("a number");
+    }
+    return isNegative ? -value : value;
+  }
+
+  private long parseLong(CharSequence s) {
+    long value = 0;
+    int start = s.length() > 0 && s.charAt(0) == '-' ? 1 : 0;
+    if (start == s.length()) {
+      throw new IllegalStateException("ERROR: expected a number in " + name + ", but got \"" + s + "\"");
+    }
+    for (int i = start; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c < '0' || c > '9') {
+        throw new IllegalStateException("ERROR: expected a number in " + name + ", but got \"" + s + "\"");
+      }
+      value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+    }
+    return start == 1 ? -value : value;
+  }
+
+  private void expect(char expected) throws IOException {
+    if (!tryConsume(expected)) {
+      throw error("'" + expected + "'");
+    }
+  }
+
+  private boolean tryConsume(char expected) throws IOException {
+    skipWhitespace();
+    return tryConsumeDirect(expected);
+  }
+
+  private boolean tryConsumeDirect(char expected) throws IOException {
+    if ((position < limit || fill()) && buffer[position] == expected) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private char peek() throws IOException {
+    skipWhitespace();
+    if (position >= limit && !fill()) {
+      throw error("a value");
+    }
+    return buffer[position];
+  }
+
+  private char next() throws IOException {
+    if (position >= limit && !fill()) {
+      throw error("more data");
+    }
+    return buffer[position++];
+  }
+
+  private void skipWhitespace() throws IOException {
+    while ((position < limit || fill()) && Character.isWhitespace(buffer[position])) {
+      position++;
+    }
+  }
+
+  private boolean fill() throws IOException {
+    limit = reader.read(buffer, 0, buffer.length);
+    position = 0;
+    if (limit <= 0) {
+      limit = 0;
+      return false;
+    }
+    return true;
+  }
+
+  private IllegalStateException error(String expected) {
+    String found = position < limit ? "'" + buffer[position] + "'" : "the end of the file";
+    return new IllegalStateException("ERROR: expected " + expected + " in " + name + ", but found " + found);
+  }
+}
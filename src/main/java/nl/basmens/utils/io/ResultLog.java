@@ -0,0 +1,409 @@
+package nl.basmens.utils.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import nl.basmens.utils.collections.LongLongHashMap;
+
+// Append-only binary log of the histograms of one ResultExporter. Every flush appends the counts added since the
+// previous flush, and compacting rewrites the log with the totals. Every record has a checksum, so a record that was
+// cut off by a crash is detected and dropped when replaying. The knots are only saved as cells of the JointHistogram,
+// the histograms by length and by intersection count are derived from it. Only results imported from a JSON file
+// from before the log existed have no cells, they are kept as a VIEWS record.
+//
+// File layout: MAGIC, VERSION, then records of [type: byte][length: int][payload][crc32 of type and payload: int]
+// POLYNOMIAL_KEY payload: [id: int][PolynomialKey bytes], defines an id used by the records after it
+// JOINT_DELTA payload:    the cells of the JointHistogram of the knots added since the previous JOINT_DELTA record
+// VIEWS payload:          [knot count: long], then for the lengths and the intersections:
+//                         [bucket count: int] and per bucket [bucket: int][count: long]
+//                         [determinant count: int] * [determinant: long][count: long]
+//                         [polynomial count: int] * [polynomial id: int][count: long]
+// GRID_RANGES payload:    the GridRanges of the grids in the results, replaces the ones of earlier records. Written
+//                         before the JOINT_DELTA record of the knots of those grids, so a crash that cuts off the
+//                         knots leaves grids that are skipped, never grids that are counted twice.
+public final class ResultLog {
+  private static final int MAGIC = 0x4B4C4F47; // "KLOG"
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 8;
+
+  private static final byte POLYNOMIAL_KEY_RECORD = 3;
+  private static final byte JOINT_DELTA_RECORD = 4;
+  private static final byte GRID_RANGES_RECORD = 5;
+  private static final byte VIEWS_RECORD = 6;
+
+  private final File file;
+  private DataOutputStream out;
+  private FileOutputStream fileOut;
+
+  // PolynomialDictionary ids that have a POLYNOMIAL_KEY record in the current file
+  private BitSet definedPolynomials = new BitSet();
+  // Set when a failed append could not be cut off again, the log has to be compacted before appending
+  private boolean isDamaged;
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  public ResultLog(File file) {
+    this.file = file;
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+  public boolean exists() {
+    return file.exists();
+  }
+
+  // Adds the cells in the log to the joint histogram, the VIEWS record to lengths and intersections, and reads the
+  // grid ranges. Returns the knot count of the VIEWS record, the views of the joint histogram are not added. Drops a
+  // damaged record at the end of the file, which is left behind by a crash while appending.
+  public long replay(Map<Integer, KnotJson> lengths, Map<Integer, KnotJson> intersections, JointHistogram joint,
+      GridRanges gridRanges) {
+    long knotCount = 0;
+    long validLength = HEADER_SIZE;
+    long fileLength = file.length();
+    HashMap<Integer, Integer> polynomialIds = new HashMap<>();
+    CRC32 crc = new CRC32();
+    // The ids in the log are from the run that wrote it
+    definedPolynomials.clear();
+
+    if (fileLength < HEADER_SIZE) {
+      // A crash before the header of a new log was written, the log is empty
+      System.out.println("Dropped the incomplete header of " + file.getName());
+      truncate(0);
+      return 0;
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IllegalStateException("ERROR: " + file + " is not a result log");
+      }
+
+      while (true) {
+        int type = in.read();
+        if (type == -1) {
+          break;
+        }
+
+        byte[] payload;
+        try {
+          int payloadLength = in.readInt();
+          if (payloadLength < 0 || payloadLength > fileLength - validLength) {
+            break;
+          }
+          payload = new byte[payloadLength];
+          in.readFully(payload);
+          crc.reset();
+          crc.update(type);
+          crc.update(payload);
+          if (in.readInt() != (int) crc.getValue()) {
+            break;
+          }
+        } catch (EOFException e) {
+          break;
+        }
+
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+        switch (type) {
+          case POLYNOMIAL_KEY_RECORD:
+            int keyId = record.readInt();
+            byte[] key = new byte[record.available()];
+            record.readFully(key);
+            polynomialIds.put(keyId, PolynomialDictionary.getId(new PolynomialKey(key)));
+            break;
+          case JOINT_DELTA_RECORD:
+            joint.readCells(record, logId -> {
+              Integer dictionaryId = polynomialIds.get(logId);
+              if (dictionaryId == null) {
+                throw new IllegalStateException("ERROR: undefined alexander polynomial in result log");
+              }
+              return dictionaryId;
+            });
+            break;
+          case GRID_RANGES_RECORD:
+            gridRanges.read(record);
+            break;
+          case VIEWS_RECORD:
+            knotCount += readViews(record, lengths, intersections, polynomialIds);
+            break;
+          default:
+            throw new IllegalStateException("ERROR: unknown record type " + type + " in " + file);
+        }
+        validLength += 1 + 4 + payload.length + 4;
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("ERROR: could not read " + file, e);
+    }
+
+    // Appending continues after the last valid record
+    if (validLength < fileLength) {
+      System.out.println("Dropped " + (fileLength - validLength) + " damaged bytes at the end of " + file.getName());
+      truncate(validLength);
+    }
+    return knotCount;
+  }
+
+  private void truncate(long length) {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(length);
+    } catch (IOException e) {
+      throw new IllegalStateException("ERROR: could not truncate " + file, e);
+    }
+  }
+
+  private static long readViews(DataInputStream in, Map<Integer, KnotJson> lengths,
+      Map<Integer, KnotJson> intersections, Map<Integer, Integer> polynomialIds) throws IOException {
+    long knotCount = in.readLong();
+    readBuckets(in, lengths, polynomialIds);
+    readBuckets(in, intersections, polynomialIds);
+    return knotCount;
+  }
+
+  private static void readBuckets(DataInputStream in, Map<Integer, KnotJson> jsons,
+      Map<Integer, Integer> polynomialIds) throws IOException {
+    int bucketCount = in.readInt();
+    for (int i = 0; i < bucketCount; i++) {
+      int bucket = in.readInt();
+      long count = in.readLong();
+
+      int determinantCount = in.readInt();
+      LongLongHashMap knotDeterminants = new LongLongHashMap(determinantCount);
+      for (int j = 0; j < determinantCount; j++) {
+        knotDeterminants.addTo(in.readLong(), in.readLong());
+      }
+      int polynomialCount = in.readInt();
+      LongLongHashMap alexanderPolynomials = new LongLongHashMap(polynomialCount);
+      for (int j = 0; j < polynomialCount; j++) {
+        Integer id = polynomialIds.get(in.readInt());
+        if (id == null) {
+          throw new IllegalStateException("ERROR: undefined alexander polynomial in result log");
+        }
+        alexanderPolynomials.addTo(id, in.readLong());
+      }
+
+      jsons.computeIfAbsent(bucket, s -> new KnotJson()).add(count, knotDeterminants, alexanderPolynomials);
+    }
+  }
+
+  // Appends the knots added since the previous append, and waits until they are on disk. The grid ranges are null if
+  // they did not change since the previous append. When appending fails, the part that was written is cut off again,
+  // so the log still ends with a complete record.
+  public void append(JointHistogram joint, GridRanges gridRanges) {
+    if (isDamaged) {
+      throw new IllegalStateException("ERROR: " + file + " must be compacted before appending");
+    }
+
+    long validLength = file.length() < HEADER_SIZE ? 0 : file.length();
+    BitSet validPolynomials = (BitSet) definedPolynomials.clone();
+    try {
+      if (out == null) {
+        open();
+      }
+      if (gridRanges != null) {
+        writeGridRanges(out, gridRanges);
+      }
+      if (!joint.isEmpty()) {
+        writeDelta(out, joint);
+      }
+      out.flush();
+      fileOut.getFD().sync();
+    } catch (IOException e) {
+      rollBack(validLength, validPolynomials);
+      throw new IllegalStateException("ERROR: could not append to " + file, e);
+    }
+  }
+
+  private void rollBack(long validLength, BitSet validPolynomials) {
+    // Whatever is still buffered must not be written by close
+    out = null;
+    if (fileOut != null) {
+      try {
+        fileOut.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      fileOut = null;
+    }
+    definedPolynomials = validPolynomials;
+
+    try {
+      truncate(validLength);
+    } catch (IllegalStateException e) {
+      e.printStackTrace();
+      isDamaged = true;
+    }
+  }
+
+  public boolean isDamaged() {
+    return isDamaged;
+  }
+
+  // Replaces the log by the totals: the joint histogram, and lengths and intersections of the results that are not in
+  // the joint histogram, if there are any. The new log is written next to the old one and then moved over it, so a
+  // crash leaves either the old or the new log.
+  public void compact(long knotCount, Map<Integer, KnotJson> lengths, Map<Integer, KnotJson> intersections,
+      JointHistogram joint, GridRanges gridRanges) {
+    close();
+    definedPolynomials.clear();
+
+    File tempFile = new File(file.getPath() + ".tmp");
+    file.getParentFile().mkdirs();
+    try (FileOutputStream tempOut = new FileOutputStream(tempFile)) {
+      DataOutputStream tempData = new DataOutputStream(new BufferedOutputStream(tempOut));
+      tempData.writeInt(MAGIC);
+      tempData.writeInt(VERSION);
+      writeGridRanges(tempData, gridRanges);
+      if (knotCount > 0) {
+        writeViews(tempData, knotCount, lengths, intersections);
+      }
+      writeDelta(tempData, joint);
+      tempData.flush();
+      tempOut.getFD().sync();
+    } catch (IOException e) {
+      throw new IllegalStateException("ERROR: could not write " + tempFile, e);
+    }
+
+    try {
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new IllegalStateException("ERROR: could not replace " + file, e);
+    }
+    isDamaged = false;
+  }
+
+  private void open() throws IOException {
+    // A file without a complete header is left behind by a crash while creating it, and is written again
+    boolean isNew = !file.exists() || file.length() < HEADER_SIZE;
+    file.getParentFile().mkdirs();
+    fileOut = new FileOutputStream(file, !isNew);
+    out = new DataOutputStream(new BufferedOutputStream(fileOut));
+    if (isNew) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+    }
+  }
+
+  public void close() {
+    if (out == null) {
+      return;
+    }
+
+    try {
+      out.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    out = null;
+    fileOut = null;
+  }
+
+  private void writeDelta(DataOutputStream out, JointHistogram joint) throws IOException {
+    BitSet polynomials = new BitSet();
+    joint.forEach((length, intersectionCount, reducedIntersectionCount, knotDeterminant, alexanderPolynomial,
+        count) -> {
+      if (alexanderPolynomial != JointHistogram.NO_ALEXANDER_POLYNOMIAL) {
+        polynomials.set(alexanderPolynomial);
+      }
+    });
+    for (int id = polynomials.nextSetBit(0); id >= 0; id = polynomials.nextSetBit(id + 1)) {
+      defineNewPolynomial(out, id);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    joint.writeCells(new DataOutputStream(bytes));
+    writeRecord(out, JOINT_DELTA_RECORD, bytes.toByteArray());
+  }
+
+  private void writeViews(DataOutputStream out, long knotCount, Map<Integer, KnotJson> lengths,
+      Map<Integer, KnotJson> intersections) throws IOException {
+    defineNewPolynomials(out, lengths);
+    defineNewPolynomials(out, intersections);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream payload = new DataOutputStream(bytes);
+    payload.writeLong(knotCount);
+    writeBuckets(payload, lengths);
+    writeBuckets(payload, intersections);
+    writeRecord(out, VIEWS_RECORD, bytes.toByteArray());
+  }
+
+  private static void writeGridRanges(DataOutputStream out, GridRanges gridRanges) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    gridRanges.write(new DataOutputStream(bytes));
+    writeRecord(out, GRID_RANGES_RECORD, bytes.toByteArray());
+  }
+
+  private static void writeBuckets(DataOutputStream out, Map<Integer, KnotJson> jsons) throws IOException {
+    out.writeInt(jsons.size());
+    for (Entry<Integer, KnotJson> e : jsons.entrySet()) {
+      KnotJson json = e.getValue();
+      out.writeInt(e.getKey());
+      out.writeLong(json.getCount());
+
+      long[] knotDeterminants = json.getKnotDeterminants().toEntryArray();
+      out.writeInt(knotDeterminants.length / 2);
+      for (int i = 0; i < knotDeterminants.length; i += 2) {
+        out.writeLong(knotDeterminants[i]);
+        out.writeLong(knotDeterminants[i + 1]);
+      }
+
+      long[] alexanderPolynomials = json.getAlexanderPolynomials().toEntryArray();
+      out.writeInt(alexanderPolynomials.length / 2);
+      for (int i = 0; i < alexanderPolynomials.length; i += 2) {
+        out.writeInt((int) alexanderPolynomials[i]);
+        out.writeLong(alexanderPolynomials[i + 1]);
+      }
+    }
+  }
+
+  private void defineNewPolynomials(DataOutputStream out, Map<Integer, KnotJson> jsons) throws IOException {
+    for (KnotJson json : jsons.values()) {
+      long[] alexanderPolynomials = json.getAlexanderPolynomials().toEntryArray();
+      for (int i = 0; i < alexanderPolynomials.length; i += 2) {
+        defineNewPolynomial(out, (int) alexanderPolynomials[i]);
+      }
+    }
+  }
+
+  private void defineNewPolynomial(DataOutputStream out, int id) throws IOException {
+    if (id == JointHistogram.NO_ALEXANDER_POLYNOMIAL || definedPolynomials.get(id)) {
+      return;
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream payload = new DataOutputStream(bytes);
+    payload.writeInt(id);
+    payload.write(PolynomialDictionary.getKey(id).getBytes());
+    writeRecord(out, POLYNOMIAL_KEY_RECORD, bytes.toByteArray());
+    definedPolynomials.set(id);
+  }
+
+  private static void writeRecord(DataOutputStream out, byte type, byte[] payload) throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(type);
+    crc.update(payload);
+
+    out.writeByte(type);
+    out.writeInt(payload.length);
+    out.write(payload);
+    out.writeInt((int) crc.getValue());
+  }
+}
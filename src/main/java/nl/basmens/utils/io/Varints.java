@@ -0,0 +1,57 @@
+package nl.basmens.utils.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Variable length encoding of the binary result formats: 7 bits per byte, lowest bits first, with the high bit set on
+// every byte but the last. Signed values are zigzag encoded first, so small negative values are short as well.
+final class Varints {
+  private Varints() {
+  }
+
+  static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  static void writeVarLong(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  static long readVarLong(DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalStateException("ERROR: varint is longer than 64 bits");
+  }
+
+  static void writeSignedVarLong(DataOutput out, long value) throws IOException {
+    writeVarLong(out, zigzag(value));
+  }
+
+  static long readSignedVarLong(DataInput in) throws IOException {
+    return unzigzag(readVarLong(in));
+  }
+
+  // Throws if the value does not fit in an int, which means the data is damaged
+  static int readVarInt(DataInput in) throws IOException {
+    return Math.toIntExact(readVarLong(in));
+  }
+
+  static int readSignedVarInt(DataInput in) throws IOException {
+    return Math.toIntExact(readSignedVarLong(in));
+  }
+}
@@ -0,0 +1,396 @@
+package nl.basmens.utils.maths;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+// Mutable Laurent polynomial with integer coefficients, stored densely as a lowest power plus a long[] of
+// coefficients. When a coefficient overflows a long, the polynomial switches to BigInteger coefficients, and switches
+// back as soon as everything fits in a long again. The buffers are reused between operations, so calculations that
+// write into existing instances do not allocate once the buffers are large enough.
+public final class LaurentPolynomial {
+  private long[] coefficients;
+  private BigInteger[] bigCoefficients; // Only non null while a coefficient does not fit in a long
+  private int lowestPower;
+  private int length; // 0 for the zero polynomial, otherwise the first and last coefficients are not 0
+
+  private long[] workspace = new long[0];
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  public LaurentPolynomial() {
+    coefficients = new long[4];
+  }
+
+  public LaurentPolynomial(long coefficient, int power) {
+    this();
+    set(coefficient, power);
+  }
+
+  // Throws an ArithmeticException if the polynomial has non integer coefficients
+  public LaurentPolynomial(Polynomial polynomial) {
+    this();
+    Monomial[] monomials = polynomial.getMonomials();
+    if (monomials.length == 0) {
+      return;
+    }
+
+    lowestPower = monomials[0].getPower();
+    BigInteger[] big = new BigInteger[monomials[monomials.length - 1].getPower() - lowestPower + 1];
+    Arrays.fill(big, BigInteger.ZERO);
+    for (Monomial m : monomials) {
+      big[m.getPower() - lowestPower] = m.getIntegerCoefficient();
+    }
+    setBig(big, lowestPower, big.length);
+  }
+
+  // =================================================================================================================
+  // Math static
+  // =================================================================================================================
+
+  // result = a * b - c * d, result may not be the same instance as one of the operands
+  public static void multiplySubtract(LaurentPolynomial a, LaurentPolynomial b, LaurentPolynomial c,
+      LaurentPolynomial d, LaurentPolynomial result) {
+    boolean hasFirst = !a.isZero() && !b.isZero();
+    boolean hasSecond = !c.isZero() && !d.isZero();
+    if (!hasFirst && !hasSecond) {
+      result.setZero();
+      return;
+    }
+
+    int low = Math.min(hasFirst ? a.lowestPower + b.lowestPower : Integer.MAX_VALUE,
+        hasSecond ? c.lowestPower + d.lowestPower : Integer.MAX_VALUE);
+    int high = Math.max(hasFirst ? a.getHighestPower() + b.getHighestPower() : Integer.MIN_VALUE,
+        hasSecond ? c.getHighestPower() + d.getHighestPower() : Integer.MIN_VALUE);
+    int resultLength = high - low + 1;
+
+    if (!a.isBig() && !b.isBig() && !c.isBig() && !d.isBig()) {
+      try {
+        result.ensureCapacity(resultLength);
+        long[] r = result.coefficients;
+        Arrays.fill(r, 0, resultLength, 0);
+        if (hasFirst) {
+          multiplyAdd(a, b, r, a.lowestPower + b.lowestPower - low, false);
+        }
+        if (hasSecond) {
+          multiplyAdd(c, d, r, c.lowestPower + d.lowestPower - low, true);
+        }
+        result.bigCoefficients = null;
+        result.lowestPower = low;
+        result.length = resultLength;
+        result.trim();
+        return;
+      } catch (ArithmeticException e) {
+        // Overflow, continue with BigIntegers
+      }
+    }
+
+    BigInteger[] r = new BigInteger[resultLength];
+    Arrays.fill(r, BigInteger.ZERO);
+    if (hasFirst) {
+      multiplyAddBig(a, b, r, a.lowestPower + b.lowestPower - low, false);
+    }
+    if (hasSecond) {
+      multiplyAddBig(c, d, r, c.lowestPower + d.lowestPower - low, true);
+    }
+    result.setBig(r, low, resultLength);
+  }
+
+  private static void multiplyAdd(LaurentPolynomial a, LaurentPolynomial b, long[] destination, int shift,
+      boolean subtract) {
+    long[] ac = a.coefficients;
+    long[] bc = b.coefficients;
+    for (int i = 0; i < a.length; i++) {
+      if (ac[i] == 0) {
+        continue;
+      }
+      for (int j = 0; j < b.length; j++) {
+        long product = Math.multiplyExact(ac[i], bc[j]);
+        destination[shift + i + j] = subtract ? Math.subtractExact(destination[shift + i + j], product)
+            : Math.addExact(destination[shift + i + j], product);
+      }
+    }
+  }
+
+  private static void multiplyAddBig(LaurentPolynomial a, LaurentPolynomial b, BigInteger[] destination, int shift,
+      boolean subtract) {
+    for (int i = 0; i < a.length; i++) {
+      BigInteger ai = a.getBig(i);
+      if (ai.signum() == 0) {
+        continue;
+      }
+      for (int j = 0; j < b.length; j++) {
+        BigInteger product = ai.multiply(b.getBig(j));
+        destination[shift + i + j] = subtract ? destination[shift + i + j].subtract(product)
+            : destination[shift + i + j].add(product);
+      }
+    }
+  }
+
+  // result = numerator / denominator, throws an ArithmeticException if the division is not exact. The result may not
+  // be the same instance as one of the operands.
+  public static void divideExact(LaurentPolynomial numerator, LaurentPolynomial denominator,
+      LaurentPolynomial result) {
+    if (denominator.isZero()) {
+      throw new ArithmeticException("ERROR: cannot divide by 0");
+    }
+    if (numerator.isZero()) {
+      result.setZero();
+      return;
+    }
+
+    int quotientLength = numerator.length - denominator.length + 1;
+    if (quotientLength <= 0) {
+      throw new ArithmeticException("ERROR: " + numerator + " is not divisible by " + denominator);
+    }
+    int quotientLowestPower = numerator.lowestPower - denominator.lowestPower;
+
+    if (!numerator.isBig() && !denominator.isBig()) {
+      try {
+        // Divide starting at the lowest power, the remainder is kept in the workspace of the result
+        result.ensureCapacity(quotientLength);
+        if (result.workspace.length < numerator.length) {
+          result.workspace = new long[numerator.coefficients.length];
+        }
+        long[] remainder = result.workspace;
+        System.arraycopy(numerator.coefficients, 0, remainder, 0, numerator.length);
+        long[] q = result.coefficients;
+        long[] d = denominator.coefficients;
+
+        for (int i = 0; i < quotientLength; i++) {
+          if (remainder[i] % d[0] != 0) {
+            throw new ArithmeticException("ERROR: " + numerator + " is not divisible by " + denominator);
+          }
+          q[i] = remainder[i] / d[0];
+          if (q[i] != 0) {
+            for (int j = 0; j < denominator.length; j++) {
+              remainder[i + j] = Math.subtractExact(remainder[i + j], Math.multiplyExact(q[i], d[j]));
+            }
+          }
+        }
+        for (int i = quotientLength; i < numerator.length; i++) {
+          if (remainder[i] != 0) {
+            throw new ArithmeticException("ERROR: " + numerator + " is not divisible by " + denominator);
+          }
+        }
+
+        result.bigCoefficients = null;
+        result.lowestPower = quotientLowestPower;
+        result.length = quotientLength;
+        result.trim();
+        return;
+      } catch (ArithmeticException e) {
+        // Overflow or not divisible, retry with BigIntegers to know which of the two
+      }
+    }
+
+    BigInteger[] remainder = new BigInteger[numerator.length];
+    for (int i = 0; i < numerator.length; i++) {
+      remainder[i] = numerator.getBig(i);
+    }
+    BigInteger[] q = new BigInteger[quotientLength];
+    BigInteger d0 = denominator.getBig(0);
+    for (int i = 0; i < quotientLength; i++) {
+      BigInteger[] quotientAndRemainder = remainder[i].divideAndRemainder(d0);
+      if (quotientAndRemainder[1].signum() != 0) {
+        throw new ArithmeticException("ERROR: " + numerator + " is not divisible by " + denominator);
+      }
+      q[i] = quotientAndRemainder[0];
+      if (q[i].signum() != 0) {
+        for (int j = 0; j < denominator.length; j++) {
+          remainder[i + j] = remainder[i + j].subtract(q[i].multiply(denominator.getBig(j)));
+        }
+      }
+    }
+    for (int i = quotientLength; i < numerator.length; i++) {
+      if (remainder[i].signum() != 0) {
+        throw new ArithmeticException("ERROR: " + numerator + " is not divisible by " + denominator);
+      }
+    }
+    result.setBig(q, quotientLowestPower, quotientLength);
+  }
+
+  // =================================================================================================================
+  // Math instance
+  // =================================================================================================================
+  public LaurentPolynomial negate() {
+    if (isBig()) {
+      for (int i = 0; i < length; i++) {
+        bigCoefficients[i] = bigCoefficients[i].negate();
+      }
+      demote();
+    } else {
+      for (int i = 0; i < length; i++) {
+        if (coefficients[i] == Long.MIN_VALUE) {
+          // -Long.MIN_VALUE does not fit in a long
+          BigInteger[] big = new BigInteger[length];
+          for (int j = 0; j < length; j++) {
+            big[j] = BigInteger.valueOf(coefficients[j]).negate();
+          }
+          setBig(big, lowestPower, length);
+          return this;
+        }
+      }
+      for (int i = 0; i < length; i++) {
+        coefficients[i] = -coefficients[i];
+      }
+    }
+    return this;
+  }
+
+  // =================================================================================================================
+  // Functionality
+  // =================================================================================================================
+  private void ensureCapacity(int capacity) {
+    if (coefficients.length < capacity) {
+      coefficients = new long[Math.max(capacity, coefficients.length * 2)];
+    }
+  }
+
+  private void setBig(BigInteger[] big, int lowest, int bigLength) {
+    bigCoefficients = big;
+    lowestPower = lowest;
+    length = bigLength;
+    trim();
+    demote();
+  }
+
+  // Switches back to long coefficients if they all fit
+  private void demote() {
+    if (!isBig()) {
+      return;
+    }
+    for (int i = 0; i < length; i++) {
+      if (bigCoefficients[i].bitLength() >= Long.SIZE) {
+        return;
+      }
+    }
+    ensureCapacity(length);
+    for (int i = 0; i < length; i++) {
+      coefficients[i] = bigCoefficients[i].longValue();
+    }
+    bigCoefficients = null;
+  }
+
+  // Removes zeros at both ends
+  private void trim() {
+    int start = 0;
+    while (start < length && isCoefficientZero(start)) {
+      start++;
+    }
+    int end = length;
+    while (end > start && isCoefficientZero(end - 1)) {
+      end--;
+    }
+
+    if (start == end) {
+      setZero();
+      return;
+    }
+    if (start > 0) {
+      if (isBig()) {
+        System.arraycopy(bigCoefficients, start, bigCoefficients, 0, end - start);
+      } else {
+        System.arraycopy(coefficients, start, coefficients, 0, end - start);
+      }
+    }
+    lowestPower += start;
+    length = end - start;
+  }
+
+  private boolean isCoefficientZero(int index) {
+    return isBig() ? bigCoefficients[index].signum() == 0 : coefficients[index] == 0;
+  }
+
+  private BigInteger getBig(int index) {
+    return isBig() ? bigCoefficients[index] : BigInteger.valueOf(coefficients[index]);
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public boolean isZero() {
+    return length == 0;
+  }
+
+  public boolean isBig() {
+    return bigCoefficients != null;
+  }
+
+  public int getLowestPower() {
+    return lowestPower;
+  }
+
+  public int getHighestPower() {
+    return lowestPower + length - 1;
+  }
+
+  public BigInteger getCoefficient(int power) {
+    if (power < lowestPower || power > getHighestPower()) {
+      return BigInteger.ZERO;
+    }
+    return getBig(power - lowestPower);
+  }
+
+  public Polynomial toPolynomial() {
+    Monomial[] monomials = new Monomial[length];
+    for (int i = 0; i < length; i++) {
+      monomials[i] = new Monomial(getBig(i), lowestPower + i);
+    }
+    return new Polynomial(monomials);
+  }
+
+  @Override
+  public String toString() {
+    return toPolynomial().toString();
+  }
+
+  // =================================================================================================================
+  // Setters
+  // =================================================================================================================
+  public void setZero() {
+    bigCoefficients = null;
+    lowestPower = 0;
+    length = 0;
+  }
+
+  public void set(long coefficient, int power) {
+    setZero();
+    if (coefficient != 0) {
+      coefficients[0] = coefficient;
+      lowestPower = power;
+      length = 1;
+    }
+  }
+
+  public void set(LaurentPolynomial other) {
+    lowestPower = other.lowestPower;
+    length = other.length;
+    if (other.isBig()) {
+      bigCoefficients = Arrays.copyOf(other.bigCoefficients, other.length);
+    } else {
+      bigCoefficients = null;
+      ensureCapacity(other.length);
+      System.arraycopy(other.coefficients, 0, coefficients, 0, other.length);
+    }
+  }
+
+  // Exchanges the contents of the two polynomials without copying
+  public void swap(LaurentPolynomial other) {
+    long[] tempCoefficients = coefficients;
+    coefficients = other.coefficients;
+    other.coefficients = tempCoefficients;
+
+    BigInteger[] tempBig = bigCoefficients;
+    bigCoefficients = other.bigCoefficients;
+    other.bigCoefficients = tempBig;
+
+    int tempLowestPower = lowestPower;
+    lowestPower = other.lowestPower;
+    other.lowestPower = tempLowestPower;
+
+    int tempLength = length;
+    length = other.length;
+    other.length = tempLength;
+  }
+}
@@ -0,0 +1,151 @@
+package nl.basmens.utils.maths;
+
+import java.math.BigInteger;
+
+public final class ModularArithmetic {
+  // Primes below 2^31, so that the product of two residues always fits in a long
+  private static final int PRIME_COUNT = 64;
+  private static final long[] PRIMES = new long[PRIME_COUNT];
+  private static final double[] PRIME_LOG2S = new double[PRIME_COUNT];
+
+  static {
+    long candidate = Integer.MAX_VALUE;
+    for (int i = 0; i < PRIME_COUNT; candidate -= 2) {
+      if (BigInteger.valueOf(candidate).isProbablePrime(64)) {
+        PRIMES[i] = candidate;
+        PRIME_LOG2S[i] = Math.log(candidate) / Math.log(2);
+        i++;
+      }
+    }
+  }
+
+  private ModularArithmetic() {
+  }
+
+  // =================================================================================================================
+  // Primes
+  // =================================================================================================================
+  public static long getPrime(int index) {
+    if (index >= PRIME_COUNT) {
+      throw new ArithmeticException("ERROR: not enough primes available, requested prime " + index);
+    }
+    return PRIMES[index];
+  }
+
+  // Returns how many primes are needed for their product to exceed 2^bitCount
+  public static int getPrimeCountForBits(double bitCount) {
+    int count = 0;
+    double bits = 0;
+    while (bits <= bitCount) {
+      if (count >= PRIME_COUNT) {
+        throw new ArithmeticException("ERROR: not enough primes available to cover " + bitCount + " bits");
+      }
+      bits += PRIME_LOG2S[count];
+      count++;
+    }
+    return count;
+  }
+
+  // =================================================================================================================
+  // Arithmetic
+  // =================================================================================================================
+  public static long reduce(long value, long prime) {
+    long result = value % prime;
+    return result < 0 ? result + prime : result;
+  }
+
+  public static long mult(long a, long b, long prime) {
+    return a * b % prime;
+  }
+
+  public static long pow(long base, long exponent, long prime) {
+    long result = 1;
+    base = reduce(base, prime);
+    while (exponent > 0) {
+      if ((exponent & 1) == 1) {
+        result = result * base % prime;
+      }
+      base = base * base % prime;
+      exponent >>= 1;
+    }
+    return result;
+  }
+
+  public static long inverse(long value, long prime) {
+    if (value % prime == 0) {
+      throw new ArithmeticException("ERROR: 0 has no inverse modulo " + prime);
+    }
+    return pow(value, prime - 2, prime);
+  }
+
+  // =================================================================================================================
+  // Interpolation
+  // =================================================================================================================
+
+  // Calculates the coefficients of the unique polynomial of degree < values.length, for which
+  // p(i) = values[i] mod prime. The values array is overwritten with the coefficients, index i holding t^i.
+  public static void interpolate(long[] values, long prime) {
+    int n = values.length;
+    if (n >= prime) {
+      throw new ArithmeticException("ERROR: cannot interpolate " + n + " points modulo " + prime);
+    }
+
+    long[] inverses = new long[n];
+    for (int i = 1; i < n; i++) {
+      inverses[i] = inverse(i, prime);
+    }
+
+    // Newton divided differences, the points are 0, 1, ..., n - 1 so x_i - x_(i - k) = k
+    for (int k = 1; k < n; k++) {
+      for (int i = n - 1; i >= k; i--) {
+        values[i] = (values[i] - values[i - 1] + prime) % prime * inverses[k] % prime;
+      }
+    }
+
+    // Expand the Newton form c0 + c1 t + c2 t (t - 1) + ... into the coefficients using Horner's scheme
+    long[] result = new long[n];
+    for (int k = n - 1; k >= 0; k--) {
+      // result = result * (t - k) + values[k]
+      for (int i = n - 1; i > 0; i--) {
+        result[i] = (result[i - 1] + (prime - k) * result[i]) % prime;
+      }
+      result[0] = ((prime - k) * result[0] + values[k]) % prime;
+    }
+    System.arraycopy(result, 0, values, 0, n);
+  }
+
+  // =================================================================================================================
+  // Chinese remainder theorem
+  // =================================================================================================================
+
+  // Combines residues modulo the first residues.length primes into the unique integer in (-M/2, M/2], with M the
+  // product of those primes
+  public static BigInteger reconstruct(long[] residues) {
+    // Garner's algorithm: x = v0 + v1 p0 + v2 p0 p1 + ...
+    int n = residues.length;
+    long[] mixedRadix = new long[n];
+    for (int i = 0; i < n; i++) {
+      long prime = PRIMES[i];
+      long value = residues[i] % prime;
+      long productOfPrevious = 1;
+      long accumulated = 0;
+      for (int j = 0; j < i; j++) {
+        accumulated = (accumulated + mixedRadix[j] % prime * productOfPrevious) % prime;
+        productOfPrevious = productOfPrevious * (PRIMES[j] % prime) % prime;
+      }
+      mixedRadix[i] = (value - accumulated + prime) % prime * inverse(productOfPrevious, prime) % prime;
+    }
+
+    BigInteger result = BigInteger.ZERO;
+    BigInteger modulus = BigInteger.ONE;
+    for (int i = 0; i < n; i++) {
+      result = result.add(modulus.multiply(BigInteger.valueOf(mixedRadix[i])));
+      modulus = modulus.multiply(BigInteger.valueOf(PRIMES[i]));
+    }
+
+    if (result.shiftLeft(1).compareTo(modulus) > 0) {
+      result = result.subtract(modulus);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,187 @@
+package nl.basmens.utils.maths;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+
+import nl.basmens.Configuration;
+import nl.basmens.utils.concurrent.PerformanceTimer;
+
+// Matrix of polynomials with integer coefficients and non negative powers. The determinant is calculated by
+// evaluating the matrix in the points t = 0, 1, 2, ... modulo several primes, calculating plain determinants of the
+// resulting integer matrices, and reconstructing the polynomial using interpolation and the chinese remainder theorem.
+public class ModularPolynomialMatrix {
+  // One sparse matrix of coefficients per power
+  private final SparseMatrix[] coefficients;
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  public ModularPolynomialMatrix(int width, int height, int maxPower) {
+    coefficients = new SparseMatrix[maxPower + 1];
+    for (int p = 0; p <= maxPower; p++) {
+      coefficients[p] = new SparseMatrix(width, height);
+    }
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+
+  // Returns the matrix evaluated in t, modulo prime
+  private SparseMatrix evaluate(long t, long prime) {
+    SparseMatrix result = new SparseMatrix(width(), height());
+    long tPower = 1;
+    for (SparseMatrix c : coefficients) {
+      long factor = tPower;
+      c.forEachEntry((int column, int row, long value) -> result.add(column, row,
+          ModularArithmetic.reduce(value, prime) * factor % prime));
+      tPower = tPower * t % prime;
+    }
+    return result;
+  }
+
+  // Upper bound for log2 of the absolute values of the coefficients of the determinant. For t on the unit circle,
+  // |det| is bounded by Hadamard's inequality with |entry(t)| <= sum of |coefficients|. Every coefficient of the
+  // determinant is an average of such values, so the same bound holds for the coefficients.
+  private double getCoefficientBitBound() {
+    SparseMatrix absoluteSums = new SparseMatrix(width(), height());
+    for (SparseMatrix c : coefficients) {
+      c.forEachEntry((int column, int row, long value) -> absoluteSums.add(column, row, Math.abs(value)));
+    }
+    return absoluteSums.getDeterminantBitBound();
+  }
+
+  private int getDeterminantDegreeBound() {
+    int[] rowDegrees = new int[height()];
+    for (int p = 1; p < coefficients.length; p++) {
+      int power = p;
+      coefficients[p].forEachEntry((int column, int row, long value) -> rowDegrees[row] = power);
+    }
+
+    int degree = 0;
+    for (int d : rowDegrees) {
+      degree += d;
+    }
+    return degree;
+  }
+
+  private boolean hasZeroRow() {
+    for (int r = 0; r < height(); r++) {
+      boolean isZero = true;
+      for (SparseMatrix c : coefficients) {
+        isZero &= c.getRowNonZeroCount(r) == 0;
+      }
+      if (isZero) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public long get(int column, int row, int power) {
+    return coefficients[power].get(column, row);
+  }
+
+  public int width() {
+    return coefficients[0].width();
+  }
+
+  public int height() {
+    return coefficients[0].height();
+  }
+
+  public int getMaxPower() {
+    return coefficients.length - 1;
+  }
+
+  public Polynomial getDeterminant(long startTime) {
+    if (width() != height()) {
+      throw new IllegalArgumentException("ERROR: cannot calculate determinant, width and height are not the same");
+    }
+    if (width() == 0 || hasZeroRow()) {
+      return new Polynomial();
+    }
+
+    PerformanceTimer timer = new PerformanceTimer(getClass(), "getDeterminant", "evaluate");
+
+    int pointCount = getDeterminantDegreeBound() + 1;
+    int primeCount = ModularArithmetic.getPrimeCountForBits(getCoefficientBitBound() + 1);
+
+    // residues[power][prime index]
+    long[][] residues = new long[pointCount][primeCount];
+    long[] values = new long[pointCount];
+
+    for (int i = 0; i < primeCount; i++) {
+      long prime = ModularArithmetic.getPrime(i);
+
+      for (int t = 0; t < pointCount; t++) {
+        if (System.currentTimeMillis() - startTime > Configuration.get().getMaxCalcTimePerInvariant()) {
+          timer.stop();
+          throw new RuntimeException("Max calculation time exceeded in alexander polynomial");
+        }
+
+        values[t] = evaluate(t, prime).getDeterminant(prime);
+      }
+
+      ModularArithmetic.interpolate(values, prime);
+      for (int p = 0; p < pointCount; p++) {
+        residues[p][i] = values[p];
+      }
+    }
+
+    timer.nextSegment("reconstruct");
+    ArrayList<Monomial> monomials = new ArrayList<>();
+    for (int p = 0; p < pointCount; p++) {
+      BigInteger coefficient = ModularArithmetic.reconstruct(residues[p]);
+      if (coefficient.signum() != 0) {
+        monomials.add(new Monomial(coefficient, p));
+      }
+    }
+
+    timer.stop();
+    return new Polynomial(monomials.toArray(Monomial[]::new));
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder stringBuilder = new StringBuilder();
+
+    for (int r = 0; r < height(); r++) {
+      stringBuilder.append(",\n[");
+
+      for (int c = 0; c < width(); c++) {
+        Polynomial polynomial = new Polynomial();
+        for (int p = 0; p < coefficients.length; p++) {
+          polynomial.add(new Polynomial(new Monomial(get(c, r, p), p)));
+        }
+        String s = polynomial.toString();
+
+        if (s.length() == 1) {
+          stringBuilder.append(" ");
+        }
+
+        stringBuilder.append(s);
+        stringBuilder.append(", ");
+      }
+
+      stringBuilder.setLength(stringBuilder.length() - 2);
+      stringBuilder.append("]");
+    }
+
+    return stringBuilder.substring(2);
+  }
+
+  // =================================================================================================================
+  // Setters
+  // =================================================================================================================
+  public void set(int column, int row, long coefficient, int power) {
+    coefficients[power].set(column, row, coefficient);
+  }
+
+  public void add(int column, int row, long coefficient, int power) {
+    coefficients[power].add(column, row, coefficient);
+  }
+}
@@ -20,6 +20,12 @@ public class Monomial implements Comparable {
     this.power = power;
   }
 
+  public Monomial(BigInteger coefficient, int power) {
+    this.numerator = coefficient;
+    this.denominator = BigInteger.ONE;
+    this.power = power;
+  }
+
   public Monomial(long numerator, long denominator, int power) {
     this.numerator = BigInteger.valueOf(numerator);
     this.denominator = BigInteger.valueOf(denominator);
@@ -133,6 +139,15 @@ public class Monomial implements Comparable {
     return numerator.divide(denominator).doubleValue();
   }
 
+  // Throws an ArithmeticException if the coefficient is not an integer
+  public BigInteger getIntegerCoefficient() {
+    BigInteger[] quotientAndRemainder = numerator.divideAndRemainder(denominator);
+    if (quotientAndRemainder[1].signum() != 0) {
+      throw new ArithmeticException("ERROR: the coefficient of " + this + " is not an integer");
+    }
+    return quotientAndRemainder[0];
+  }
+
   public int getPower() {
     return power;
   }
@@ -141,6 +156,24 @@ public class Monomial implements Comparable {
     return getCoefficient() * Math.pow(t, power);
   }
 
+  // Exact evaluation, throws an ArithmeticException if the result is not an integer
+  public BigInteger evaluateOnTExact(long t) {
+    BigInteger result = numerator;
+    if (power >= 0) {
+      result = result.multiply(BigInteger.valueOf(t).pow(power));
+    } else if (t == 1 || t == -1) {
+      result = result.multiply(BigInteger.valueOf(t).pow(-power));
+    } else {
+      throw new ArithmeticException("ERROR: " + t + "^" + power + " is not an integer");
+    }
+
+    BigInteger[] quotientAndRemainder = result.divideAndRemainder(denominator);
+    if (quotientAndRemainder[1].signum() != 0) {
+      throw new ArithmeticException("ERROR: " + this + " evaluated on " + t + " is not an integer");
+    }
+    return quotientAndRemainder[0];
+  }
+
   @Override
   public String toString() {
     if (isZero(this)) {
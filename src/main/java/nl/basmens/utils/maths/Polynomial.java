@@ -1,11 +1,9 @@
 package nl.basmens.utils.maths;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.math.BigInteger;
+import java.util.Arrays;
 
 public class Polynomial implements Comparable {
-  private static final Pattern PARSE_REGEX = Pattern.compile("(?>(-|\\+|^) ?(\\d*)(?>(t)(?>\\^(-?\\d+))?)?)");
-
   private Monomial[] monomials = new Monomial[0];
   private int index0Power;
 
@@ -288,6 +286,17 @@ public class Polynomial implements Comparable {
     return result;
   }
 
+  // Exact evaluation, throws an ArithmeticException if the result is not an integer
+  public BigInteger evaluateOnTExact(long t) {
+    BigInteger result = BigInteger.ZERO;
+    for (Monomial m : monomials) {
+      if (!Monomial.isZero(m)) {
+        result = result.add(m.evaluateOnTExact(t));
+      }
+    }
+    return result;
+  }
+
   private Monomial getMonomial(int power) {
     if (hasMonomial(power)) {
       if (monomials[power - index0Power] == null) {
@@ -326,6 +335,11 @@ public class Polynomial implements Comparable {
     return lowestMonomial;
   }
 
+  // Returns copies of the nonzero monomials, ordered from the lowest to the highest power
+  public Monomial[] getMonomials() {
+    return Arrays.stream(monomials).filter(m -> !Monomial.isZero(m)).map(Monomial::new).toArray(Monomial[]::new);
+  }
+
   public Monomial getHighestMonomial() {
     if (isHighestMonomialOutdated) {
       highestMonomial = null;
@@ -358,22 +372,75 @@ public class Polynomial implements Comparable {
   }
 
   public static Polynomial parseString(String toParse) {
+    return parse(toParse);
+  }
+
+  // Reads the format of toString, for example "2t^3 - t + 1" or "-t^-2 + 5", without creating intermediate strings
+  public static Polynomial parse(CharSequence toParse) {
     Polynomial result = new Polynomial();
-    Matcher monomialMatcher = PARSE_REGEX.matcher(toParse);
+    int length = toParse.length();
+    int i = 0;
+    boolean isNegative = false;
+
+    while (i < length) {
+      char c = toParse.charAt(i);
+      if (c == ' ' || c == '+') {
+        i++;
+        continue;
+      }
+      if (c == '-') {
+        isNegative = !isNegative;
+        i++;
+        continue;
+      }
+
+      // Coefficient
+      long coefficient = 1;
+      if (isDigit(c)) {
+        coefficient = 0;
+        while (i < length && isDigit(toParse.charAt(i))) {
+          coefficient = Math.addExact(Math.multiplyExact(coefficient, 10), toParse.charAt(i) - '0');
+          i++;
+        }
+      }
+
+      // Power
+      int power = 0;
+      if (i < length && toParse.charAt(i) == 't') {
+        power = 1;
+        i++;
+        if (i < length && toParse.charAt(i) == '^') {
+          i++;
+          boolean isNegativePower = i < length && toParse.charAt(i) == '-';
+          if (isNegativePower) {
+            i++;
+          }
+          int start = i;
+          power = 0;
+          while (i < length && isDigit(toParse.charAt(i))) {
+            power = Math.addExact(Math.multiplyExact(power, 10), toParse.charAt(i) - '0');
+            i++;
+          }
+          if (i == start) {
+            throw new IllegalArgumentException("ERROR: expected an exponent in " + toParse);
+          }
+          power = isNegativePower ? -power : power;
+        }
+      } else if (!isDigit(c)) {
+        throw new IllegalArgumentException("ERROR: unexpected character '" + c + "' in " + toParse);
+      }
 
-    while (monomialMatcher.find()) {
-      // First group containts sign, second the coefficient, third t if present,
-      // fourth the exponent if present
-      long coefficient = "-".equals(monomialMatcher.group(1)) ? -1 : 1;
-      coefficient *= "".equals(monomialMatcher.group(2)) ? 1 : Long.parseLong(monomialMatcher.group(2));
-      int exponent = monomialMatcher.group(3) == null ? 0
-          : (monomialMatcher.group(4) == null ? 1 : Integer.parseInt(monomialMatcher.group(4)));
-      result.add(new Polynomial(new Monomial(coefficient, exponent)));
+      result.add(new Polynomial(new Monomial(isNegative ? -coefficient : coefficient, power)));
+      isNegative = false;
     }
 
     return result;
   }
 
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
   @Override
   public int compareTo(Object o) {
     if (this == o) {
@@ -406,8 +473,13 @@ public class Polynomial implements Comparable {
 
   @Override
   public int hashCode() {
-    Monomial first = monomials[0];
-    Monomial last = monomials[monomials.length - 1];
-    return (int) (first.getCoefficient() * first.getPower() * last.getCoefficient() * last.getPower());
+    // Hashes every term, so polynomials with the same lowest or highest term do not all collide
+    int hash = 1;
+    for (Monomial m : monomials) {
+      if (!Monomial.isZero(m)) {
+        hash = 31 * (31 * hash + m.getPower()) + Double.hashCode(m.getCoefficient());
+      }
+    }
+    return hash;
   }
 }
@@ -2,10 +2,17 @@ package nl.basmens.utils.maths;
 
 import java.util.ArrayList;
 
-import nl.basmens.Main;
+import nl.basmens.Configuration;
 import nl.basmens.utils.concurrent.PerformanceTimer;
 
 public class PolynomialMatrix {
+  public enum DeterminantStrategy {
+    // Multiplies rows by the diagonal and divides the product of the diagonal by those multipliers afterwards
+    DIAGONAL_MULTIPLICATION,
+    // Fraction-free Bareiss elimination, every division is exact
+    BAREISS
+  }
+
   private Polynomial[][] polynomials;
 
   // =================================================================================================================
@@ -64,6 +71,15 @@ public class PolynomialMatrix {
     return polynomials[0].length;
   }
 
+  public Polynomial getDeterminant(long startTime, DeterminantStrategy strategy) {
+    return switch (strategy) {
+      case BAREISS:
+        yield getDeterminantBareiss(startTime);
+      default:
+        yield getDeterminant(startTime);
+    };
+  }
+
   public Polynomial getDeterminant(long startTime) {
     if (width() != height()) {
       throw new IllegalArgumentException("ERROR: cannot calculate determinant, width and height are not the same");
@@ -93,7 +109,7 @@ public class PolynomialMatrix {
       boolean isDiagonalZero = matrix.get(col, col).isZero();
 
       for (int row = col + 1; row < matrix.height(); row++) {
-        if (System.currentTimeMillis() - startTime > Main.MAX_CALC_TIME_PER_INVARIANT) {
+        if (System.currentTimeMillis() - startTime > Configuration.get().getMaxCalcTimePerInvariant()) {
           timer.stop();
           throw new RuntimeException("Max calculation time exceeded in alexander polynomial");
         }
@@ -155,6 +171,83 @@ public class PolynomialMatrix {
     return result;
   }
 
+  // Fraction-free Bareiss elimination. After step k every entry below and right of the pivot equals a minor of the
+  // original matrix, so the division by the previous pivot is always exact and the entries stay small:
+  // n(i, j) = (n(k, k) * n(i, j) - n(i, k) * n(k, j)) / previousPivot
+  // The last entry on the diagonal is the determinant. The elimination runs on dense LaurentPolynomials, which only
+  // fall back to BigIntegers when a coefficient overflows, so the matrix must have integer coefficients.
+  public Polynomial getDeterminantBareiss(long startTime) {
+    if (width() != height()) {
+      throw new IllegalArgumentException("ERROR: cannot calculate determinant, width and height are not the same");
+    }
+    if (width() == 0) {
+      return new Polynomial();
+    }
+
+    PerformanceTimer timer = new PerformanceTimer(getClass(), "getDeterminantBareiss", "convert");
+
+    // Indexed by [row][column], so that swapping rows is swapping arrays
+    int size = width();
+    LaurentPolynomial[][] matrix = new LaurentPolynomial[size][size];
+    for (int r = 0; r < size; r++) {
+      for (int c = 0; c < size; c++) {
+        matrix[r][c] = new LaurentPolynomial(get(c, r));
+      }
+    }
+    LaurentPolynomial product = new LaurentPolynomial();
+    LaurentPolynomial quotient = new LaurentPolynomial();
+    LaurentPolynomial previousPivot = new LaurentPolynomial(1, 0);
+    boolean isNegated = false;
+
+    timer.nextSegment("eliminate");
+    for (int col = 0; col < size - 1; col++) {
+      // Find a pivot
+      if (matrix[col][col].isZero()) {
+        int pivotRow = col + 1;
+        while (pivotRow < size && matrix[pivotRow][col].isZero()) {
+          pivotRow++;
+        }
+        if (pivotRow == size) {
+          timer.stop();
+          return new Polynomial();
+        }
+        LaurentPolynomial[] temp = matrix[col];
+        matrix[col] = matrix[pivotRow];
+        matrix[pivotRow] = temp;
+        isNegated = !isNegated;
+      }
+
+      LaurentPolynomial[] pivotRow = matrix[col];
+      LaurentPolynomial pivot = pivotRow[col];
+      for (int row = col + 1; row < size; row++) {
+        if (System.currentTimeMillis() - startTime > Configuration.get().getMaxCalcTimePerInvariant()) {
+          timer.stop();
+          throw new RuntimeException("Max calculation time exceeded in alexander polynomial");
+        }
+
+        LaurentPolynomial[] current = matrix[row];
+        LaurentPolynomial factor = current[col];
+        for (int i = col + 1; i < size; i++) {
+          LaurentPolynomial.multiplySubtract(pivot, current[i], factor, pivotRow[i], product);
+          LaurentPolynomial.divideExact(product, previousPivot, quotient);
+          current[i].swap(quotient);
+        }
+        factor.setZero();
+      }
+      previousPivot = pivot;
+    }
+
+    timer.nextSegment("convert");
+    LaurentPolynomial determinant = matrix[size - 1][size - 1];
+    if (isNegated) {
+      determinant.negate();
+    }
+    Polynomial result = determinant.toPolynomial();
+
+    timer.stop();
+    return result;
+  }
+
   @Override
   public String toString() {
     StringBuilder stringBuilder = new StringBuilder();
@@ -0,0 +1,484 @@
+package nl.basmens.utils.maths;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import nl.basmens.utils.concurrent.PerformanceTimer;
+
+// Integer matrix that stores its rows compressed: per row the sorted column indices of its nonzero entries and their
+// values. Elimination is done modulo a prime, choosing pivots in Markowitz order (the nonzero entry with the smallest
+// (rowCount - 1) * (columnCount - 1)), which keeps the fill-in low for the few nonzeros per row of knot matrices.
+// Rows and columns are kept in lists by their count, so a step does not have to look at every row.
+public class SparseMatrix {
+  private static final int[] EMPTY_COLUMNS = new int[0];
+  private static final long[] EMPTY_VALUES = new long[0];
+
+  private final int width;
+  private final int height;
+
+  private int[][] rowColumns;
+  private long[][] rowValues;
+  private int[] rowLengths;
+
+  public interface EntryConsumer {
+    void accept(int column, int row, long value);
+  }
+
+  // =================================================================================================================
+  // Constructor
+  // =================================================================================================================
+  public SparseMatrix(int width, int height) {
+    this.width = width;
+    this.height = height;
+
+    rowColumns = new int[height][];
+    rowValues = new long[height][];
+    rowLengths = new int[height];
+    for (int r = 0; r < height; r++) {
+      rowColumns[r] = EMPTY_COLUMNS;
+      rowValues[r] = EMPTY_VALUES;
+    }
+  }
+
+  // =================================================================================================================
+  // Functions
+  // =================================================================================================================
+
+  // Binary search for the column in the row, returns -(insertion point) - 1 if not present
+  private static int indexOf(int[] columns, int length, int column) {
+    int low = 0;
+    int high = length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (columns[mid] < column) {
+        low = mid + 1;
+      } else if (columns[mid] > column) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -low - 1;
+  }
+
+  private void insert(int row, int index, int column, long value) {
+    int length = rowLengths[row];
+    if (length == rowColumns[row].length) {
+      int capacity = Math.max(4, length * 2);
+      rowColumns[row] = Arrays.copyOf(rowColumns[row], capacity);
+      rowValues[row] = Arrays.copyOf(rowValues[row], capacity);
+    }
+    System.arraycopy(rowColumns[row], index, rowColumns[row], index + 1, length - index);
+    System.arraycopy(rowValues[row], index, rowValues[row], index + 1, length - index);
+    rowColumns[row][index] = column;
+    rowValues[row][index] = value;
+    rowLengths[row]++;
+  }
+
+  private void remove(int row, int index) {
+    int length = rowLengths[row];
+    System.arraycopy(rowColumns[row], index + 1, rowColumns[row], index, length - index - 1);
+    System.arraycopy(rowValues[row], index + 1, rowValues[row], index, length - index - 1);
+    rowLengths[row]--;
+  }
+
+  // Eliminates a copy of the matrix modulo prime. Returns the determinant modulo prime if calculateRank is false,
+  // otherwise the rank modulo prime.
+  private long eliminate(long prime, boolean calculateRank) {
+    return new Elimination(prime).run(calculateRank);
+  }
+
+  // The state of one elimination. The active rows are in lists by their length and the columns in lists by their
+  // count of active rows, so the pivot search only looks at the shortest rows and columns. Every column has a list of
+  // the rows that may have an entry in it, so a step only touches the rows it changes. Those lists are cleaned up
+  // while they are read, rows that became inactive or lost the entry are dropped then.
+  private final class Elimination {
+    private final long prime;
+
+    private final int[][] columns = new int[height][];
+    private final long[][] values = new long[height][];
+    private final int[] lengths = new int[height];
+    private final boolean[] isRowActive = new boolean[height];
+
+    private final int[] columnCounts = new int[width];
+    private final int[][] columnRows = new int[width][];
+    private final int[] columnRowCounts = new int[width];
+
+    // Doubly linked lists, -1 ends a list
+    private final int[] rowsByLength = new int[width + 1];
+    private final int[] nextRow = new int[height];
+    private final int[] previousRow = new int[height];
+    private final int[] columnsByCount = new int[height + 1];
+    private final int[] nextColumn = new int[width];
+    private final int[] previousColumn = new int[width];
+
+    private int pivotRow;
+    private int pivotIndex;
+
+    private Elimination(long prime) {
+      this.prime = prime;
+
+      for (int c = 0; c < width; c++) {
+        columnRows[c] = EMPTY_COLUMNS;
+      }
+      for (int r = 0; r < height; r++) {
+        columns[r] = new int[rowLengths[r]];
+        values[r] = new long[rowLengths[r]];
+        for (int i = 0; i < rowLengths[r]; i++) {
+          long value = ModularArithmetic.reduce(rowValues[r][i], prime);
+          if (value != 0) {
+            columns[r][lengths[r]] = rowColumns[r][i];
+            values[r][lengths[r]] = value;
+            lengths[r]++;
+            columnCounts[rowColumns[r][i]]++;
+            addColumnRow(rowColumns[r][i], r);
+          }
+        }
+      }
+
+      Arrays.fill(rowsByLength, -1);
+      Arrays.fill(columnsByCount, -1);
+      for (int r = 0; r < height; r++) {
+        isRowActive[r] = true;
+        linkRow(r);
+      }
+      for (int c = 0; c < width; c++) {
+        linkColumn(c);
+      }
+    }
+
+    private long run(boolean calculateRank) {
+      int[] pivotColumnOfRow = new int[height];
+      long determinant = 1;
+      int rank = 0;
+
+      for (int step = 0; step < height; step++) {
+        // Rows without entries have no pivot
+        while (rowsByLength[0] != -1) {
+          if (!calculateRank) {
+            return 0;
+          }
+          int r = rowsByLength[0];
+          unlinkRow(r);
+          isRowActive[r] = false;
+        }
+
+        if (!findPivot()) {
+          break;
+        }
+
+        int[] pivotColumns = columns[pivotRow];
+        long[] pivotValues = values[pivotRow];
+        int pivotLength = lengths[pivotRow];
+        int pivotColumn = pivotColumns[pivotIndex];
+        long pivotInverse = ModularArithmetic.inverse(pivotValues[pivotIndex], prime);
+
+        unlinkRow(pivotRow);
+        isRowActive[pivotRow] = false;
+        pivotColumnOfRow[pivotRow] = pivotColumn;
+        determinant = determinant * pivotValues[pivotIndex] % prime;
+        rank++;
+        for (int i = 0; i < pivotLength; i++) {
+          changeColumnCount(pivotColumns[i], -1);
+        }
+
+        // Eliminate the pivot column from the other active rows
+        int[] rows = columnRows[pivotColumn];
+        for (int i = 0; i < columnRowCounts[pivotColumn] && columnCounts[pivotColumn] > 0; i++) {
+          int r = rows[i];
+          if (!isRowActive[r]) {
+            continue;
+          }
+          int index = indexOf(columns[r], lengths[r], pivotColumn);
+          if (index >= 0) {
+            eliminateRow(r, prime - values[r][index] * pivotInverse % prime, pivotColumn, pivotColumns,
+                pivotValues, pivotLength);
+          }
+        }
+        columnRows[pivotColumn] = EMPTY_COLUMNS;
+        columnRowCounts[pivotColumn] = 0;
+      }
+
+      if (calculateRank) {
+        return rank;
+      }
+
+      // The pivots form a permutation from rows to columns, its sign is (-1)^(size - cycle count)
+      boolean[] isVisited = new boolean[height];
+      int cycleCount = 0;
+      for (int r = 0; r < height; r++) {
+        if (!isVisited[r]) {
+          cycleCount++;
+          for (int current = r; !isVisited[current]; current = pivotColumnOfRow[current]) {
+            isVisited[current] = true;
+          }
+        }
+      }
+      if ((height - cycleCount) % 2 == 1) {
+        determinant = (prime - determinant) % prime;
+      }
+      return determinant;
+    }
+
+    // Finds the entry with the lowest Markowitz cost. Columns and rows are searched by increasing count k, before the
+    // columns of count k every entry that is not searched yet costs at least (k - 1)^2, and before the rows of length k
+    // at least (k - 1) * k. Returns false if there are no entries left.
+    private boolean findPivot() {
+      pivotRow = -1;
+      long lowestCost = Long.MAX_VALUE;
+      int maxCount = Math.max(width, height);
+      for (int k = 1; k <= maxCount; k++) {
+        if (lowestCost <= (long) (k - 1) * (k - 1)) {
+          break;
+        }
+        if (k <= height) {
+          for (int c = columnsByCount[k]; c != -1 && lowestCost > (long) (k - 1) * (k - 1); c = nextColumn[c]) {
+            int[] rows = columnRows[c];
+            int count = 0;
+            for (int i = 0; i < columnRowCounts[c]; i++) {
+              int r = rows[i];
+              int index = isRowActive[r] ? indexOf(columns[r], lengths[r], c) : -1;
+              if (index < 0) {
+                continue;
+              }
+              rows[count++] = r;
+              long cost = (long) (lengths[r] - 1) * (k - 1);
+              if (cost < lowestCost) {
+                lowestCost = cost;
+                pivotRow = r;
+                pivotIndex = index;
+              }
+            }
+            columnRowCounts[c] = count;
+          }
+        }
+
+        if (lowestCost <= (long) (k - 1) * k) {
+          break;
+        }
+        if (k <= width) {
+          for (int r = rowsByLength[k]; r != -1 && lowestCost > (long) (k - 1) * k; r = nextRow[r]) {
+            for (int i = 0; i < k; i++) {
+              long cost = (long) (k - 1) * (columnCounts[columns[r][i]] - 1);
+              if (cost < lowestCost) {
+                lowestCost = cost;
+                pivotRow = r;
+                pivotIndex = i;
+              }
+            }
+          }
+        }
+      }
+      return pivotRow != -1;
+    }
+
+    // Merges row r with factor * pivot row, leaving out the pivot column
+    private void eliminateRow(int r, long factor, int pivotColumn, int[] pivotColumns, long[] pivotValues,
+        int pivotLength) {
+      int[] oldColumns = columns[r];
+      long[] oldValues = values[r];
+      int oldLength = lengths[r];
+      int[] newColumns = new int[oldLength + pivotLength];
+      long[] newValues = new long[oldLength + pivotLength];
+      int newLength = 0;
+      int a = 0;
+      int b = 0;
+      while (a < oldLength || b < pivotLength) {
+        int columnA = a < oldLength ? oldColumns[a] : Integer.MAX_VALUE;
+        int columnB = b < pivotLength ? pivotColumns[b] : Integer.MAX_VALUE;
+
+        if (columnA < columnB) {
+          newColumns[newLength] = columnA;
+          newValues[newLength++] = oldValues[a++];
+        } else if (columnB < columnA) {
+          if (columnB != pivotColumn) {
+            newColumns[newLength] = columnB;
+            newValues[newLength++] = factor * pivotValues[b] % prime;
+            changeColumnCount(columnB, 1);
+            addColumnRow(columnB, r);
+          }
+          b++;
+        } else {
+          long value = (oldValues[a] + factor * pivotValues[b]) % prime;
+          if (columnA == pivotColumn || value == 0) {
+            changeColumnCount(columnA, -1);
+          } else {
+            newColumns[newLength] = columnA;
+            newValues[newLength++] = value;
+          }
+          a++;
+          b++;
+        }
+      }
+
+      unlinkRow(r);
+      columns[r] = newColumns;
+      values[r] = newValues;
+      lengths[r] = newLength;
+      linkRow(r);
+    }
+
+    private void addColumnRow(int column, int row) {
+      int count = columnRowCounts[column];
+      if (count == columnRows[column].length) {
+        columnRows[column] = Arrays.copyOf(columnRows[column], Math.max(4, count * 2));
+      }
+      columnRows[column][count] = row;
+      columnRowCounts[column]++;
+    }
+
+    private void changeColumnCount(int column, int change) {
+      unlinkColumn(column);
+      columnCounts[column] += change;
+      linkColumn(column);
+    }
+
+    private void linkRow(int r) {
+      int head = rowsByLength[lengths[r]];
+      nextRow[r] = head;
+      previousRow[r] = -1;
+      if (head != -1) {
+        previousRow[head] = r;
+      }
+      rowsByLength[lengths[r]] = r;
+    }
+
+    private void unlinkRow(int r) {
+      if (previousRow[r] == -1) {
+        rowsByLength[lengths[r]] = nextRow[r];
+      } else {
+        nextRow[previousRow[r]] = nextRow[r];
+      }
+      if (nextRow[r] != -1) {
+        previousRow[nextRow[r]] = previousRow[r];
+      }
+    }
+
+    private void linkColumn(int c) {
+      int head = columnsByCount[columnCounts[c]];
+      nextColumn[c] = head;
+      previousColumn[c] = -1;
+      if (head != -1) {
+        previousColumn[head] = c;
+      }
+      columnsByCount[columnCounts[c]] = c;
+    }
+
+    private void unlinkColumn(int c) {
+      if (previousColumn[c] == -1) {
+        columnsByCount[columnCounts[c]] = nextColumn[c];
+      } else {
+        nextColumn[previousColumn[c]] = nextColumn[c];
+      }
+      if (nextColumn[c] != -1) {
+        previousColumn[nextColumn[c]] = previousColumn[c];
+      }
+    }
+  }
+
+  // =================================================================================================================
+  // Getters
+  // =================================================================================================================
+  public long get(int column, int row) {
+    int index = indexOf(rowColumns[row], rowLengths[row], column);
+    return index < 0 ? 0 : rowValues[row][index];
+  }
+
+  public int width() {
+    return width;
+  }
+
+  public int height() {
+    return height;
+  }
+
+  public int getRowNonZeroCount(int row) {
+    return rowLengths[row];
+  }
+
+  public void forEachEntry(EntryConsumer consumer) {
+    for (int r = 0; r < height; r++) {
+      for (int i = 0; i < rowLengths[r]; i++) {
+        consumer.accept(rowColumns[r][i], r, rowValues[r][i]);
+      }
+    }
+  }
+
+  public long getDeterminant(long prime) {
+    if (width != height) {
+      throw new IllegalArgumentException("ERROR: cannot calculate determinant, width and height are not the same");
+    }
+    return eliminate(prime, false);
+  }
+
+  public int getRank(long prime) {
+    return (int) eliminate(prime, true);
+  }
+
+  // Upper bound for log2 |det| using Hadamard's inequality on the rows and the columns
+  public double getDeterminantBitBound() {
+    double[] columnSumsOfSquares = new double[width];
+    double rowsBound = 0;
+    for (int r = 0; r < height; r++) {
+      double sumOfSquares = 0;
+      for (int i = 0; i < rowLengths[r]; i++) {
+        double value = rowValues[r][i];
+        sumOfSquares += value * value;
+        columnSumsOfSquares[rowColumns[r][i]] += value * value;
+      }
+      rowsBound += Math.log(sumOfSquares) / Math.log(2) / 2;
+    }
+
+    double columnsBound = 0;
+    for (double sumOfSquares : columnSumsOfSquares) {
+      columnsBound += Math.log(sumOfSquares) / Math.log(2) / 2;
+    }
+    return Math.min(rowsBound, columnsBound);
+  }
+
+  // Exact determinant, calculated modulo enough primes to cover Hadamard's bound
+  public BigInteger getExactDeterminant() {
+    if (width != height) {
+      throw new IllegalArgumentException("ERROR: cannot calculate determinant, width and height are not the same");
+    }
+    if (height == 0) {
+      return BigInteger.ZERO;
+    }
+    for (int r = 0; r < height; r++) {
+      if (rowLengths[r] == 0) {
+        return BigInteger.ZERO;
+      }
+    }
+
+    PerformanceTimer timer = new PerformanceTimer(getClass(), "getExactDeterminant");
+    int primeCount = ModularArithmetic.getPrimeCountForBits(getDeterminantBitBound() + 1);
+    long[] residues = new long[primeCount];
+    for (int i = 0; i < primeCount; i++) {
+      residues[i] = eliminate(ModularArithmetic.getPrime(i), false);
+    }
+
+    BigInteger result = ModularArithmetic.reconstruct(residues);
+    timer.stop();
+    return result;
+  }
+
+  // =================================================================================================================
+  // Setters
+  // =================================================================================================================
+  public void set(int column, int row, long value) {
+    int index = indexOf(rowColumns[row], rowLengths[row], column);
+    if (index >= 0) {
+      if (value == 0) {
+        remove(row, index);
+      } else {
+        rowValues[row][index] = value;
+      }
+    } else if (value != 0) {
+      insert(row, -index - 1, column, value);
+    }
+  }
+
+  public void add(int column, int row, long value) {
+    set(column, row, get(column, row) + value);
+  }
+}
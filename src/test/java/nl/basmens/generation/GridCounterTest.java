@@ -0,0 +1,45 @@
+package nl.basmens.generation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import nl.basmens.utils.io.GridRanges;
+
+public class GridCounterTest {
+  private static final long SEED = 42;
+  private static final String NAME = "basic/10x10";
+
+  @Test
+  public void handsOutTheRangeOnce() {
+    GridCounter counter = new GridCounter(SEED, NAME, 10, 5, null);
+    for (long gridIndex = 10; gridIndex < 15; gridIndex++) {
+      assertEquals(gridIndex, counter.next());
+    }
+    assertEquals(-1, counter.next());
+    assertTrue(counter.isExhausted());
+  }
+
+  @Test
+  public void skipsGridsInTheResults() {
+    GridRanges gridRanges = new GridRanges();
+    long jobSeed = GridRandom.getJobSeed(SEED, NAME);
+    gridRanges.add(jobSeed, 0, 12);
+    gridRanges.add(jobSeed, 14, 16);
+
+    GridCounter counter = new GridCounter(SEED, NAME, 10, 10, gridRanges);
+    assertEquals(4, counter.getSkippedCount());
+    assertEquals(6, counter.getCount());
+    long[] expected = { 12, 13, 16, 17, 18, 19 };
+    for (long gridIndex : expected) {
+      assertEquals(gridIndex, counter.next());
+    }
+    assertEquals(-1, counter.next());
+
+    // A second run of the same range has nothing left to do
+    GridCounter again = new GridCounter(SEED, NAME, 10, 10, gridRanges);
+    assertEquals(0, again.getCount());
+    assertTrue(again.isExhausted());
+  }
+}
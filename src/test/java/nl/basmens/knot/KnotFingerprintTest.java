@@ -0,0 +1,101 @@
+package nl.basmens.knot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import nl.basmens.utils.maths.Vector;
+
+public class KnotFingerprintTest {
+  // The under and over connection of every intersection
+  private static final int[][] TREFOIL = { { 0, 3 }, { 4, 1 }, { 2, 5 } };
+  // Alternating diagram with the gauss code 1O 2U 3O 1U 4O 5U 2O 3U 5O 4U, which has no symmetries, so every start
+  // and direction gives a different gauss code
+  private static final int[][] KNOT = { { 3, 0 }, { 1, 6 }, { 7, 2 }, { 9, 4 }, { 5, 8 } };
+
+  @Test
+  public void crossingCount() {
+    assertEquals(3, KnotFingerprint.of(createKnot(TREFOIL, 6, 0, false, false)).getCrossingCount());
+    assertEquals(5, KnotFingerprint.of(createKnot(KNOT, 10, 0, false, false)).getCrossingCount());
+  }
+
+  @Test
+  public void sameForEveryStart() {
+    // Odd offsets would change the directions, and therefore the types, of the intersections
+    KnotFingerprint expected = KnotFingerprint.of(createKnot(KNOT, 10, 0, false, false));
+    int[] gaussCode = KnotFingerprint.gaussCode(createKnot(KNOT, 10, 0, false, false));
+    for (int offset = 2; offset < 10; offset += 2) {
+      Knot knot = createKnot(KNOT, 10, offset, false, false);
+      assertFalse(Arrays.equals(gaussCode, KnotFingerprint.gaussCode(knot)));
+      assertEquals(expected, KnotFingerprint.of(knot));
+      assertEquals(expected.hashCode(), KnotFingerprint.of(knot).hashCode());
+    }
+  }
+
+  @Test
+  public void sameWithoutIntersectionsInBetween() {
+    assertEquals(KnotFingerprint.of(createKnot(KNOT, 10, 0, false, false)),
+        KnotFingerprint.of(createKnot(KNOT, 16, 6, false, false)));
+  }
+
+  @Test
+  public void sameForReversedDirection() {
+    Knot knot = createKnot(KNOT, 10, 0, false, false);
+    Knot reversed = createKnot(KNOT, 10, 0, true, false);
+    assertFalse(Arrays.equals(KnotFingerprint.gaussCode(knot), KnotFingerprint.gaussCode(reversed)));
+    assertEquals(KnotFingerprint.of(knot), KnotFingerprint.of(reversed));
+  }
+
+  @Test
+  public void sameForMirrorImage() {
+    Knot knot = createKnot(KNOT, 10, 0, false, false);
+    Knot mirrored = createKnot(KNOT, 10, 0, false, true);
+    assertFalse(Arrays.equals(KnotFingerprint.gaussCode(knot), KnotFingerprint.gaussCode(mirrored)));
+    assertEquals(KnotFingerprint.of(knot), KnotFingerprint.of(mirrored));
+  }
+
+  @Test
+  public void differentCrossingsDiffer() {
+    // Changing one crossing of the trefoil gives a diagram of the unknot
+    int[][] changed = { { 3, 0 }, { 4, 1 }, { 2, 5 } };
+    assertNotEquals(KnotFingerprint.of(createKnot(TREFOIL, 6, 0, false, false)),
+        KnotFingerprint.of(createKnot(changed, 6, 0, false, false)));
+    assertNotEquals(KnotFingerprint.of(createKnot(TREFOIL, 6, 0, false, false)),
+        KnotFingerprint.of(createKnot(KNOT, 10, 0, false, false)));
+  }
+
+  // The intersections are on the connections from offset on, the knot starts at the first connection
+  private static Knot createKnot(int[][] intersections, int length, int offset, boolean isReversed,
+      boolean isMirrored) {
+    Connection[] c = createLoop(length, isReversed);
+    for (int[] i : intersections) {
+      Connection under = c[(offset + i[0]) % length];
+      Connection over = c[(offset + i[1]) % length];
+      if (isMirrored) {
+        new Intersection(over, under);
+      } else {
+        new Intersection(under, over);
+      }
+    }
+    return new Knot(c[0]);
+  }
+
+  private static Connection[] createLoop(int length, boolean isReversed) {
+    Connection[] c = new Connection[length];
+    for (int i = 0; i < length; i++) {
+      c[i] = new Connection(new Vector(i, 0), (i % 2 == 0 ? 0 : Math.PI / 2) + (isReversed ? Math.PI : 0));
+    }
+    for (int i = 0; i < length; i++) {
+      if (isReversed) {
+        c[(i + 1) % length].setNext(c[i]);
+      } else {
+        c[i].setNext(c[(i + 1) % length]);
+      }
+    }
+    return c;
+  }
+}
@@ -0,0 +1,45 @@
+package nl.basmens.utils.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class GridRangesTest {
+  @Test
+  public void addMergesTouchingRanges() {
+    GridRanges gridRanges = new GridRanges();
+    gridRanges.add(1, 0, 5);
+    gridRanges.add(1, 10, 20);
+    gridRanges.add(1, 5);
+    gridRanges.add(1, 6, 10);
+
+    assertEquals(20, gridRanges.getNextMissing(1, 0));
+    assertEquals(20, gridRanges.getCount(1, 0, 100));
+    assertArrayEquals(new long[] { 20, 100 }, gridRanges.getMissing(1, 0, 100));
+  }
+
+  @Test
+  public void missingSkipsTheRanges() {
+    GridRanges gridRanges = new GridRanges();
+    gridRanges.add(1, 10, 20);
+    gridRanges.add(1, 30, 40);
+    // Other seeds do not count
+    gridRanges.add(2, 0, 100);
+
+    assertArrayEquals(new long[] { 5, 10, 20, 30, 40, 50 }, gridRanges.getMissing(1, 5, 50));
+    assertArrayEquals(new long[] { 20, 30 }, gridRanges.getMissing(1, 15, 35));
+    assertArrayEquals(new long[0], gridRanges.getMissing(1, 12, 18));
+    assertEquals(20, gridRanges.getCount(1, 5, 50));
+    assertEquals(5, gridRanges.getNextMissing(1, 5));
+    assertEquals(40, gridRanges.getNextMissing(1, 30));
+  }
+
+  @Test
+  public void modificationCountChangesWithAdd() {
+    GridRanges gridRanges = new GridRanges();
+    long version = gridRanges.getModificationCount();
+    gridRanges.add(1, 3);
+    assertEquals(version + 1, gridRanges.getModificationCount());
+  }
+}
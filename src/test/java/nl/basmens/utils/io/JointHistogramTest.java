@@ -0,0 +1,80 @@
+package nl.basmens.utils.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import nl.basmens.utils.maths.Monomial;
+import nl.basmens.utils.maths.Polynomial;
+
+public class JointHistogramTest {
+  private static final int TREFOIL = PolynomialDictionary.getId(new Polynomial(new Monomial(1, 0), new Monomial(-1, 1),
+      new Monomial(1, 2)));
+  private static final int FIGURE_EIGHT = PolynomialDictionary.getId(new Polynomial(new Monomial(-1, 0),
+      new Monomial(3, 1), new Monomial(-1, 2)));
+
+  @Test
+  public void writeAndReadRoundTrip() throws IOException {
+    JointHistogram histogram = new JointHistogram();
+    histogram.add(12, 3, 3, 3, TREFOIL, 5);
+    histogram.add(12, 4, 4, 5, FIGURE_EIGHT, 2);
+    histogram.add(20, 6, 3, 3, TREFOIL, 1);
+    histogram.add(8, 1, 0, JointHistogram.NO_KNOT_DETERMINANT, JointHistogram.NO_ALEXANDER_POLYNOMIAL, 7);
+    // Enough cells to rehash
+    for (int length = 100; length < 1100; length++) {
+      histogram.add(length, length % 7, 0, 1, JointHistogram.NO_ALEXANDER_POLYNOMIAL, length);
+    }
+
+    JointHistogram read = writeAndRead(histogram);
+
+    assertEquals(histogram.size(), read.size());
+    assertEquals(histogram.getKnotCount(), read.getKnotCount());
+    histogram.forEach((length, intersectionCount, reducedIntersectionCount, knotDeterminant, alexanderPolynomial,
+        count) -> assertEquals(count, read.get(length, intersectionCount, reducedIntersectionCount, knotDeterminant,
+            alexanderPolynomial)));
+  }
+
+  @Test
+  public void writeAndReadEmpty() throws IOException {
+    JointHistogram read = writeAndRead(new JointHistogram());
+    assertTrue(read.isEmpty());
+    assertEquals(0, read.getKnotCount());
+  }
+
+  @Test
+  public void addToSplitsByLengthAndIntersectionCount() {
+    JointHistogram histogram = new JointHistogram();
+    histogram.add(12, 3, 3, 3, TREFOIL, 5);
+    histogram.add(12, 4, 4, 5, FIGURE_EIGHT, 2);
+    histogram.add(20, 3, 3, 3, TREFOIL, 1);
+
+    HashMap<Integer, KnotJson> lengths = new HashMap<>();
+    HashMap<Integer, KnotJson> intersections = new HashMap<>();
+    assertEquals(8, histogram.addTo(lengths, intersections));
+    assertEquals(7, lengths.get(12).getCount());
+    assertEquals(2, lengths.get(12).getAlexanderPolynomialCount(FIGURE_EIGHT));
+    assertEquals(1, lengths.get(20).getCount());
+    assertEquals(6, intersections.get(3).getCount());
+    assertEquals(6, intersections.get(3).getAlexanderPolynomialCount(TREFOIL));
+    assertEquals(2, intersections.get(4).getCount());
+  }
+
+  private static JointHistogram writeAndRead(JointHistogram histogram) throws IOException {
+    File file = File.createTempFile("histogram", ".joint");
+    try {
+      try (OutputStream out = new FileOutputStream(file)) {
+        histogram.write(out);
+      }
+      return JointHistogram.read(file);
+    } finally {
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package nl.basmens.utils.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.basmens.knot.Connection;
+import nl.basmens.knot.Intersection;
+import nl.basmens.knot.Knot;
+import nl.basmens.knot.KnotFingerprint;
+import nl.basmens.utils.maths.Vector;
+
+public class KnotRecordSinkTest {
+  private static final int QUEUE_CAPACITY = 4;
+
+  private File directory;
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("knot-records").toFile();
+    file = new File(directory, "results.knots");
+  }
+
+  @After
+  public void tearDown() {
+    for (File f : directory.listFiles()) {
+      f.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void writeAndReadRoundTrip() throws InterruptedException, IOException {
+    // More than one block, and a block that is not full
+    List<Knot> knots = createKnots(KnotRecordSink.BLOCK_SIZE * 2 + 100, 0);
+    KnotRecordSink sink = new KnotRecordSink(file, true, true, true, QUEUE_CAPACITY);
+    sink.add(knots);
+    sink.close();
+
+    assertRecords(knots);
+  }
+
+  @Test
+  public void resumingAppends() throws InterruptedException, IOException {
+    List<Knot> knots = createKnots(KnotRecordSink.BLOCK_SIZE + 10, 0);
+    KnotRecordSink sink = new KnotRecordSink(file, true, true, true, QUEUE_CAPACITY);
+    sink.add(knots);
+    sink.close();
+
+    List<Knot> moreKnots = createKnots(50, knots.size());
+    sink = new KnotRecordSink(file, true, true, true, QUEUE_CAPACITY);
+    sink.add(moreKnots);
+    sink.close();
+
+    knots.addAll(moreKnots);
+    assertRecords(knots);
+  }
+
+  @Test
+  public void resumingDropsTornBlock() throws InterruptedException, IOException {
+    List<Knot> knots = createKnots(300, 0);
+    KnotRecordSink sink = new KnotRecordSink(file, true, true, true, QUEUE_CAPACITY);
+    sink.add(knots);
+    sink.close();
+
+    // A crash while writing the next block
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(new byte[] { 0, 0, 16, 0, 0, 1 });
+    }
+
+    List<Knot> moreKnots = createKnots(20, knots.size());
+    sink = new KnotRecordSink(file, true, true, true, QUEUE_CAPACITY);
+    sink.add(moreKnots);
+    sink.close();
+
+    knots.addAll(moreKnots);
+    assertRecords(knots);
+  }
+
+  @Test
+  public void optionalColumnsAreLeftOut() throws InterruptedException, IOException {
+    KnotRecordSink sink = new KnotRecordSink(file, false, false, false, QUEUE_CAPACITY);
+    sink.add(createKnots(10, 0));
+    sink.close();
+
+    try (KnotRecordReader reader = KnotRecordReader.open(file)) {
+      assertTrue(reader.next());
+      assertFalse(reader.hasGridIndex());
+      assertFalse(reader.hasKnotDeterminant());
+      assertFalse(reader.hasAlexanderPolynomial());
+    }
+  }
+
+  @Test
+  public void closeWhileAdding() throws InterruptedException, IOException {
+    KnotRecordSink sink = new KnotRecordSink(file, false, false, false, QUEUE_CAPACITY);
+    List<Knot> knots = createKnots(100, 0);
+    AtomicLong addedCount = new AtomicLong();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        try {
+          while (true) {
+            sink.add(knots);
+            addedCount.addAndGet(knots.size());
+          }
+        } catch (IllegalStateException e) {
+          // Closed
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      threads[i].start();
+    }
+
+    Thread.sleep(200);
+    sink.close();
+    for (Thread thread : threads) {
+      thread.join(10_000);
+      assertFalse("a thread that was adding knots did not stop", thread.isAlive());
+    }
+
+    // Every knot of a finished add is written, and the last add of a thread can be written partly
+    long recordCount = 0;
+    try (KnotRecordReader reader = KnotRecordReader.open(file)) {
+      while (reader.next()) {
+        recordCount++;
+      }
+    }
+    assertTrue(recordCount >= addedCount.get());
+    assertTrue(recordCount < addedCount.get() + threads.length * knots.size());
+  }
+
+  private void assertRecords(List<Knot> knots) throws IOException {
+    try (KnotRecordReader reader = KnotRecordReader.open(file)) {
+      for (Knot k : knots) {
+        assertTrue(reader.next());
+        assertEquals(k.getLength(), reader.getLength());
+        assertEquals(k.getIntersectionCount(), reader.getIntersectionCount());
+        assertEquals(k.getReducedIntersectionCount(), reader.getReducedIntersectionCount());
+        assertEquals(k.getGridIndex(), reader.getGridIndex());
+        assertEquals(k.getKnotDeterminant(), reader.getKnotDeterminant());
+        assertEquals(k.getAlexanderPolynomial().toString(), reader.getAlexanderPolynomialString());
+        assertArrayEquals(KnotFingerprint.gaussCode(k), reader.getGaussCode());
+      }
+      assertFalse(reader.next());
+    }
+  }
+
+  // Alternately trefoils and unknots of different lengths, numbered from firstGridIndex
+  private static List<Knot> createKnots(int count, long firstGridIndex) {
+    ArrayList<Knot> knots = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Knot k = i % 2 == 0 ? createTrefoil(6 + i % 11) : createUnknot(4 + i % 13);
+      k.setGridIndex(firstGridIndex + i);
+      knots.add(k);
+    }
+    return knots;
+  }
+
+  // A loop that crosses itself three times, over and under in turn
+  private static Knot createTrefoil(int length) {
+    Connection[] c = createLoop(length);
+    new Intersection(c[0], c[3]);
+    new Intersection(c[4], c[1]);
+    new Intersection(c[2], c[5]);
+    return new Knot(c[0]);
+  }
+
+  private static Knot createUnknot(int length) {
+    return new Knot(createLoop(length)[0]);
+  }
+
+  private static Connection[] createLoop(int length) {
+    Connection[] c = new Connection[length];
+    for (int i = 0; i < length; i++) {
+      c[i] = new Connection(new Vector(i, 0), i % 2 == 0 ? 0 : Math.PI / 2);
+    }
+    for (int i = 0; i < length; i++) {
+      c[i].setNext(c[(i + 1) % length]);
+    }
+    return c;
+  }
+}
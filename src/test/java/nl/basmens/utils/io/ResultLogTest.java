@@ -0,0 +1,230 @@
+package nl.basmens.utils.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.basmens.utils.maths.Monomial;
+import nl.basmens.utils.maths.Polynomial;
+
+public class ResultLogTest {
+  private static final int TREFOIL = PolynomialDictionary.getId(new Polynomial(new Monomial(1, 0), new Monomial(-1, 1),
+      new Monomial(1, 2)));
+  private static final int UNKNOT = PolynomialDictionary.getId(new Polynomial(new Monomial(1, 0)));
+
+  private File directory;
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("result-log").toFile();
+    file = new File(directory, "results.log");
+  }
+
+  @After
+  public void tearDown() {
+    for (File f : directory.listFiles()) {
+      f.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void replayAddsEveryAppend() {
+    ResultLog log = new ResultLog(file);
+    append(log, trefoils(12, 5));
+    append(log, unknots(8, 2));
+    append(log, trefoils(12, 1));
+    log.close();
+
+    HashMap<Integer, KnotJson> lengths = new HashMap<>();
+    HashMap<Integer, KnotJson> intersections = new HashMap<>();
+    JointHistogram joint = new JointHistogram();
+    // Only the cells are in the log, the views are derived from them
+    assertEquals(0, new ResultLog(file).replay(lengths, intersections, joint, new GridRanges()));
+    assertTrue(lengths.isEmpty());
+    assertTrue(intersections.isEmpty());
+    assertEquals(8, joint.addTo(lengths, intersections));
+
+    assertEquals(6, lengths.get(12).getCount());
+    assertEquals(6, lengths.get(12).getAlexanderPolynomialCount(TREFOIL));
+    assertEquals(2, lengths.get(8).getCount());
+    assertEquals(6, intersections.get(3).getCount());
+    assertEquals(2, intersections.get(1).getCount());
+    assertEquals(8, joint.getKnotCount());
+    assertEquals(6, joint.get(12, 3, 3, 3, TREFOIL));
+    assertEquals(2, joint.get(8, 1, 0, 1, UNKNOT));
+  }
+
+  @Test
+  public void replayAfterCompactAndAppend() {
+    ResultLog log = new ResultLog(file);
+    append(log, trefoils(12, 5));
+
+    HashMap<Integer, KnotJson> lengths = new HashMap<>();
+    HashMap<Integer, KnotJson> intersections = new HashMap<>();
+    log.compact(0, lengths, intersections, trefoils(12, 5), new GridRanges());
+    append(log, unknots(8, 2));
+    log.close();
+
+    JointHistogram replayed = new JointHistogram();
+    assertEquals(7, replay(replayed));
+    assertEquals(5, replayed.get(12, 3, 3, 3, TREFOIL));
+    assertEquals(2, replayed.get(8, 1, 0, 1, UNKNOT));
+  }
+
+  @Test
+  public void replayDropsTornTail() throws IOException {
+    ResultLog log = new ResultLog(file);
+    append(log, trefoils(12, 5));
+    long validLength = file.length();
+    append(log, trefoils(14, 2));
+    log.close();
+
+    // A crash while appending the second record
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(file.length() - 3);
+    }
+
+    ResultLog resumed = new ResultLog(file);
+    JointHistogram joint = new JointHistogram();
+    resumed.replay(new HashMap<>(), new HashMap<>(), joint, new GridRanges());
+    assertEquals(5, joint.getKnotCount());
+    assertEquals(0, joint.get(14, 3, 3, 3, TREFOIL));
+    assertEquals(validLength, file.length());
+
+    // Appending continues after the last complete record
+    append(resumed, unknots(8, 4));
+    resumed.close();
+    joint = new JointHistogram();
+    assertEquals(9, replay(joint));
+    assertEquals(4, joint.get(8, 1, 0, 1, UNKNOT));
+  }
+
+  @Test
+  public void replayDropsCorruptedRecord() throws IOException {
+    ResultLog log = new ResultLog(file);
+    append(log, trefoils(12, 5));
+    long validLength = file.length();
+    append(log, trefoils(14, 2));
+    log.close();
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.seek(file.length() - 6);
+      raf.write(raf.read() ^ 0xFF);
+    }
+
+    assertEquals(5, replay(new JointHistogram()));
+    assertEquals(validLength, file.length());
+  }
+
+  @Test
+  public void replayOfIncompleteHeaderIsEmpty() throws IOException {
+    // A crash right after the log was created
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[] { 0x4B, 0x4C, 0x4F });
+    }
+
+    ResultLog log = new ResultLog(file);
+    assertEquals(0, log.replay(new HashMap<>(), new HashMap<>(), new JointHistogram(), new GridRanges()));
+    append(log, trefoils(12, 5));
+    log.close();
+
+    assertEquals(5, replay(new JointHistogram()));
+  }
+
+  @Test
+  public void replayReadsLatestGridRanges() {
+    ResultLog log = new ResultLog(file);
+    GridRanges gridRanges = new GridRanges();
+    gridRanges.add(7, 0, 10);
+    log.append(trefoils(12, 5), gridRanges);
+    gridRanges.add(7, 10, 15);
+    gridRanges.add(8, 3);
+    log.append(new JointHistogram(), gridRanges);
+    log.close();
+
+    GridRanges replayed = new GridRanges();
+    JointHistogram joint = new JointHistogram();
+    new ResultLog(file).replay(new HashMap<>(), new HashMap<>(), joint, replayed);
+    assertEquals(5, joint.getKnotCount());
+    assertEquals(15, replayed.getNextMissing(7, 0));
+    assertEquals(1, replayed.getCount(8, 0, 10));
+  }
+
+  @Test
+  public void compactReplacesLog() {
+    ResultLog log = new ResultLog(file);
+    for (int i = 0; i < 5; i++) {
+      append(log, trefoils(12, 1));
+    }
+    append(log, unknots(8, 2));
+    long appendedLength = file.length();
+
+    JointHistogram joint = trefoils(12, 5);
+    joint.addAll(unknots(8, 2));
+    log.compact(0, new HashMap<>(), new HashMap<>(), joint, new GridRanges());
+
+    assertTrue(file.length() < appendedLength);
+    assertFalse(new File(file.getPath() + ".tmp").exists());
+    assertEquals(7, replay(new JointHistogram()));
+  }
+
+  @Test
+  public void compactKeepsImportedViews() {
+    // Results imported from JSON only have the views
+    JointHistogram imported = unknots(10, 4);
+    HashMap<Integer, KnotJson> lengths = new HashMap<>();
+    HashMap<Integer, KnotJson> intersections = new HashMap<>();
+    long importedCount = imported.addTo(lengths, intersections);
+
+    ResultLog log = new ResultLog(file);
+    log.compact(importedCount, lengths, intersections, trefoils(12, 5), new GridRanges());
+    append(log, trefoils(12, 1));
+    log.close();
+
+    HashMap<Integer, KnotJson> replayedLengths = new HashMap<>();
+    HashMap<Integer, KnotJson> replayedIntersections = new HashMap<>();
+    JointHistogram joint = new JointHistogram();
+    assertEquals(4, new ResultLog(file).replay(replayedLengths, replayedIntersections, joint, new GridRanges()));
+    assertEquals(4, replayedLengths.get(10).getCount());
+    assertEquals(4, replayedLengths.get(10).getAlexanderPolynomialCount(UNKNOT));
+    assertEquals(4, replayedIntersections.get(1).getCount());
+    assertFalse(replayedLengths.containsKey(12));
+    assertEquals(6, joint.getKnotCount());
+    assertEquals(0, joint.get(10, 1, 0, 1, UNKNOT));
+  }
+
+  // Returns the knot count of the joint histogram
+  private long replay(JointHistogram joint) {
+    new ResultLog(file).replay(new HashMap<>(), new HashMap<>(), joint, new GridRanges());
+    return joint.getKnotCount();
+  }
+
+  private static void append(ResultLog log, JointHistogram joint) {
+    log.append(joint, null);
+  }
+
+  private static JointHistogram trefoils(int length, long count) {
+    JointHistogram joint = new JointHistogram();
+    joint.add(length, 3, 3, 3, TREFOIL, count);
+    return joint;
+  }
+
+  private static JointHistogram unknots(int length, long count) {
+    JointHistogram joint = new JointHistogram();
+    joint.add(length, 1, 0, 1, UNKNOT, count);
+    return joint;
+  }
+}
@@ -0,0 +1,120 @@
+package nl.basmens.utils.maths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+public class LaurentPolynomialTest {
+  private static final BigInteger MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+  @Test
+  public void multiplySubtract() {
+    // (1 + t)(1 - t) - t^-1 * t^3 = 1 - 2t^2
+    LaurentPolynomial result = new LaurentPolynomial();
+    LaurentPolynomial.multiplySubtract(create(1, 1), create(1, -1), new LaurentPolynomial(1, -1),
+        new LaurentPolynomial(1, 3), result);
+    assertFalse(result.isBig());
+    assertEquals(0, result.getLowestPower());
+    assertEquals(2, result.getHighestPower());
+    assertEquals(BigInteger.ONE, result.getCoefficient(0));
+    assertEquals(BigInteger.ZERO, result.getCoefficient(1));
+    assertEquals(BigInteger.valueOf(-2), result.getCoefficient(2));
+  }
+
+  @Test
+  public void overflowPromotesToBigInteger() {
+    LaurentPolynomial result = new LaurentPolynomial();
+    LaurentPolynomial.multiplySubtract(new LaurentPolynomial(Long.MAX_VALUE, 0), create(3, 1),
+        new LaurentPolynomial(), new LaurentPolynomial(), result);
+    assertTrue(result.isBig());
+    assertEquals(MAX.multiply(BigInteger.valueOf(3)), result.getCoefficient(0));
+    assertEquals(MAX, result.getCoefficient(1));
+  }
+
+  @Test
+  public void overflowOnlyInBetweenStaysLong() {
+    // MAX (2 + t) - MAX (1 + t) = MAX, but MAX * 2 overflows
+    LaurentPolynomial max = new LaurentPolynomial(Long.MAX_VALUE, 0);
+    LaurentPolynomial result = new LaurentPolynomial();
+    LaurentPolynomial.multiplySubtract(max, create(2, 1), max, create(1, 1), result);
+    assertFalse(result.isBig());
+    assertEquals(0, result.getLowestPower());
+    assertEquals(0, result.getHighestPower());
+    assertEquals(MAX, result.getCoefficient(0));
+  }
+
+  @Test
+  public void bigOperandsGiveTheExactResult() {
+    LaurentPolynomial big = new LaurentPolynomial();
+    LaurentPolynomial.multiplySubtract(new LaurentPolynomial(Long.MAX_VALUE, 0), new LaurentPolynomial(4, 2),
+        new LaurentPolynomial(), new LaurentPolynomial(), big);
+
+    // (4 MAX t^2)^2 - (-1)(1) = 16 MAX^2 t^4 + 1
+    LaurentPolynomial result = new LaurentPolynomial();
+    LaurentPolynomial.multiplySubtract(big, big, new LaurentPolynomial(-1, 0), new LaurentPolynomial(1, 0), result);
+    assertTrue(result.isBig());
+    assertEquals(MAX.pow(2).multiply(BigInteger.valueOf(16)), result.getCoefficient(4));
+    assertEquals(BigInteger.ONE, result.getCoefficient(0));
+  }
+
+  @Test
+  public void divisionDemotesToLong() {
+    LaurentPolynomial big = new LaurentPolynomial();
+    LaurentPolynomial.multiplySubtract(new LaurentPolynomial(Long.MAX_VALUE, 0), create(3, 1),
+        new LaurentPolynomial(), new LaurentPolynomial(), big);
+    assertTrue(big.isBig());
+
+    LaurentPolynomial result = new LaurentPolynomial();
+    LaurentPolynomial.divideExact(big, create(3, 1), result);
+    assertFalse(result.isBig());
+    assertEquals(0, result.getLowestPower());
+    assertEquals(0, result.getHighestPower());
+    assertEquals(MAX, result.getCoefficient(0));
+  }
+
+  @Test
+  public void inexactDivisionThrows() {
+    LaurentPolynomial result = new LaurentPolynomial();
+    try {
+      LaurentPolynomial.divideExact(create(1, 1), create(1, -1), result);
+      fail("Expected an ArithmeticException");
+    } catch (ArithmeticException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void negateMinValuePromotesToBigInteger() {
+    LaurentPolynomial polynomial = new LaurentPolynomial(Long.MIN_VALUE, 2).negate();
+    assertTrue(polynomial.isBig());
+    assertEquals(BigInteger.valueOf(Long.MIN_VALUE).negate(), polynomial.getCoefficient(2));
+
+    polynomial.negate();
+    assertFalse(polynomial.isBig());
+    assertEquals(BigInteger.valueOf(Long.MIN_VALUE), polynomial.getCoefficient(2));
+  }
+
+  @Test
+  public void polynomialRoundTrip() {
+    BigInteger huge = MAX.multiply(MAX);
+    Polynomial polynomial = new Polynomial(new Monomial(-2, -1), new Monomial(huge, 3));
+    LaurentPolynomial laurent = new LaurentPolynomial(polynomial);
+    assertTrue(laurent.isBig());
+    assertEquals(-1, laurent.getLowestPower());
+    assertEquals(3, laurent.getHighestPower());
+    assertTrue(laurent.toPolynomial().sub(polynomial).isZero());
+  }
+
+  // a + b t
+  private static LaurentPolynomial create(long a, long b) {
+    LaurentPolynomial result = new LaurentPolynomial();
+    LaurentPolynomial.multiplySubtract(new LaurentPolynomial(a, 0), new LaurentPolynomial(1, 0),
+        new LaurentPolynomial(-b, 1), new LaurentPolynomial(1, 0), result);
+    return result;
+  }
+}
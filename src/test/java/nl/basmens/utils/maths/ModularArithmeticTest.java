@@ -0,0 +1,97 @@
+package nl.basmens.utils.maths;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+public class ModularArithmeticTest {
+  @Test
+  public void reconstructPositive() {
+    BigInteger value = new BigInteger("123456789012345678901234567890");
+    assertEquals(value, ModularArithmetic.reconstruct(getResidues(value, 4)));
+  }
+
+  @Test
+  public void reconstructNegative() {
+    BigInteger value = new BigInteger("-987654321987654321");
+    assertEquals(value, ModularArithmetic.reconstruct(getResidues(value, 3)));
+  }
+
+  @Test
+  public void reconstructSmall() {
+    for (long value = -5; value <= 5; value++) {
+      assertEquals(BigInteger.valueOf(value), ModularArithmetic.reconstruct(getResidues(BigInteger.valueOf(value), 1)));
+    }
+  }
+
+  @Test
+  public void reconstructUsesSymmetricRange() {
+    // The product of the primes is out of range, it is the same as 0 modulo every prime
+    BigInteger modulus = BigInteger.valueOf(ModularArithmetic.getPrime(0))
+        .multiply(BigInteger.valueOf(ModularArithmetic.getPrime(1)));
+    assertEquals(BigInteger.ZERO, ModularArithmetic.reconstruct(getResidues(modulus, 2)));
+  }
+
+  @Test
+  public void getPrimeCountForBits() {
+    // Every prime is just below 2^31
+    assertEquals(1, ModularArithmetic.getPrimeCountForBits(30));
+    assertEquals(2, ModularArithmetic.getPrimeCountForBits(31));
+    assertEquals(4, ModularArithmetic.getPrimeCountForBits(100));
+  }
+
+  @Test
+  public void interpolate() {
+    // p(t) = 5 - 3t + 2t^3
+    long prime = ModularArithmetic.getPrime(0);
+    long[] values = new long[] { 5, 4, 15, 50 };
+    ModularArithmetic.interpolate(values, prime);
+    assertArrayEquals(new long[] { 5, prime - 3, 0, 2 }, values);
+  }
+
+  @Test
+  public void interpolateConstant() {
+    long prime = ModularArithmetic.getPrime(0);
+    long[] values = new long[] { 7, 7, 7 };
+    ModularArithmetic.interpolate(values, prime);
+    assertArrayEquals(new long[] { 7, 0, 0 }, values);
+  }
+
+  @Test
+  public void interpolateThenReconstruct() {
+    // p(t) = -4 + 1000000000000t^2, interpolated modulo two primes and combined per coefficient
+    BigInteger[] coefficients = new BigInteger[] { BigInteger.valueOf(-4), BigInteger.ZERO,
+        BigInteger.valueOf(1000000000000L) };
+    long[][] residues = new long[coefficients.length][2];
+    for (int p = 0; p < 2; p++) {
+      long prime = ModularArithmetic.getPrime(p);
+      long[] values = new long[coefficients.length];
+      for (int t = 0; t < values.length; t++) {
+        BigInteger value = BigInteger.ZERO;
+        for (int i = coefficients.length - 1; i >= 0; i--) {
+          value = value.multiply(BigInteger.valueOf(t)).add(coefficients[i]);
+        }
+        values[t] = value.mod(BigInteger.valueOf(prime)).longValue();
+      }
+      ModularArithmetic.interpolate(values, prime);
+      for (int i = 0; i < values.length; i++) {
+        residues[i][p] = values[i];
+      }
+    }
+
+    for (int i = 0; i < coefficients.length; i++) {
+      assertEquals(coefficients[i], ModularArithmetic.reconstruct(residues[i]));
+    }
+  }
+
+  private static long[] getResidues(BigInteger value, int primeCount) {
+    long[] residues = new long[primeCount];
+    for (int i = 0; i < primeCount; i++) {
+      residues[i] = value.mod(BigInteger.valueOf(ModularArithmetic.getPrime(i))).longValue();
+    }
+    return residues;
+  }
+}
@@ -0,0 +1,126 @@
+package nl.basmens.utils.maths;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SparseMatrixTest {
+  private static final long PRIME = ModularArithmetic.getPrime(0);
+
+  @Test
+  public void determinant() {
+    SparseMatrix matrix = createMatrix(new long[][] { { 2, 0, 1 }, { 1, 3, 2 }, { 1, 1, 4 } });
+    assertEquals(18, matrix.getDeterminant(PRIME));
+    assertEquals(BigInteger.valueOf(18), matrix.getExactDeterminant());
+  }
+
+  @Test
+  public void negativeDeterminant() {
+    SparseMatrix matrix = createMatrix(new long[][] { { 1, 3, 2 }, { 2, 0, 1 }, { 1, 1, 4 } });
+    assertEquals(PRIME - 18, matrix.getDeterminant(PRIME));
+    assertEquals(BigInteger.valueOf(-18), matrix.getExactDeterminant());
+  }
+
+  @Test
+  public void singularDeterminant() {
+    SparseMatrix matrix = createMatrix(new long[][] { { 1, 2, 0 }, { 0, 1, 1 }, { 1, 3, 1 } });
+    assertEquals(0, matrix.getDeterminant(PRIME));
+    assertEquals(BigInteger.ZERO, matrix.getExactDeterminant());
+  }
+
+  @Test
+  public void exactDeterminantNeedsSeveralPrimes() {
+    SparseMatrix matrix = new SparseMatrix(4, 4);
+    for (int i = 0; i < 4; i++) {
+      matrix.set(i, i, 1_000_000_007L);
+    }
+    matrix.set(3, 0, -5);
+    assertEquals(BigInteger.valueOf(1_000_000_007L).pow(4), matrix.getExactDeterminant());
+  }
+
+  @Test
+  public void exactDeterminantOfRandomMatrices() {
+    Random random = new Random(42);
+    for (int m = 0; m < 20; m++) {
+      int size = 2 + random.nextInt(8);
+      long[][] values = new long[size][size];
+      for (int r = 0; r < size; r++) {
+        for (int i = 0; i < 3; i++) {
+          values[r][random.nextInt(size)] = random.nextInt(201) - 100;
+        }
+      }
+      assertEquals(getDeterminant(values), createMatrix(values).getExactDeterminant());
+    }
+  }
+
+  @Test
+  public void rank() {
+    // The third row is the sum of the first two
+    SparseMatrix matrix = createMatrix(new long[][] { { 1, 0, 2, 0 }, { 0, 1, 1, 3 }, { 1, 1, 3, 3 } });
+    assertEquals(2, matrix.getRank(PRIME));
+  }
+
+  @Test
+  public void rankModuloThree() {
+    // The coloring matrix of a trefoil, which is tricolorable: its rank modulo 3 is lower than modulo a big prime
+    SparseMatrix matrix = createMatrix(new long[][] { { 2, -1, -1 }, { -1, 2, -1 }, { -1, -1, 2 } });
+    assertEquals(2, matrix.getRank(PRIME));
+    assertEquals(1, matrix.getRank(3));
+  }
+
+  @Test
+  public void rankOfEmptyMatrix() {
+    assertEquals(0, new SparseMatrix(3, 2).getRank(PRIME));
+  }
+
+  @Test
+  public void setAndAdd() {
+    SparseMatrix matrix = new SparseMatrix(3, 2);
+    matrix.set(2, 1, 5);
+    matrix.add(2, 1, -5);
+    matrix.add(0, 1, 4);
+    assertEquals(0, matrix.get(2, 1));
+    assertEquals(4, matrix.get(0, 1));
+    assertEquals(1, matrix.getRowNonZeroCount(1));
+    assertEquals(0, matrix.getRowNonZeroCount(0));
+  }
+
+  private static SparseMatrix createMatrix(long[][] values) {
+    SparseMatrix matrix = new SparseMatrix(values[0].length, values.length);
+    for (int r = 0; r < values.length; r++) {
+      for (int c = 0; c < values[r].length; c++) {
+        matrix.set(c, r, values[r][c]);
+      }
+    }
+    return matrix;
+  }
+
+  // Laplace expansion along the first row
+  private static BigInteger getDeterminant(long[][] values) {
+    int size = values.length;
+    if (size == 1) {
+      return BigInteger.valueOf(values[0][0]);
+    }
+
+    BigInteger result = BigInteger.ZERO;
+    for (int c = 0; c < size; c++) {
+      if (values[0][c] == 0) {
+        continue;
+      }
+      long[][] minor = new long[size - 1][size - 1];
+      for (int r = 1; r < size; r++) {
+        for (int i = 0, j = 0; i < size; i++) {
+          if (i != c) {
+            minor[r - 1][j++] = values[r][i];
+          }
+        }
+      }
+      BigInteger term = BigInteger.valueOf(values[0][c]).multiply(getDeterminant(minor));
+      result = c % 2 == 0 ? result.add(term) : result.subtract(term);
+    }
+    return result;
+  }
+}